@@ -81,22 +81,27 @@ import io.onedev.server.git.GitFilter;
 import io.onedev.server.git.GitPostReceiveCallback;
 import io.onedev.server.git.GitPreReceiveCallback;
 import io.onedev.server.git.config.GitConfig;
+import io.onedev.server.manager.ArchiveManager;
 import io.onedev.server.manager.AttachmentManager;
 import io.onedev.server.manager.BatchWorkManager;
+import io.onedev.server.manager.BlobContentManager;
 import io.onedev.server.manager.BuildInfoManager;
 import io.onedev.server.manager.BuildManager;
 import io.onedev.server.manager.BuildQuerySettingManager;
 import io.onedev.server.manager.CacheManager;
 import io.onedev.server.manager.CodeCommentManager;
 import io.onedev.server.manager.CodeCommentQuerySettingManager;
+import io.onedev.server.manager.CodeCommentPositionInfoManager;
 import io.onedev.server.manager.CodeCommentRelationInfoManager;
 import io.onedev.server.manager.CodeCommentRelationManager;
 import io.onedev.server.manager.CodeCommentReplyManager;
 import io.onedev.server.manager.CommitInfoManager;
+import io.onedev.server.manager.CommitQueryManager;
 import io.onedev.server.manager.CommitQuerySettingManager;
 import io.onedev.server.manager.ConfigurationManager;
 import io.onedev.server.manager.DataManager;
 import io.onedev.server.manager.GroupAuthorizationManager;
+import io.onedev.server.manager.GitMaintenanceManager;
 import io.onedev.server.manager.GroupManager;
 import io.onedev.server.manager.IssueChangeManager;
 import io.onedev.server.manager.IssueCommentManager;
@@ -116,6 +121,7 @@ import io.onedev.server.manager.PullRequestCommentManager;
 import io.onedev.server.manager.PullRequestManager;
 import io.onedev.server.manager.PullRequestQuerySettingManager;
 import io.onedev.server.manager.PullRequestReviewManager;
+import io.onedev.server.manager.PullRequestUpdateInfoManager;
 import io.onedev.server.manager.PullRequestUpdateManager;
 import io.onedev.server.manager.PullRequestWatchManager;
 import io.onedev.server.manager.SettingManager;
@@ -125,8 +131,10 @@ import io.onedev.server.manager.UserAuthorizationManager;
 import io.onedev.server.manager.UserInfoManager;
 import io.onedev.server.manager.UserManager;
 import io.onedev.server.manager.WorkExecutor;
+import io.onedev.server.manager.impl.DefaultArchiveManager;
 import io.onedev.server.manager.impl.DefaultAttachmentManager;
 import io.onedev.server.manager.impl.DefaultBatchWorkManager;
+import io.onedev.server.manager.impl.DefaultBlobContentManager;
 import io.onedev.server.manager.impl.DefaultBuildInfoManager;
 import io.onedev.server.manager.impl.DefaultBuildManager;
 import io.onedev.server.manager.impl.DefaultBuildQuerySettingManager;
@@ -134,16 +142,19 @@ import io.onedev.server.manager.impl.DefaultCacheManager;
 import io.onedev.server.manager.impl.DefaultCodeCommentManager;
 import io.onedev.server.manager.impl.DefaultCodeCommentNotificationManager;
 import io.onedev.server.manager.impl.DefaultCodeCommentQuerySettingManager;
+import io.onedev.server.manager.impl.DefaultCodeCommentPositionInfoManager;
 import io.onedev.server.manager.impl.DefaultCodeCommentRelationInfoManager;
 import io.onedev.server.manager.impl.DefaultCodeCommentRelationManager;
 import io.onedev.server.manager.impl.DefaultCodeCommentReplyManager;
 import io.onedev.server.manager.impl.DefaultCommitInfoManager;
 import io.onedev.server.manager.impl.DefaultCommitNotificationManager;
+import io.onedev.server.manager.impl.DefaultCommitQueryManager;
 import io.onedev.server.manager.impl.DefaultCommitQuerySettingManager;
 import io.onedev.server.manager.impl.DefaultConfigurationManager;
 import io.onedev.server.manager.impl.DefaultDataManager;
 import io.onedev.server.manager.impl.DefaultEntityReferenceManager;
 import io.onedev.server.manager.impl.DefaultGroupAuthorizationManager;
+import io.onedev.server.manager.impl.DefaultGitMaintenanceManager;
 import io.onedev.server.manager.impl.DefaultGroupManager;
 import io.onedev.server.manager.impl.DefaultIssueChangeManager;
 import io.onedev.server.manager.impl.DefaultIssueCommentManager;
@@ -165,6 +176,7 @@ import io.onedev.server.manager.impl.DefaultPullRequestManager;
 import io.onedev.server.manager.impl.DefaultPullRequestNotificationManager;
 import io.onedev.server.manager.impl.DefaultPullRequestQuerySettingManager;
 import io.onedev.server.manager.impl.DefaultPullRequestReviewManager;
+import io.onedev.server.manager.impl.DefaultPullRequestUpdateInfoManager;
 import io.onedev.server.manager.impl.DefaultPullRequestUpdateManager;
 import io.onedev.server.manager.impl.DefaultPullRequestWatchManager;
 import io.onedev.server.manager.impl.DefaultSettingManager;
@@ -202,6 +214,10 @@ import io.onedev.server.search.code.DefaultIndexManager;
 import io.onedev.server.search.code.DefaultSearchManager;
 import io.onedev.server.search.code.IndexManager;
 import io.onedev.server.search.code.SearchManager;
+import io.onedev.server.search.commit.CommitIndexManager;
+import io.onedev.server.search.commit.DefaultCommitIndexManager;
+import io.onedev.server.search.entitytext.DefaultEntityTextManager;
+import io.onedev.server.search.entitytext.EntityTextManager;
 import io.onedev.server.security.BasicAuthenticationFilter;
 import io.onedev.server.security.FilterChainConfigurator;
 import io.onedev.server.security.OneAuthorizingRealm;
@@ -321,8 +337,14 @@ public class CoreModule extends AbstractPluginModule {
 		bind(PullRequestChangeManager.class).to(DefaultPullRequestChangeManager.class);
 		bind(CodeCommentReplyManager.class).to(DefaultCodeCommentReplyManager.class);
 		bind(AttachmentManager.class).to(DefaultAttachmentManager.class);
+		bind(ArchiveManager.class).to(DefaultArchiveManager.class);
+		bind(GitMaintenanceManager.class).to(DefaultGitMaintenanceManager.class);
+		bind(BlobContentManager.class).to(DefaultBlobContentManager.class);
+		bind(CommitQueryManager.class).to(DefaultCommitQueryManager.class);
 		bind(CodeCommentRelationInfoManager.class).to(DefaultCodeCommentRelationInfoManager.class);
+		bind(CodeCommentPositionInfoManager.class).to(DefaultCodeCommentPositionInfoManager.class);
 		bind(BuildInfoManager.class).to(DefaultBuildInfoManager.class);
+		bind(PullRequestUpdateInfoManager.class).to(DefaultPullRequestUpdateInfoManager.class);
 		bind(CodeCommentRelationManager.class).to(DefaultCodeCommentRelationManager.class);
 		bind(WorkExecutor.class).to(DefaultWorkExecutor.class);
 		bind(DefaultPullRequestNotificationManager.class);
@@ -375,6 +397,8 @@ public class CoreModule extends AbstractPluginModule {
         
 		bind(IndexManager.class).to(DefaultIndexManager.class);
 		bind(SearchManager.class).to(DefaultSearchManager.class);
+		bind(EntityTextManager.class).to(DefaultEntityTextManager.class);
+		bind(CommitIndexManager.class).to(DefaultCommitIndexManager.class);
 		
 		bind(EntityValidator.class).to(DefaultEntityValidator.class);
 		
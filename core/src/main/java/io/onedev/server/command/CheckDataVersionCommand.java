@@ -13,6 +13,7 @@ import io.onedev.launcher.bootstrap.Bootstrap;
 import io.onedev.server.persistence.DefaultPersistManager;
 import io.onedev.server.persistence.HibernateProperties;
 import io.onedev.server.persistence.IdManager;
+import io.onedev.server.persistence.UnitOfWork;
 import io.onedev.server.persistence.dao.Dao;
 import io.onedev.server.util.validation.EntityValidator;
 
@@ -24,8 +25,9 @@ public class CheckDataVersionCommand extends DefaultPersistManager {
 	@Inject
 	public CheckDataVersionCommand(PhysicalNamingStrategy physicalNamingStrategy,
 			HibernateProperties properties, Interceptor interceptor, 
-			IdManager idManager, Dao dao, EntityValidator validator) {
-		super(physicalNamingStrategy, properties, interceptor, idManager, dao, validator);
+			IdManager idManager, Dao dao, EntityValidator validator, 
+			UnitOfWork unitOfWork) {
+		super(physicalNamingStrategy, properties, interceptor, idManager, dao, validator, unitOfWork);
 	}
 
 	@Override
@@ -14,6 +14,7 @@ import io.onedev.launcher.bootstrap.Bootstrap;
 import io.onedev.server.persistence.DefaultPersistManager;
 import io.onedev.server.persistence.HibernateProperties;
 import io.onedev.server.persistence.IdManager;
+import io.onedev.server.persistence.UnitOfWork;
 import io.onedev.server.persistence.dao.Dao;
 import io.onedev.server.util.validation.EntityValidator;
 
@@ -25,8 +26,9 @@ public class CleanDBCommand extends DefaultPersistManager {
 	@Inject
 	public CleanDBCommand(PhysicalNamingStrategy physicalNamingStrategy,
 			HibernateProperties properties, Interceptor interceptor, 
-			IdManager idManager, Dao dao, EntityValidator validator) {
-		super(physicalNamingStrategy, properties, interceptor, idManager, dao, validator);
+			IdManager idManager, Dao dao, EntityValidator validator, 
+			UnitOfWork unitOfWork) {
+		super(physicalNamingStrategy, properties, interceptor, idManager, dao, validator, unitOfWork);
 	}
 
 	@Override
@@ -10,6 +10,7 @@ import org.hibernate.boot.model.naming.PhysicalNamingStrategy;
 import io.onedev.server.persistence.DefaultPersistManager;
 import io.onedev.server.persistence.HibernateProperties;
 import io.onedev.server.persistence.IdManager;
+import io.onedev.server.persistence.UnitOfWork;
 import io.onedev.server.persistence.dao.Dao;
 import io.onedev.server.util.validation.EntityValidator;
 
@@ -19,8 +20,9 @@ public class DBDialectCommand extends DefaultPersistManager {
 	@Inject
 	public DBDialectCommand(PhysicalNamingStrategy physicalNamingStrategy,
 			HibernateProperties properties, Interceptor interceptor, 
-			IdManager idManager, Dao dao, EntityValidator validator) {
-		super(physicalNamingStrategy, properties, interceptor, idManager, dao, validator);
+			IdManager idManager, Dao dao, EntityValidator validator, 
+			UnitOfWork unitOfWork) {
+		super(physicalNamingStrategy, properties, interceptor, idManager, dao, validator, unitOfWork);
 	}
 
 	@Override
@@ -16,6 +16,7 @@ import io.onedev.server.model.User;
 import io.onedev.server.persistence.DefaultPersistManager;
 import io.onedev.server.persistence.HibernateProperties;
 import io.onedev.server.persistence.IdManager;
+import io.onedev.server.persistence.UnitOfWork;
 import io.onedev.server.persistence.dao.Dao;
 import io.onedev.server.util.validation.EntityValidator;
 
@@ -31,8 +32,8 @@ public class ResetAdminPasswordCommand extends DefaultPersistManager {
 	@Inject
 	public ResetAdminPasswordCommand(PhysicalNamingStrategy physicalNamingStrategy, HibernateProperties properties, 
 			Interceptor interceptor, IdManager idManager, Dao dao, 
-			EntityValidator validator, UserManager userManager, PasswordService passwordService) {
-		super(physicalNamingStrategy, properties, interceptor, idManager, dao, validator);
+			EntityValidator validator, UnitOfWork unitOfWork, UserManager userManager, PasswordService passwordService) {
+		super(physicalNamingStrategy, properties, interceptor, idManager, dao, validator, unitOfWork);
 		this.userManager = userManager;
 		this.passwordService = passwordService;
 	}
@@ -27,6 +27,7 @@ import io.onedev.server.migration.MigrationHelper;
 import io.onedev.server.persistence.DefaultPersistManager;
 import io.onedev.server.persistence.HibernateProperties;
 import io.onedev.server.persistence.IdManager;
+import io.onedev.server.persistence.UnitOfWork;
 import io.onedev.server.persistence.dao.Dao;
 import io.onedev.server.util.validation.EntityValidator;
 import io.onedev.utils.FileUtils;
@@ -46,8 +47,9 @@ public class UpgradeCommand extends DefaultPersistManager {
 	@Inject
 	public UpgradeCommand(PhysicalNamingStrategy physicalNamingStrategy,
 			HibernateProperties properties, Interceptor interceptor, 
-			IdManager idManager, Dao dao, EntityValidator validator, PluginManager pluginManager) {
-		super(physicalNamingStrategy, properties, interceptor, idManager, dao, validator);
+			IdManager idManager, Dao dao, EntityValidator validator, 
+			UnitOfWork unitOfWork, PluginManager pluginManager) {
+		super(physicalNamingStrategy, properties, interceptor, idManager, dao, validator, unitOfWork);
 		appName = pluginManager.getProduct().getName();
 	}
 
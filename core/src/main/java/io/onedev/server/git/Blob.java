@@ -3,6 +3,7 @@ package io.onedev.server.git;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.Charset;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -16,6 +17,8 @@ import org.eclipse.jgit.lib.ObjectReader;
 import com.google.common.base.Charsets;
 import com.google.common.base.Optional;
 
+import io.onedev.server.OneDev;
+import io.onedev.server.manager.BlobContentManager;
 import io.onedev.server.util.ContentDetector;
 
 public class Blob {
@@ -94,6 +97,8 @@ public class Blob {
 		if (mediaType == null) {
 			if (ident.isGitLink() || ident.isSymbolLink() || ident.isTree())
 				mediaType = MediaType.TEXT_PLAIN;
+			else if (!isPartial())
+				mediaType = OneDev.getInstance(BlobContentManager.class).getMediaType(blobId, ident.path, bytes);
 			else
 				mediaType = ContentDetector.detectMediaType(bytes, ident.path);
 		}
@@ -113,14 +118,8 @@ public class Blob {
  				Charset charset = Charsets.UTF_8;
  				optionalText = Optional.of(new Text(charset, new String(bytes, charset)));
  			} else if (!isPartial()) {
-				if (!ContentDetector.isBinary(bytes, ident.path)) {
-					Charset charset = ContentDetector.detectCharset(bytes);
-					if (charset == null)
-						charset = Charset.defaultCharset();
-					optionalText = Optional.of(new Text(charset, new String(bytes, charset)));
-				} else {
-					optionalText = Optional.absent();
-				}
+				BlobContentManager blobContentManager = OneDev.getInstance(BlobContentManager.class);
+				optionalText = Optional.fromNullable(blobContentManager.getText(blobId, ident.path, () -> bytes));
 			} else {
 				optionalText = Optional.absent();
 			}
@@ -128,13 +127,17 @@ public class Blob {
 		return optionalText.orNull();
 	}
 	
+	/**
+	 * Text of a blob. Instances are immutable and may be shared across threads via 
+	 * {@link BlobContentManager}
+	 */
 	public static class Text {
 
 		private final Charset charset;
 		
 		private final String content;
 		
-		private transient List<String> lines;
+		private volatile int[] lineOffsets;
 		
 		public Text(Charset charset, String content) {
 			this.charset = charset;
@@ -149,23 +152,50 @@ public class Blob {
 			return content;
 		}
 
-		public List<String> getLines() {
-			if (lines == null) {
-				lines = new ArrayList<>();
-				StringBuilder builder = new StringBuilder();
-				for (int i=0; i<content.length(); i++) {
-					char ch = content.charAt(i);
-					if (ch == '\n') {
-						lines.add(builder.toString());
-						builder = new StringBuilder();
-					} else {
-						builder.append(ch);
-					}
+		/*
+		 * Start offset of each line, plus an extra element recording end offset of last line. 
+		 * Line separator is not included in lines, and there is no extra empty line if content 
+		 * ends with line separator
+		 */
+		private int[] getLineOffsets() {
+			int[] lineOffsets = this.lineOffsets;
+			if (lineOffsets == null) {
+				List<Integer> offsets = new ArrayList<>();
+				offsets.add(0);
+				int length = content.length();
+				for (int i=0; i<length; i++) {
+					if (content.charAt(i) == '\n')
+						offsets.add(i+1);
 				}
-				if (builder.length() != 0)
-					lines.add(builder.toString());
+				if (offsets.get(offsets.size()-1) != length)
+					offsets.add(length+1);
+				lineOffsets = new int[offsets.size()];
+				for (int i=0; i<lineOffsets.length; i++)
+					lineOffsets[i] = offsets.get(i);
+				this.lineOffsets = lineOffsets;
 			}
-			return lines;
+			return lineOffsets;
+		}
+		
+		/**
+		 * Get lines of this text. Lines are backed by line offsets of the content instead 
+		 * of being stored separately 
+		 */
+		public List<String> getLines() {
+			int[] lineOffsets = getLineOffsets();
+			return new AbstractList<String>() {
+
+				@Override
+				public String get(int index) {
+					return content.substring(lineOffsets[index], lineOffsets[index+1]-1);
+				}
+
+				@Override
+				public int size() {
+					return lineOffsets.length - 1;
+				}
+				
+			};
 		}
 	}
 }
@@ -1,11 +1,16 @@
 package io.onedev.server.git;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
 
+import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 import javax.servlet.Filter;
@@ -18,14 +23,28 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
 import org.apache.shiro.authz.UnauthorizedException;
 import org.eclipse.jgit.http.server.GitSmartHttpTools;
+import org.eclipse.jgit.events.RefsChangedEvent;
+import org.eclipse.jgit.events.RefsChangedListener;
 import org.eclipse.jgit.http.server.ServletUtils;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.storage.pack.PackStatistics;
 import org.eclipse.jgit.transport.PacketLineOut;
+import org.eclipse.jgit.transport.RefAdvertiser;
+import org.eclipse.jgit.transport.UploadPack;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.base.Splitter;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import io.onedev.launcher.loader.Listen;
 import io.onedev.server.OneDev;
+import io.onedev.server.event.RefUpdated;
+import io.onedev.server.event.entity.EntityRemoved;
 import io.onedev.server.git.command.AdvertiseReceiveRefsCommand;
 import io.onedev.server.git.command.AdvertiseUploadRefsCommand;
 import io.onedev.server.git.command.ReceiveCommand;
@@ -46,11 +65,15 @@ import io.onedev.utils.concurrent.PrioritizedRunnable;
 public class GitFilter implements Filter {
 	
 	private static final Logger logger = LoggerFactory.getLogger(GitFilter.class);
+	
+	private static final long UPLOAD_REFS_MEMORY_BUDGET = Runtime.getRuntime().maxMemory()/50;
 
 	private static final int PRIORITY = 2;
 	
 	private static final String INFO_REFS = "info/refs";
 	
+	private static final String GIT_PROTOCOL = "Git-Protocol";
+	
 	private final OneDev oneDev;
 	
 	private final StorageManager storageManager;
@@ -63,6 +86,19 @@ public class GitFilter implements Filter {
 	
 	private final SettingManager configManager;
 	
+	private final Map<Long, UploadMetrics> uploadMetrics = new ConcurrentHashMap<>();
+	
+	/*
+	 * Ref advertisements of projects with many refs can be several megabytes, so the cache 
+	 * is bounded by total size of cached advertisements
+	 */
+	private final Cache<Long, RefAdvertisement> uploadRefsAdvertisements = CacheBuilder.newBuilder()
+			.maximumWeight(UPLOAD_REFS_MEMORY_BUDGET)
+			.<Long, RefAdvertisement>weigher((key, value) -> value.bytes.length)
+			.build();
+	
+	private final AtomicLong uploadRefsVersion = new AtomicLong();
+	
 	@Inject
 	public GitFilter(OneDev oneDev, StorageManager storageManager, ProjectManager projectManager, 
 			WorkExecutor workManager, ServerConfig serverConfig, SettingManager configManager) {
@@ -72,6 +108,19 @@ public class GitFilter implements Filter {
 		this.workExecutor = workManager;
 		this.serverConfig = serverConfig;
 		this.configManager = configManager;
+		
+		/*
+		 * Refs of pull requests and those changed via web UI are updated with JGit without 
+		 * firing RefUpdated event, so we listen to JGit ref changes as well   
+		 */
+		Repository.getGlobalListenerList().addRefsChangedListener(new RefsChangedListener() {
+
+			@Override
+			public void onRefsChanged(RefsChangedEvent event) {
+				invalidateUploadRefsAdvertisement(event.getRepository());
+			}
+			
+		});
 	}
 	
 	private String getPathInfo(HttpServletRequest request) {
@@ -128,6 +177,8 @@ public class GitFilter implements Filter {
 		environments.put("ONEDEV_URL", serverUrl);
 		environments.put("ONEDEV_USER_ID", User.getCurrentId().toString());
 		environments.put("ONEDEV_REPOSITORY_ID", project.getId().toString());
+		if (request.getHeader(GIT_PROTOCOL) != null)
+			environments.put("GIT_PROTOCOL", request.getHeader(GIT_PROTOCOL));
 		
 		// to be compatible with old repository
         environments.put("GITPLEX_CURL", configManager.getSystemSetting().getCurlConfig().getExecutable());
@@ -140,21 +191,39 @@ public class GitFilter implements Filter {
 		if (GitSmartHttpTools.isUploadPack(request)) {
 			if (!SecurityUtils.canReadCode(project.getFacade()))
 				throw new UnauthorizedException("You do not have permission to pull from this project.");
-			workExecutor.submit(new PrioritizedRunnable(PRIORITY) {
-				
-				@Override
-				public void run() {
-					try {
-						new UploadCommand(gitDir, environments)
-								.input(ServletUtils.getInputStream(request))
-								.output(response.getOutputStream())
-								.call();
-					} catch (IOException e) {
-						throw new RuntimeException(e);
+			if (configManager.getSystemSetting().isInProcessGitFetch()) {
+				Long projectId = project.getId();
+				String protocol = request.getHeader(GIT_PROTOCOL);
+				Repository repository = projectManager.getRepository(project);
+				workExecutor.submit(new PrioritizedRunnable(PRIORITY) {
+					
+					@Override
+					public void run() {
+						try {
+							upload(projectId, repository, protocol, request, response);
+						} catch (IOException e) {
+							throw new RuntimeException(e);
+						}
 					}
-				}
-				
-			}).get();
+					
+				}).get();
+			} else {
+				workExecutor.submit(new PrioritizedRunnable(PRIORITY) {
+					
+					@Override
+					public void run() {
+						try {
+							new UploadCommand(gitDir, environments)
+									.input(ServletUtils.getInputStream(request))
+									.output(response.getOutputStream())
+									.call();
+						} catch (IOException e) {
+							throw new RuntimeException(e);
+						}
+					}
+					
+				}).get();
+			}
 		} else {
 			if (!SecurityUtils.canWriteCode(project.getFacade())) {
 				throw new UnauthorizedException("You do not have permission to push to this project.");
@@ -177,6 +246,31 @@ public class GitFilter implements Filter {
 		}
 	}
 	
+	/*
+	 * Serve upload pack with JGit using cached repository of the project. Compared to native 
+	 * git, this saves process startup and benefits from objects and pack indexes already cached 
+	 * in memory. Reachability bitmaps written by repack are used if available 
+	 */
+	private void upload(Long projectId, Repository repository, @Nullable String protocol, 
+			HttpServletRequest request, HttpServletResponse response) throws IOException {
+		long time = System.currentTimeMillis();
+		
+		UploadPack uploadPack = newUploadPack(repository, protocol);
+		uploadPack.upload(ServletUtils.getInputStream(request), response.getOutputStream(), null);
+		
+		long bytes;
+		PackStatistics statistics = uploadPack.getStatistics();
+		if (statistics != null)
+			bytes = statistics.getTotalBytes();
+		else
+			bytes = 0;
+		long duration = System.currentTimeMillis() - time;
+		UploadMetrics metrics = uploadMetrics.computeIfAbsent(projectId, key -> new UploadMetrics());
+		metrics.record(bytes, duration);
+		logger.debug("Served upload pack (project id: {}, bytes: {}, duration: {}ms, {})", 
+				projectId, bytes, duration, metrics);
+	}
+	
 	private void writeInitial(HttpServletResponse response, String service) throws IOException {
 		doNotCache(response);
 		response.setHeader("Content-Type", "application/x-" + service + "-advertisement");			
@@ -187,6 +281,73 @@ public class GitFilter implements Filter {
 		pack.end();
 	}
 	
+	private UploadPack newUploadPack(Repository repository, @Nullable String protocol) {
+		UploadPack uploadPack = new UploadPack(repository);
+		uploadPack.setBiDirectionalPipe(false);
+		if (protocol != null)
+			uploadPack.setExtraParameters(Splitter.on(':').omitEmptyStrings().splitToList(protocol));
+		return uploadPack;
+	}
+	
+	private Map<String, String> getProtocolEnvironments(@Nullable String protocol) {
+		Map<String, String> environments = new HashMap<>();
+		if (protocol != null)
+			environments.put("GIT_PROTOCOL", protocol);
+		return environments;
+	}
+	
+	private void advertiseUploadRefs(Project project, boolean inProcess, @Nullable String protocol, 
+			OutputStream os) throws IOException {
+		if (inProcess) {
+			PacketLineOut packetLineOut = new PacketLineOut(os);
+			newUploadPack(projectManager.getRepository(project), protocol)
+					.sendAdvertisedRefs(new RefAdvertiser.PacketLineOutRefAdvertiser(packetLineOut));
+		} else {
+			new AdvertiseUploadRefsCommand(project.getGitDir(), getProtocolEnvironments(protocol))
+					.output(os).call();
+		}
+	}
+	
+	/*
+	 * Most fetches happen between pushes, so ref advertisement is cached until refs of the 
+	 * project change
+	 */
+	private byte[] getUploadRefsAdvertisement(Project project, boolean inProcess) throws IOException {
+		RefAdvertisement advertisement = uploadRefsAdvertisements.getIfPresent(project.getId());
+		if (advertisement == null || advertisement.inProcess != inProcess) {
+			long version = uploadRefsVersion.get();
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			advertiseUploadRefs(project, inProcess, null, baos);
+			advertisement = new RefAdvertisement(inProcess, baos.toByteArray());
+			synchronized (uploadRefsAdvertisements) {
+				// Do not cache if refs are changed while we are advertising
+				if (version == uploadRefsVersion.get())
+					uploadRefsAdvertisements.put(project.getId(), advertisement);
+			}
+		}
+		return advertisement.bytes;
+	}
+	
+	private void invalidateUploadRefsAdvertisement(Long projectId) {
+		synchronized (uploadRefsAdvertisements) {
+			uploadRefsVersion.incrementAndGet();
+			uploadRefsAdvertisements.invalidate(projectId);
+		}
+	}
+	
+	private void invalidateUploadRefsAdvertisement(Repository repository) {
+		// git dir of a project is <projects dir>/<project id>/git
+		File projectDir = repository.getDirectory()!=null?repository.getDirectory().getParentFile():null;
+		if (projectDir != null && NumberUtils.isDigits(projectDir.getName())) {
+			invalidateUploadRefsAdvertisement(Long.valueOf(projectDir.getName()));
+		} else {
+			synchronized (uploadRefsAdvertisements) {
+				uploadRefsVersion.incrementAndGet();
+				uploadRefsAdvertisements.invalidateAll();
+			}
+		}
+	}
+	
 	private void processRefs(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
 		String pathInfo = request.getRequestURI().substring(request.getContextPath().length());
 		pathInfo = StringUtils.stripStart(pathInfo, "/");
@@ -201,7 +362,17 @@ public class GitFilter implements Filter {
 			if (!SecurityUtils.canReadCode(project.getFacade())) 
 				throw new UnauthorizedException("You do not have permission to pull from this project.");
 			writeInitial(response, service);
-			new AdvertiseUploadRefsCommand(gitDir).output(response.getOutputStream()).call();
+			boolean inProcess = configManager.getSystemSetting().isInProcessGitFetch();
+			String protocol = request.getHeader(GIT_PROTOCOL);
+			if (protocol != null && Splitter.on(':').splitToList(protocol).contains("version=2")) {
+				/*
+				 * Protocol v2 only advertises capabilities here, refs are listed later via 
+				 * ls-refs command with prefixes specified by client
+				 */
+				advertiseUploadRefs(project, inProcess, protocol, response.getOutputStream());
+			} else {
+				response.getOutputStream().write(getUploadRefsAdvertisement(project, inProcess));
+			}
 		} else {
 			if (!SecurityUtils.canWriteCode(project.getFacade())) {
 				throw new UnauthorizedException("You do not have permission to push to this project.");
@@ -246,5 +417,55 @@ public class GitFilter implements Filter {
 	public void destroy() {
 	}
 	
+	@Listen
+	public void on(RefUpdated event) {
+		invalidateUploadRefsAdvertisement(event.getProject().getId());
+	}
+	
+	@Listen
+	public void on(EntityRemoved event) {
+		if (event.getEntity() instanceof Project) {
+			uploadMetrics.remove(event.getEntity().getId());
+			invalidateUploadRefsAdvertisement(event.getEntity().getId());
+		}
+	}
+	
+	private static class RefAdvertisement {
+		
+		final boolean inProcess;
+		
+		final byte[] bytes;
+		
+		RefAdvertisement(boolean inProcess, byte[] bytes) {
+			this.inProcess = inProcess;
+			this.bytes = bytes;
+		}
+		
+	}
+	
+	private static class UploadMetrics {
+		
+		private final AtomicLong requests = new AtomicLong();
+		
+		private final AtomicLong bytes = new AtomicLong();
+		
+		private final AtomicLong millis = new AtomicLong();
+		
+		void record(long bytes, long millis) {
+			requests.incrementAndGet();
+			this.bytes.addAndGet(bytes);
+			this.millis.addAndGet(millis);
+		}
+
+		@Override
+		public String toString() {
+			long requests = this.requests.get();
+			long millis = this.millis.get();
+			return String.format("total requests: %d, average duration: %dms, throughput: %dKB/s", 
+					requests, millis/requests, millis!=0? bytes.get()*1000/1024/millis: 0);
+		}
+		
+	}
+	
 }
  
\ No newline at end of file
@@ -10,6 +10,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.function.Predicate;
 import java.util.regex.Pattern;
 
 import javax.annotation.Nullable;
@@ -40,6 +41,7 @@ import org.eclipse.jgit.revwalk.RevObject;
 import org.eclipse.jgit.revwalk.RevWalk;
 import org.eclipse.jgit.revwalk.RevWalkUtils;
 import org.eclipse.jgit.revwalk.filter.RevFilter;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
 import org.eclipse.jgit.treewalk.CanonicalTreeParser;
 import org.eclipse.jgit.treewalk.TreeWalk;
 import org.eclipse.jgit.treewalk.filter.TreeFilter;
@@ -497,6 +499,72 @@ public class GitUtils {
 		return changedFiles;
     }
 
+    /**
+     * Find first changed file between specified commits satisfying specified condition. The tree 
+     * walk stops as soon as such a file is found, without listing remaining changed files.
+     * 
+     * @param repository
+     * 			repository to find changed file in
+     * @param oldCommitId
+     * 			old commit
+     * @param newCommitId
+     * 			new commit
+     * @param condition
+     * 			condition of the changed file to find
+     * @return
+     * 			path of first changed file satisfying the condition, or <tt>null</tt> if not found
+     */
+    @Nullable
+    public static String findChangedFile(Repository repository, ObjectId oldCommitId, ObjectId newCommitId, 
+    		Predicate<String> condition) {
+		try (	RevWalk revWalk = new RevWalk(repository);
+				TreeWalk treeWalk = new TreeWalk(repository)) {
+			treeWalk.setFilter(TreeFilter.ANY_DIFF);
+			treeWalk.setRecursive(true);
+			treeWalk.addTree(revWalk.parseCommit(oldCommitId).getTree());
+			treeWalk.addTree(revWalk.parseCommit(newCommitId).getTree());
+			while (treeWalk.next()) {
+				String path = treeWalk.getPathString();
+				if (condition.test(path))
+					return path;
+			}
+			return null;
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+    }
+    
+    /**
+     * Open specified repository with objects received by current push visible. Since git 2.11, pushed 
+     * objects are placed into a quarantine directory when pre-receive hook is fired, and the 
+     * directory is only exposed via environments passed to the hook.
+     * 
+     * @param gitDir
+     * 			git directory of the repository
+     * @param gitEnvs
+     * 			environments passed from pre-receive hook
+     * @return
+     * 			opened repository, which should be closed by caller
+     */
+    public static Repository openQuarantinedRepository(File gitDir, Map<String, String> gitEnvs) {
+    	FileRepositoryBuilder builder = new FileRepositoryBuilder().setGitDir(gitDir).setMustExist(true);
+    	String objectDirectory = gitEnvs.get("GIT_OBJECT_DIRECTORY");
+    	if (objectDirectory != null)
+    		builder.setObjectDirectory(new File(objectDirectory));
+    	String alternateObjectDirectories = gitEnvs.get("GIT_ALTERNATE_OBJECT_DIRECTORIES");
+    	if (alternateObjectDirectories != null) {
+    		for (String alternateObjectDirectory: Splitter.on(File.pathSeparator).omitEmptyStrings()
+    				.split(alternateObjectDirectories)) {
+    			builder.addAlternateObjectDirectory(new File(alternateObjectDirectory));
+    		}
+    	}
+    	try {
+			return builder.build();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+    }
+    
     public static boolean isValid(File gitDir) {
     	return new File(gitDir, "objects").exists();
     }
@@ -2,6 +2,7 @@ package io.onedev.server.git.command;
 
 import java.io.File;
 import java.io.OutputStream;
+import java.util.Map;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -21,6 +22,10 @@ public class AdvertiseUploadRefsCommand extends GitCommand<Void> {
 		super(gitDir);
 	}
 
+	public AdvertiseUploadRefsCommand(File gitDir, Map<String, String> environments) {
+		super(gitDir, environments);
+	}
+
 	public AdvertiseUploadRefsCommand output(OutputStream output) {
 		this.output = output;
 		return this;
@@ -26,6 +26,8 @@ public class CloneCommand extends GitCommand<Void> {
 	
 	private String branch;
 	
+	private String reference;
+	
 	public CloneCommand(File gitDir) {
 		super(gitDir);
 	}
@@ -60,6 +62,17 @@ public class CloneCommand extends GitCommand<Void> {
 		return this;
 	}
 	
+	/**
+	 * Borrow objects from specified repository via git alternates instead of copying them
+	 * 
+	 * @param reference
+	 * 			path of the repository to borrow objects from
+	 */
+	public CloneCommand reference(String reference) {
+		this.reference = reference;
+		return this;
+	}
+	
 	@Override
 	public Void call() {
 		Preconditions.checkNotNull(from, "from has to be specified.");
@@ -75,6 +88,8 @@ public class CloneCommand extends GitCommand<Void> {
 			cmd.addArgs("--no-checkout");
 		if (branch != null)
 			cmd.addArgs("-b", branch);
+		if (reference != null)
+			cmd.addArgs("--reference", reference);
 		
 		cmd.addArgs(from);
 		cmd.addArgs(".");
@@ -0,0 +1,42 @@
+package io.onedev.server.git.command;
+
+import java.io.File;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.onedev.utils.command.Commandline;
+import io.onedev.utils.command.LineConsumer;
+
+public class PackRefsCommand extends GitCommand<Void> {
+
+	private static final Logger logger = LoggerFactory.getLogger(PackRefsCommand.class);
+	
+	public PackRefsCommand(File gitDir) {
+		super(gitDir);
+	}
+
+	@Override
+	public Void call() {
+		Commandline cmd = cmd().addArgs("pack-refs", "--all");
+		
+		cmd.execute(new LineConsumer() {
+
+			@Override
+			public void consume(String line) {
+				logger.trace(line);
+			}
+			
+		}, new LineConsumer() {
+
+			@Override
+			public void consume(String line) {
+				logger.error(line);
+			}
+			
+		}).checkReturnCode();
+		
+		return null;
+	}
+
+}
@@ -0,0 +1,56 @@
+package io.onedev.server.git.command;
+
+import java.io.File;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.onedev.utils.command.Commandline;
+import io.onedev.utils.command.LineConsumer;
+
+public class PruneCommand extends GitCommand<Void> {
+
+	private static final Logger logger = LoggerFactory.getLogger(PruneCommand.class);
+	
+	private String expire;
+	
+	public PruneCommand(File gitDir) {
+		super(gitDir);
+	}
+
+	/**
+	 * Only prune loose objects older than specified date, for instance <tt>2.weeks.ago</tt>. 
+	 * This avoids removing objects being written by concurrent pushes before they are 
+	 * referenced 
+	 */
+	public PruneCommand expire(String expire) {
+		this.expire = expire;
+		return this;
+	}
+	
+	@Override
+	public Void call() {
+		Commandline cmd = cmd().addArgs("prune");
+		if (expire != null)
+			cmd.addArgs("--expire", expire);
+		
+		cmd.execute(new LineConsumer() {
+
+			@Override
+			public void consume(String line) {
+				logger.trace(line);
+			}
+			
+		}, new LineConsumer() {
+
+			@Override
+			public void consume(String line) {
+				logger.error(line);
+			}
+			
+		}).checkReturnCode();
+		
+		return null;
+	}
+
+}
@@ -0,0 +1,104 @@
+package io.onedev.server.git.command;
+
+import java.io.File;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.onedev.utils.command.Commandline;
+import io.onedev.utils.command.LineConsumer;
+
+public class RepackCommand extends GitCommand<Void> {
+
+	private static final Logger logger = LoggerFactory.getLogger(RepackCommand.class);
+	
+	private boolean all;
+	
+	private boolean deleteRedundant;
+	
+	private boolean local;
+	
+	private boolean writeBitmap;
+	
+	private boolean keepUnreachable;
+	
+	public RepackCommand(File gitDir) {
+		super(gitDir);
+	}
+
+	/**
+	 * Pack everything referenced into a single pack
+	 */
+	public RepackCommand all(boolean all) {
+		this.all = all;
+		return this;
+	}
+	
+	/**
+	 * Remove redundant packs and loose objects after packing
+	 */
+	public RepackCommand deleteRedundant(boolean deleteRedundant) {
+		this.deleteRedundant = deleteRedundant;
+		return this;
+	}
+	
+	/**
+	 * Do not pack objects borrowed from alternate object stores
+	 */
+	public RepackCommand local(boolean local) {
+		this.local = local;
+		return this;
+	}
+	
+	/**
+	 * Write reachability bitmap index to speed up counting objects when serving clone and fetch. 
+	 * Only takes effect when packing everything into a single pack
+	 */
+	public RepackCommand writeBitmap(boolean writeBitmap) {
+		this.writeBitmap = writeBitmap;
+		return this;
+	}
+	
+	/**
+	 * Keep unreachable objects of existing packs in the new pack instead of removing them. 
+	 * Requires git 2.10 or higher
+	 */
+	public RepackCommand keepUnreachable(boolean keepUnreachable) {
+		this.keepUnreachable = keepUnreachable;
+		return this;
+	}
+	
+	@Override
+	public Void call() {
+		Commandline cmd = cmd().addArgs("repack", "-q");
+		if (all)
+			cmd.addArgs("-a");
+		if (deleteRedundant)
+			cmd.addArgs("-d");
+		if (local)
+			cmd.addArgs("-l");
+		if (writeBitmap)
+			cmd.addArgs("-b");
+		if (keepUnreachable)
+			cmd.addArgs("--keep-unreachable");
+		
+		cmd.execute(new LineConsumer() {
+
+			@Override
+			public void consume(String line) {
+				logger.trace(line);
+			}
+			
+		}, new LineConsumer() {
+
+			@Override
+			public void consume(String line) {
+				logger.error(line);
+			}
+			
+		}).checkReturnCode();
+		
+		return null;
+	}
+
+}
@@ -0,0 +1,44 @@
+package io.onedev.server.git.command;
+
+import java.io.File;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.onedev.utils.command.Commandline;
+import io.onedev.utils.command.LineConsumer;
+
+public class WriteCommitGraphCommand extends GitCommand<Void> {
+
+	private static final Logger logger = LoggerFactory.getLogger(WriteCommitGraphCommand.class);
+	
+	public static final String MIN_VERSION = "2.19.0";
+	
+	public WriteCommitGraphCommand(File gitDir) {
+		super(gitDir);
+	}
+
+	@Override
+	public Void call() {
+		Commandline cmd = cmd().addArgs("commit-graph", "write", "--reachable");
+		
+		cmd.execute(new LineConsumer() {
+
+			@Override
+			public void consume(String line) {
+				logger.trace(line);
+			}
+			
+		}, new LineConsumer() {
+
+			@Override
+			public void consume(String line) {
+				logger.error(line);
+			}
+			
+		}).checkReturnCode();
+		
+		return null;
+	}
+
+}
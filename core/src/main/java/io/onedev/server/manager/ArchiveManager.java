@@ -0,0 +1,32 @@
+package io.onedev.server.manager;
+
+import java.nio.channels.FileChannel;
+
+import org.eclipse.jgit.lib.ObjectId;
+
+import io.onedev.server.model.Project;
+
+public interface ArchiveManager {
+
+	public static final String FORMAT_ZIP = "zip";
+	
+	public static final String FORMAT_TGZ = "tgz";
+	
+	/**
+	 * Open archive of specified tree. Archives are cached on disk and shared by all projects 
+	 * as tree id is content addressed. Concurrent calls for the same archive wait for a 
+	 * single generation. 
+	 * 
+	 * @param project
+	 * 			project containing specified tree
+	 * @param treeId
+	 * 			id of tree to be archived
+	 * @param format
+	 * 			archive format, either {@link #FORMAT_ZIP} or {@link #FORMAT_TGZ}
+	 * @return
+	 * 			channel of the archive file, which is opened while the archive can not be 
+	 * 			evicted from cache. Caller is responsible for closing it
+	 */
+	FileChannel openArchive(Project project, ObjectId treeId, String format);
+	
+}
@@ -0,0 +1,47 @@
+package io.onedev.server.manager;
+
+import java.util.function.Supplier;
+
+import javax.annotation.Nullable;
+
+import org.apache.tika.mime.MediaType;
+import org.eclipse.jgit.lib.ObjectId;
+
+import io.onedev.server.git.Blob;
+
+/**
+ * Cache detected media type and decoded text of blobs across requests. As blob id is 
+ * content addressed, cached information never needs to be invalidated.
+ */
+public interface BlobContentManager {
+
+	/**
+	 * Get media type of specified blob
+	 * 
+	 * @param blobId
+	 * 			id of the blob
+	 * @param path
+	 * 			path of the blob, used to help detecting media type
+	 * @param bytes
+	 * 			full content of the blob
+	 * @return
+	 * 			media type of the blob
+	 */
+	MediaType getMediaType(ObjectId blobId, String path, byte[] bytes);
+	
+	/**
+	 * Get text of specified blob
+	 * 
+	 * @param blobId
+	 * 			id of the blob
+	 * @param path
+	 * 			path of the blob, used to help deciding if the blob is binary
+	 * @param bytesSupplier
+	 * 			supplier of full content of the blob, only called if text of the blob is not cached 
+	 * @return
+	 * 			text of the blob, or <tt>null</tt> if the blob is binary
+	 */
+	@Nullable
+	Blob.Text getText(ObjectId blobId, String path, Supplier<byte[]> bytesSupplier);
+	
+}
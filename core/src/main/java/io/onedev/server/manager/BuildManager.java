@@ -1,5 +1,6 @@
 package io.onedev.server.manager;
 
+import java.util.Collection;
 import java.util.List;
 
 import javax.annotation.Nullable;
@@ -35,4 +36,12 @@ public interface BuildManager extends EntityManager<Build> {
 	
 	void cleanupBuilds(Configuration configuration);
 	
+	/**
+	 * Save specified builds in a single transaction
+	 * 
+	 * @param builds
+	 * 			builds to be saved
+	 */
+	void save(Collection<Build> builds);
+	
 }
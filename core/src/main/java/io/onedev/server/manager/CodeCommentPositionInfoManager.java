@@ -0,0 +1,24 @@
+package io.onedev.server.manager;
+
+import javax.annotation.Nullable;
+
+import org.eclipse.jgit.lib.ObjectId;
+
+import io.onedev.server.model.Project;
+import io.onedev.server.model.support.CodeCommentPositions;
+
+public interface CodeCommentPositionInfoManager {
+
+	/**
+	 * Get persisted code comment positions of specified file at specified commit
+	 * 
+	 * @return
+	 * 			persisted positions, or <tt>null</tt> if positions of specified file 
+	 * 			at specified commit are not calculated yet
+	 */
+	@Nullable
+	CodeCommentPositions getPositions(Project project, ObjectId commitId, String path);
+	
+	void setPositions(Project project, ObjectId commitId, String path, CodeCommentPositions positions);
+	
+}
@@ -18,7 +18,24 @@ public interface CommitInfoManager {
 	
 	List<String> getFiles(Project project);
 	
-	int getEdits(ProjectFacade project, UserFacade user, String path);
+	/**
+	 * Get contributions of specified users to specified paths, calculated in a single read 
+	 * transaction. For each path, edits of users are looked up on the path itself, or on 
+	 * its closest parent directory if none of the users edited the path. Edits of a 
+	 * directory include edits of all files under it
+	 * 
+	 * @param project
+	 * 			project to get contributions in
+	 * @param users
+	 * 			users to get contributions of
+	 * @param paths
+	 * 			map of path to its weight, contribution of a user to a path is calculated 
+	 * 			as user's edits of the path multiplied by weight of the path
+	 * @return
+	 * 			map of user id to sum of contributions to all specified paths
+	 */
+	Map<Long, Long> getContributions(ProjectFacade project, Collection<UserFacade> users, 
+			Map<String, Integer> paths);
 	
 	int getCommitCount(Project project);
 	
@@ -81,4 +98,19 @@ public interface CommitInfoManager {
 
 	Collection<ObjectId> getFixCommits(Project project, Long issueNumber);
 
+	/**
+	 * Get issues fixed by commits reachable from specified until commit but not from specified 
+	 * since commit
+	 * 
+	 * @param project
+	 * 			project to get fixed issues in
+	 * @param sinceCommitId
+	 * 			commits reachable from this commit will be excluded
+	 * @param untilCommitId
+	 * 			commits reachable from this commit will be included
+	 * @return
+	 * 			numbers of fixed issues
+	 */
+	Collection<Long> getFixedIssueNumbers(Project project, ObjectId sinceCommitId, ObjectId untilCommitId);
+
 }
\ No newline at end of file
@@ -0,0 +1,33 @@
+package io.onedev.server.manager;
+
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import org.eclipse.jgit.revwalk.RevCommit;
+
+import io.onedev.server.model.Project;
+
+public interface CommitQueryManager {
+	
+	/**
+	 * Query commits in process. Walk state of the query is retained for a while, so that 
+	 * querying more commits with the same query continues from where last query stopped, 
+	 * instead of walking from the beginning again 
+	 * 
+	 * @param project
+	 * 			project to query commits in
+	 * @param query
+	 * 			commit query string, <tt>null</tt> to query all commits
+	 * @param compareWith
+	 * 			revision to start walking from if query does not specify any revisions, 
+	 * 			<tt>null</tt> to start walking from all branches
+	 * @param count
+	 * 			number of commits to return
+	 * @return
+	 * 			first <tt>count</tt> commits matching the query, or all matching commits 
+	 * 			if there are less than <tt>count</tt> commits
+	 */
+	List<RevCommit> query(Project project, @Nullable String query, @Nullable String compareWith, int count);
+	
+}
@@ -0,0 +1,10 @@
+package io.onedev.server.manager;
+
+/**
+ * Maintains git repositories of projects periodically, including repacking objects, writing 
+ * commit graph, pruning unreachable loose objects and packing refs. A repository is only 
+ * maintained if it accumulates too many loose objects or packs
+ */
+public interface GitMaintenanceManager {
+
+}
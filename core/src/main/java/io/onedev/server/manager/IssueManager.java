@@ -30,6 +30,23 @@ public interface IssueManager extends EntityManager<Issue> {
 	
 	int count(Project project, User user, @Nullable IssueCriteria issueCriteria);
 	
+	/**
+	 * Count issues matching each of specified criterias with a single query
+	 * 
+	 * @return
+	 * 			list of issue counts, in the same order as specified criterias
+	 */
+	List<Integer> count(Project project, User user, List<IssueCriteria> issueCriterias);
+	
+	/**
+	 * Query first page of issues for each of specified queries. Fields of all returned 
+	 * issues are populated with a single query
+	 * 
+	 * @return
+	 * 			list of issue lists, in the same order as specified queries
+	 */
+	List<List<Issue>> query(Project project, User user, List<? extends EntityQuery<Issue>> issueQueries, int maxResults);
+	
 	List<Issue> query(Project project, @Nullable String term, int count);
 
 	int count(Milestone milestone, User user, @Nullable StateSpec.Category category);
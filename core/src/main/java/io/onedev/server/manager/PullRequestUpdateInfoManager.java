@@ -0,0 +1,29 @@
+package io.onedev.server.manager;
+
+import java.util.Collection;
+
+import io.onedev.server.git.command.FileChange;
+import io.onedev.server.model.PullRequestUpdate;
+
+public interface PullRequestUpdateInfoManager {
+
+	/**
+	 * Get file changes of specified update compared to its base commit. Changes are calculated 
+	 * on first access and persisted, so that subsequent calls do not need to diff again
+	 * 
+	 * @return
+	 * 			file changes of specified update
+	 */
+	Collection<FileChange> getFileChanges(PullRequestUpdate update);
+	
+	/**
+	 * Get changed files of specified update since previous update, excluding changes introduced 
+	 * by commits from target branch. Changed files are calculated on first access and persisted, 
+	 * so that subsequent calls do not need to walk trees again 
+	 * 
+	 * @return
+	 * 			changed files of specified update
+	 */
+	Collection<String> getChangedFiles(PullRequestUpdate update);
+	
+}
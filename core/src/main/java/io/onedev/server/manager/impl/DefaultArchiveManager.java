@@ -0,0 +1,158 @@
+package io.onedev.server.manager.impl;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.UUID;
+import java.util.concurrent.locks.Lock;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.eclipse.jgit.api.ArchiveCommand;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.archive.TgzFormat;
+import org.eclipse.jgit.archive.ZipFormat;
+import org.eclipse.jgit.lib.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.onedev.launcher.loader.Listen;
+import io.onedev.server.event.system.SystemStarted;
+import io.onedev.server.manager.ArchiveManager;
+import io.onedev.server.manager.StorageManager;
+import io.onedev.server.model.Project;
+import io.onedev.utils.FileUtils;
+import io.onedev.utils.LockUtils;
+
+@Singleton
+public class DefaultArchiveManager implements ArchiveManager {
+
+	private static final Logger logger = LoggerFactory.getLogger(DefaultArchiveManager.class);
+	
+	private static final long MAX_CACHE_SIZE = 1024L*1024L*1024L;
+	
+	private static final String ARCHIVES_DIR = "archives";
+	
+	private static final String TEMP_SUFFIX = ".tmp";
+	
+	private final StorageManager storageManager;
+	
+	static {
+		ArchiveCommand.registerFormat(FORMAT_ZIP, new ZipFormat());
+		ArchiveCommand.registerFormat(FORMAT_TGZ, new TgzFormat());
+	}
+	
+	@Inject
+	public DefaultArchiveManager(StorageManager storageManager) {
+		this.storageManager = storageManager;
+	}
+	
+	private File getArchivesDir() {
+		File archivesDir = new File(storageManager.getStorageDir(), ARCHIVES_DIR);
+		FileUtils.createDir(archivesDir);
+		return archivesDir;
+	}
+	
+	private Lock getLock(String fileName) {
+		return LockUtils.getLock("archive:" + fileName);
+	}
+	
+	@Override
+	public FileChannel openArchive(Project project, ObjectId treeId, String format) {
+		String fileName = treeId.name() + "." + format;
+		File archiveFile = new File(getArchivesDir(), fileName);
+		Lock lock = getLock(fileName);
+		lock.lock();
+		try {
+			if (!archiveFile.exists()) {
+				long time = System.currentTimeMillis();
+				File tempFile = new File(getArchivesDir(), UUID.randomUUID().toString() + TEMP_SUFFIX);
+				try {
+					try (OutputStream os = new FileOutputStream(tempFile)) {
+						ArchiveCommand archive = Git.wrap(project.getRepository()).archive();
+						archive.setFormat(format);
+						archive.setTree(treeId);
+						archive.setOutputStream(os);
+						archive.call();
+					}
+					Files.move(tempFile.toPath(), archiveFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+				} catch (IOException | GitAPIException e) {
+					throw new RuntimeException(e);
+				} finally {
+					if (tempFile.exists())
+						FileUtils.deleteFile(tempFile);
+				}
+				logger.debug("Generated archive '{}' in {}ms", fileName, System.currentTimeMillis()-time);
+				evict(archiveFile);
+			} else {
+				// Record last access time for LRU eviction
+				archiveFile.setLastModified(System.currentTimeMillis());
+			}
+			
+			/*
+			 * Open the archive while holding its lock, as eviction only removes archives whose 
+			 * lock can be acquired. Once opened, the archive is still readable on Unix like 
+			 * systems if evicted, and fails to be deleted silently on Windows  
+			 */
+			return FileChannel.open(archiveFile.toPath(), StandardOpenOption.READ);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/*
+	 * Remove least recently used archives if total size exceeds the limit. Archives being 
+	 * generated or opened at the same time are skipped
+	 */
+	private synchronized void evict(File excludeFile) {
+		File[] files = getArchivesDir().listFiles();
+		if (files == null)
+			return;
+		long totalSize = 0;
+		for (File file: files)
+			totalSize += file.length();
+		if (totalSize > MAX_CACHE_SIZE) {
+			Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+			for (File file: files) {
+				if (totalSize <= MAX_CACHE_SIZE)
+					break;
+				if (!file.equals(excludeFile) && !file.getName().endsWith(TEMP_SUFFIX)) {
+					// try lock to avoid dead lock with threads holding lock of other archives
+					Lock lock = getLock(file.getName());
+					if (lock.tryLock()) {
+						try {
+							long length = file.length();
+							if (file.delete())
+								totalSize -= length;
+						} finally {
+							lock.unlock();
+						}
+					}
+				}
+			}
+		}
+	}
+
+	@Listen
+	public void on(SystemStarted event) {
+		File[] files = getArchivesDir().listFiles();
+		if (files != null) {
+			for (File file: files) {
+				if (file.getName().endsWith(TEMP_SUFFIX))
+					FileUtils.deleteFile(file);
+			}
+		}
+	}
+	
+}
@@ -0,0 +1,103 @@
+package io.onedev.server.manager.impl;
+
+import java.nio.charset.Charset;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import javax.inject.Singleton;
+
+import org.apache.tika.mime.MediaType;
+import org.eclipse.jgit.lib.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Optional;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+
+import io.onedev.server.git.Blob;
+import io.onedev.server.manager.BlobContentManager;
+import io.onedev.server.util.ContentDetector;
+
+@Singleton
+public class DefaultBlobContentManager implements BlobContentManager {
+
+	private static final Logger logger = LoggerFactory.getLogger(DefaultBlobContentManager.class);
+	
+	private static final long MEMORY_BUDGET = Runtime.getRuntime().maxMemory()/20;
+	
+	private static final int STATS_LOG_INTERVAL = 1000;
+	
+	private static final int MAX_CACHED_MEDIA_TYPES = 10000;
+	
+	private final Cache<String, MediaType> mediaTypeCache = CacheBuilder.newBuilder()
+			.maximumSize(MAX_CACHED_MEDIA_TYPES)
+			.build();
+	
+	private final Cache<String, Optional<Blob.Text>> textCache = CacheBuilder.newBuilder()
+			.maximumWeight(MEMORY_BUDGET)
+			.weigher(new Weigher<String, Optional<Blob.Text>>() {
+
+				@Override
+				public int weigh(String key, Optional<Blob.Text> value) {
+					long weight = 64;
+					if (value.isPresent())
+						weight += value.get().getContent().length()*2L;
+					return (int) Math.min(weight, Integer.MAX_VALUE);
+				}
+				
+			})
+			.recordStats()
+			.build();
+	
+	private final AtomicLong loads = new AtomicLong();
+	
+	/*
+	 * Media type and binary detection takes file name into account, so it is part of 
+	 * the cache key
+	 */
+	private String getKey(ObjectId blobId, String path) {
+		int index = path.lastIndexOf('/');
+		return blobId.name() + ":" + (index != -1? path.substring(index+1): path);
+	}
+	
+	private MediaType getMediaType(String key, String path, byte[] bytes) {
+		try {
+			return mediaTypeCache.get(key, () -> ContentDetector.detectMediaType(bytes, path));
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	@Override
+	public MediaType getMediaType(ObjectId blobId, String path, byte[] bytes) {
+		return getMediaType(getKey(blobId, path), path, bytes);
+	}
+
+	@Override
+	public Blob.Text getText(ObjectId blobId, String path, Supplier<byte[]> bytesSupplier) {
+		String key = getKey(blobId, path);
+		try {
+			return textCache.get(key, () -> {
+				if (loads.incrementAndGet() % STATS_LOG_INTERVAL == 0) {
+					logger.debug("Blob text cache statistics (weight budget: {}, {})", 
+							MEMORY_BUDGET, textCache.stats());
+				}
+				byte[] bytes = bytesSupplier.get();
+				if (bytes.length == 0 || !ContentDetector.isBinary(getMediaType(key, path, bytes))) {
+					Charset charset = ContentDetector.detectCharset(bytes);
+					if (charset == null)
+						charset = Charset.defaultCharset();
+					return Optional.of(new Blob.Text(charset, new String(bytes, charset)));
+				} else {
+					return Optional.<Blob.Text>absent();
+				}
+			}).orNull();
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+}
@@ -1,6 +1,7 @@
 package io.onedev.server.manager.impl;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 import javax.inject.Inject;
@@ -108,6 +109,13 @@ public class DefaultBuildManager extends AbstractEntityManager<Build> implements
 			listenerRegistry.post(new BuildFinished(build));
 	}
 	
+	@Transactional
+	@Override
+	public void save(Collection<Build> builds) {
+		for (Build build: builds)
+			save(build);
+	}
+	
 	@Sessional
 	@Override
 	public Build findByVersion(Configuration configuration, String version) {
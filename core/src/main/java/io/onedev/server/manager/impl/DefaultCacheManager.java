@@ -1,5 +1,6 @@
 package io.onedev.server.manager.impl;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -9,9 +10,11 @@ import java.util.Map;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
+import org.eclipse.jgit.lib.ObjectId;
 import org.hibernate.query.Query;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -84,6 +87,10 @@ public class DefaultCacheManager implements CacheManager {
 	
 	private final Map<Long, BuildFacade> builds= new HashMap<>();
 	
+	private final Map<Long, Collection<Long>> buildIdsByConfiguration = new HashMap<>();
+	
+	private final Map<ObjectId, Collection<Long>> buildIdsByCommit = new HashMap<>();
+	
 	private final ReadWriteLock buildsLock = new ReentrantReadWriteLock();
 	
 	private final Map<Long, IssueFacade> issues = new HashMap<>();
@@ -132,7 +139,7 @@ public class DefaultCacheManager implements CacheManager {
 		Query<?> query = dao.getSession().createQuery("select id, configuration.id, commitHash from Build");
 		for (Object[] fields: (List<Object[]>)query.list()) {
 			Long buildId = (Long) fields[0];
-			builds.put(buildId, new BuildFacade(buildId, (Long)fields[1], (String)fields[2]));
+			addBuild(new BuildFacade(buildId, (Long)fields[1], (String)fields[2]));
 		}
 		
 		query = dao.getSession().createQuery("select id, project.id, number from Issue");
@@ -227,7 +234,8 @@ public class DefaultCacheManager implements CacheManager {
 					BuildFacade build = (BuildFacade) facade;
 					buildsLock.writeLock().lock();
 					try {
-						builds.put(build.getId(), build);
+						removeBuild(build.getId());
+						addBuild(build);
 					} finally {
 						buildsLock.writeLock().unlock();
 					}
@@ -306,10 +314,7 @@ public class DefaultCacheManager implements CacheManager {
 								it.remove();
 								buildsLock.writeLock().lock();
 								try {
-									for (Iterator<Map.Entry<Long, BuildFacade>> it2 = builds.entrySet().iterator(); it2.hasNext();) {
-										if (it2.next().getValue().getConfigurationId().equals(configuration.getId()))
-											it2.remove();
-									}
+									removeBuildsOfConfiguration(configuration.getId());
 								} finally {
 									buildsLock.writeLock().unlock();
 								}
@@ -390,17 +395,14 @@ public class DefaultCacheManager implements CacheManager {
 					}
 					buildsLock.writeLock().lock();
 					try {
-						for (Iterator<Map.Entry<Long, BuildFacade>> it = builds.entrySet().iterator(); it.hasNext();) {
-							if (it.next().getValue().getConfigurationId().equals(id))
-								it.remove();
-						}
+						removeBuildsOfConfiguration(id);
 					} finally {
 						buildsLock.writeLock().unlock();
 					}
 				} else if (Build.class.isAssignableFrom(clazz)) {
 					buildsLock.writeLock().lock();
 					try {
-						builds.remove(id);
+						removeBuild(id);
 					} finally {
 						buildsLock.writeLock().unlock();
 					}
@@ -581,16 +583,78 @@ public class DefaultCacheManager implements CacheManager {
 		}
 	}
 
+	@Nullable
+	private ObjectId getCommitId(@Nullable String commitHash) {
+		if (commitHash != null && ObjectId.isId(commitHash))
+			return ObjectId.fromString(commitHash);
+		else
+			return null;
+	}
+	
+	/*
+	 * Below build index maintenance methods should be called with write lock of builds held 
+	 */
+	private void addBuild(BuildFacade build) {
+		builds.put(build.getId(), build);
+		Collection<Long> buildIds = buildIdsByConfiguration.get(build.getConfigurationId());
+		if (buildIds == null) {
+			buildIds = new HashSet<>();
+			buildIdsByConfiguration.put(build.getConfigurationId(), buildIds);
+		}
+		buildIds.add(build.getId());
+		
+		ObjectId commitId = getCommitId(build.getCommitHash());
+		if (commitId != null) {
+			buildIds = buildIdsByCommit.get(commitId);
+			if (buildIds == null) {
+				buildIds = new HashSet<>();
+				buildIdsByCommit.put(commitId, buildIds);
+			}
+			buildIds.add(build.getId());
+		}
+	}
+	
+	private void removeBuild(Long buildId) {
+		BuildFacade build = builds.remove(buildId);
+		if (build != null) {
+			Collection<Long> buildIds = buildIdsByConfiguration.get(build.getConfigurationId());
+			if (buildIds != null) {
+				buildIds.remove(buildId);
+				if (buildIds.isEmpty())
+					buildIdsByConfiguration.remove(build.getConfigurationId());
+			}
+			ObjectId commitId = getCommitId(build.getCommitHash());
+			if (commitId != null) {
+				buildIds = buildIdsByCommit.get(commitId);
+				if (buildIds != null) {
+					buildIds.remove(buildId);
+					if (buildIds.isEmpty())
+						buildIdsByCommit.remove(commitId);
+				}
+			}
+		}
+	}
+	
+	private void removeBuildsOfConfiguration(Long configurationId) {
+		Collection<Long> buildIds = buildIdsByConfiguration.get(configurationId);
+		if (buildIds != null) {
+			for (Long buildId: new ArrayList<>(buildIds))
+				removeBuild(buildId);
+		}
+	}
+	
 	@Override
 	public Collection<Long> getBuildIdsByProject(Long projectId) {
 		buildsLock.readLock().lock();
 		configurationsLock.readLock().lock();
 		try {
 			Collection<Long> buildIds = new HashSet<>();
-			for (BuildFacade build: builds.values()) {
-				ConfigurationFacade configuration = configurations.get(build.getConfigurationId());
-				if (configuration != null && configuration.getProjectId().equals(projectId))
-					buildIds.add(build.getId());
+			for (ConfigurationFacade configuration: configurations.values()) {
+				if (configuration.getProjectId().equals(projectId)) {
+					Collection<Long> buildIdsOfConfiguration = buildIdsByConfiguration.get(configuration.getId());
+					if (buildIdsOfConfiguration != null)
+						buildIds.addAll(buildIdsOfConfiguration);
+				}
 			}
 			return buildIds;
 		} finally {
@@ -603,12 +667,11 @@ public class DefaultCacheManager implements CacheManager {
 	public Collection<Long> getBuildIdsByConfiguration(Long configurationId) {
 		buildsLock.readLock().lock();
 		try {
-			Collection<Long> buildIds = new HashSet<>();
-			for (BuildFacade build: builds.values()) {
-				if (build.getConfigurationId().equals(configurationId))
-					buildIds.add(build.getId());
-			}
-			return buildIds;
+			Collection<Long> buildIds = buildIdsByConfiguration.get(configurationId);
+			if (buildIds != null)
+				return new HashSet<>(buildIds);
+			else
+				return new HashSet<>();
 		} finally {
 			buildsLock.readLock().unlock();
 		}
@@ -620,11 +683,15 @@ public class DefaultCacheManager implements CacheManager {
 		configurationsLock.readLock().lock();
 		try {
 			Collection<Long> buildIds = new HashSet<>();
-			for (BuildFacade build: builds.values()) {
-				ConfigurationFacade configuration = configurations.get(build.getConfigurationId());
-				if (configuration != null && configuration.getProjectId().equals(projectId) 
-						&& commitHashes.contains(build.getCommitHash())) {
-					buildIds.add(build.getId());
+			for (String commitHash: commitHashes) {
+				ObjectId commitId = getCommitId(commitHash);
+				Collection<Long> buildIdsOfCommit = commitId!=null?buildIdsByCommit.get(commitId):null;
+				if (buildIdsOfCommit != null) {
+					for (Long buildId: buildIdsOfCommit) {
+						ConfigurationFacade configuration = configurations.get(builds.get(buildId).getConfigurationId());
+						if (configuration != null && configuration.getProjectId().equals(projectId)) 
+							buildIds.add(buildId);
+					}
 				}
 			}
 			return buildIds;
@@ -45,12 +45,14 @@ import io.onedev.server.event.codecomment.CodeCommentUpdated;
 import io.onedev.server.git.GitUtils;
 import io.onedev.server.git.command.RevListCommand;
 import io.onedev.server.manager.CodeCommentManager;
+import io.onedev.server.manager.CodeCommentPositionInfoManager;
 import io.onedev.server.manager.CommitInfoManager;
 import io.onedev.server.model.CodeComment;
 import io.onedev.server.model.CodeCommentRelation;
 import io.onedev.server.model.Project;
 import io.onedev.server.model.PullRequest;
 import io.onedev.server.model.User;
+import io.onedev.server.model.support.CodeCommentPositions;
 import io.onedev.server.model.support.TextRange;
 import io.onedev.server.persistence.annotation.Sessional;
 import io.onedev.server.persistence.annotation.Transactional;
@@ -78,11 +80,15 @@ public class DefaultCodeCommentManager extends AbstractEntityManager<CodeComment
 	
 	private final CommitInfoManager commitInfoManager;
 	
+	private final CodeCommentPositionInfoManager codeCommentPositionInfoManager;
+	
 	@Inject
-	public DefaultCodeCommentManager(Dao dao, ListenerRegistry listenerRegistry, CommitInfoManager commitInfoManager) {
+	public DefaultCodeCommentManager(Dao dao, ListenerRegistry listenerRegistry, CommitInfoManager commitInfoManager, 
+			CodeCommentPositionInfoManager codeCommentPositionInfoManager) {
 		super(dao);
 		this.listenerRegistry = listenerRegistry;
 		this.commitInfoManager = commitInfoManager;
+		this.codeCommentPositionInfoManager = codeCommentPositionInfoManager;
 	}
 
 	@Transactional
@@ -148,34 +154,68 @@ public class DefaultCodeCommentManager extends AbstractEntityManager<CodeComment
 		return query(criteria);
 	}
 	
+	@Sessional
 	@Override
 	public Map<CodeComment, TextRange> findHistory(Project project, ObjectId commitId, String path) {
 		Map<CodeComment, TextRange> comments = new HashMap<>();
 		
+		CodeCommentPositions positions = codeCommentPositionInfoManager.getPositions(project, commitId, path);
+		if (positions == null)
+			positions = new CodeCommentPositions();
+		
+		Set<String> possibleHistoryPaths = new HashSet<>(commitInfoManager.getHistoryPaths(project, path));
+		possibleHistoryPaths.add(path);
+		/*
+		 * Comments of all projects are considered as before, since comments made in forks  
+		 * (or in original project of a fork) may also be on commits of this project 
+		 */
+		EntityCriteria<CodeComment> criteria = newCriteria();
+		criteria.add(Restrictions.in("markPos.path", possibleHistoryPaths));
+		
+		/*
+		 * Positions of comments checked previously are reused, and only comments created since
+		 * then need to be mapped by diffing against their commits. Positions of comments deleted 
+		 * since then are dropped as they no longer appear in query result
+		 */
+		CodeCommentPositions newPositions = new CodeCommentPositions();
 		Map<String, Map<String, List<CodeComment>>> possibleComments = new HashMap<>();
-		for (String possibleHistoryPath: commitInfoManager.getHistoryPaths(project, path)) {
-			EntityCriteria<CodeComment> criteria = EntityCriteria.of(CodeComment.class);
-			criteria.add(Restrictions.eq("markPos.path", possibleHistoryPath));
-			for (CodeComment comment: query(criteria)) {
-				if (comment.getMarkPos().getCommit().equals(commitId.name()) && possibleHistoryPath.equals(path)) {
-					comments.put(comment, comment.getMarkPos().getRange());
-				} else {
-					Map<String, List<CodeComment>> commentsOnCommit = 
-							possibleComments.get(comment.getMarkPos().getCommit());
-					if (commentsOnCommit == null) {
-						commentsOnCommit = new HashMap<>();
-						possibleComments.put(comment.getMarkPos().getCommit(), commentsOnCommit);
-					}
-					List<CodeComment> commentsOnPath = commentsOnCommit.get(possibleHistoryPath);
-					if (commentsOnPath == null) {
-						commentsOnPath = new ArrayList<>();
-						commentsOnCommit.put(possibleHistoryPath, commentsOnPath);
-					}
-					commentsOnPath.add(comment);
+		for (CodeComment comment: query(criteria)) {
+			String commentCommit = comment.getMarkPos().getCommit();
+			if (commentCommit.equals(commitId.name()) && comment.getMarkPos().getPath().equals(path)) {
+				comments.put(comment, comment.getMarkPos().getRange());
+				newPositions.check(comment.getId(), commentCommit, comment.getMarkPos().getRange());
+			} else if (positions.getChecked().containsKey(comment.getId())) {
+				TextRange range = positions.getRanges().get(comment.getId());
+				if (range != null)
+					comments.put(comment, range);
+				newPositions.check(comment.getId(), commentCommit, range);
+			} else {
+				Map<String, List<CodeComment>> commentsOnCommit = possibleComments.get(commentCommit);
+				if (commentsOnCommit == null) {
+					commentsOnCommit = new HashMap<>();
+					possibleComments.put(commentCommit, commentsOnCommit);
+				}
+				List<CodeComment> commentsOnPath = commentsOnCommit.get(comment.getMarkPos().getPath());
+				if (commentsOnPath == null) {
+					commentsOnPath = new ArrayList<>();
+					commentsOnCommit.put(comment.getMarkPos().getPath(), commentsOnPath);
 				}
+				commentsOnPath.add(comment);
 			}
 		}
 
+		if (!possibleComments.isEmpty())
+			mapHistory(project, commitId, path, possibleComments, comments, newPositions);
+		
+		if (!newPositions.getChecked().equals(positions.getChecked())) 
+			codeCommentPositionInfoManager.setPositions(project, commitId, path, newPositions);
+		
+		return comments;
+	}
+	
+	private void mapHistory(Project project, ObjectId commitId, String path, 
+			Map<String, Map<String, List<CodeComment>>> possibleComments, 
+			Map<CodeComment, TextRange> comments, CodeCommentPositions positions) {
 		try (RevWalk revWalk = new RevWalk(project.getRepository())) {
 			Date oldestDate = null;
 			List<RevCommit> historyCommits = new ArrayList<>();
@@ -213,10 +253,12 @@ public class DefaultCodeCommentManager extends AbstractEntityManager<CodeComment
 				});
 				int checkedHistoryFiles = 0;
 				for (RevCommit historyCommit: historyCommits) {
+					Map<String, List<CodeComment>> commentsOnCommit = 
+							Preconditions.checkNotNull(possibleComments.get(historyCommit.name()));
 					if (revisions.contains(historyCommit.name())) {
-						Map<String, List<CodeComment>> commentsOnCommit = 
-								Preconditions.checkNotNull(possibleComments.get(historyCommit.name()));
 						for (Map.Entry<String, List<CodeComment>> pathEntry: commentsOnCommit.entrySet()) {
+							if (checkedHistoryFiles == MAX_HISTORY_FILES_TO_CHECK) 
+								return;
 							List<String> oldLines = GitUtils.readLines(project.getRepository(), historyCommit, 
 									pathEntry.getKey(), WhitespaceOption.DEFAULT);
 							Map<Integer, Integer> lineMapping = DiffUtils.mapLines(oldLines, newLines);
@@ -224,20 +266,21 @@ public class DefaultCodeCommentManager extends AbstractEntityManager<CodeComment
 								TextRange newRange = DiffUtils.mapRange(lineMapping, comment.getMarkPos().getRange());
 								if (newRange != null) 
 									comments.put(comment, newRange);
+								positions.check(comment.getId(), historyCommit.name(), newRange);
 							}
-							if (++checkedHistoryFiles == MAX_HISTORY_FILES_TO_CHECK) {
-								return comments;
-							}
+							checkedHistoryFiles++;
+						}
+					} else {
+						for (List<CodeComment> commentsOnPath: commentsOnCommit.values()) {
+							for (CodeComment comment: commentsOnPath)
+								positions.check(comment.getId(), historyCommit.name(), null);
 						}
 					}
 				}
 			} 
-			
-			return comments;
 		} catch (IOException e) {
 			throw new RuntimeException(e);
 		} 
-
 	}
 
 	private Predicate[] getPredicates(io.onedev.server.search.entity.EntityCriteria<CodeComment> criteria, Project project, 
@@ -0,0 +1,409 @@
+package io.onedev.server.manager.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.SerializationUtils;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.RefDatabase;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Charsets;
+
+import io.onedev.launcher.loader.Listen;
+import io.onedev.server.event.RefUpdated;
+import io.onedev.server.event.entity.EntityRemoved;
+import io.onedev.server.git.GitUtils;
+import io.onedev.server.manager.BatchWorkManager;
+import io.onedev.server.manager.CodeCommentPositionInfoManager;
+import io.onedev.server.manager.ProjectManager;
+import io.onedev.server.manager.StorageManager;
+import io.onedev.server.model.Project;
+import io.onedev.server.model.support.CodeCommentPositions;
+import io.onedev.server.model.support.TextRange;
+import io.onedev.server.persistence.UnitOfWork;
+import io.onedev.server.persistence.annotation.Sessional;
+import io.onedev.server.persistence.annotation.Transactional;
+import io.onedev.server.util.BatchWorker;
+import io.onedev.server.util.diff.DiffUtils;
+import io.onedev.server.util.diff.WhitespaceOption;
+import io.onedev.utils.FileUtils;
+import io.onedev.utils.concurrent.Prioritized;
+import jetbrains.exodus.ArrayByteIterable;
+import jetbrains.exodus.ByteIterable;
+import jetbrains.exodus.env.Cursor;
+import jetbrains.exodus.env.Environment;
+import jetbrains.exodus.env.Store;
+import jetbrains.exodus.env.Transaction;
+import jetbrains.exodus.env.TransactionalComputable;
+import jetbrains.exodus.env.TransactionalExecutable;
+
+/**
+ * Persists code comment positions calculated for (commit, path), and carries them forward
+ * along first-parent history when branches are updated, so that comments of a newly pushed
+ * commit can be loaded without diffing against every historical commit again. Positions 
+ * of commits no longer referenced by any ref are dropped when branches are updated.
+ */
+@Singleton
+public class DefaultCodeCommentPositionInfoManager extends AbstractEnvironmentManager
+		implements CodeCommentPositionInfoManager {
+
+	private static final int INFO_VERSION = 1;
+
+	private static final Logger logger = LoggerFactory.getLogger(DefaultCodeCommentPositionInfoManager.class);
+
+	private static final String INFO_DIR = "codeCommentPosition";
+
+	private static final String POSITIONS_STORE = "positions";
+
+	private static final int MAX_COMMITS_TO_PROPAGATE = 1000;
+
+	private static final int PRIORITY = 100;
+
+	private final StorageManager storageManager;
+
+	private final BatchWorkManager batchWorkManager;
+
+	private final ProjectManager projectManager;
+
+	private final UnitOfWork unitOfWork;
+
+	@Inject
+	public DefaultCodeCommentPositionInfoManager(StorageManager storageManager, BatchWorkManager batchWorkManager,
+			ProjectManager projectManager, UnitOfWork unitOfWork) {
+		this.storageManager = storageManager;
+		this.batchWorkManager = batchWorkManager;
+		this.projectManager = projectManager;
+		this.unitOfWork = unitOfWork;
+	}
+
+	private BatchWorker getBatchWorker(Long projectId) {
+		return new BatchWorker("project-" + projectId + "-propagateCodeCommentPositions") {
+
+			@Override
+			public void doWorks(Collection<Prioritized> works) {
+				unitOfWork.run(new Runnable() {
+
+					@Override
+					public void run() {
+						Project project = projectManager.load(projectId);
+						for (Prioritized work: works) {
+							if (work instanceof PropagatingWork) {
+								PropagatingWork propagatingWork = (PropagatingWork) work;
+								propagate(project, propagatingWork.getOldCommitId(), propagatingWork.getNewCommitId());
+							}
+						}
+						cleanup(project);
+					}
+
+				});
+			}
+
+		};
+	}
+
+	private void propagate(Project project, ObjectId oldCommitId, ObjectId newCommitId) {
+		Repository repository = project.getRepository();
+		try (RevWalk revWalk = new RevWalk(repository)) {
+			RevCommit oldCommit = GitUtils.parseCommit(revWalk, oldCommitId);
+			RevCommit commit = GitUtils.parseCommit(revWalk, newCommitId);
+			if (oldCommit == null || commit == null)
+				return;
+
+			List<RevCommit> commits = new ArrayList<>();
+			boolean found = false;
+			while (commits.size() < MAX_COMMITS_TO_PROPAGATE && commit.getParentCount() == 1) {
+				commits.add(commit);
+				RevCommit parent = revWalk.parseCommit(commit.getParent(0));
+				if (parent.equals(oldCommit)) {
+					found = true;
+					break;
+				}
+				commit = parent;
+			}
+			if (!found)
+				return;
+			Collections.reverse(commits);
+
+			logger.debug("Propagating code comment positions (project: {}, from: {}, to: {})...",
+					project.getName(), oldCommit.name(), newCommitId.name());
+
+			Environment env = getEnv(project.getId().toString());
+			Store store = getStore(env, POSITIONS_STORE);
+
+			Map<String, CodeCommentPositions> positionsOfPaths = env.computeInReadonlyTransaction(
+					new TransactionalComputable<Map<String, CodeCommentPositions>>() {
+
+				@Override
+				public Map<String, CodeCommentPositions> compute(Transaction txn) {
+					return readPositions(store, txn, oldCommit);
+				}
+
+			});
+
+			RevCommit parent = oldCommit;
+			for (RevCommit child: commits) {
+				if (positionsOfPaths.isEmpty())
+					break;
+				Map<String, CodeCommentPositions> positionsOfChildPaths = new HashMap<>();
+				for (Map.Entry<String, CodeCommentPositions> entry: positionsOfPaths.entrySet()) {
+					CodeCommentPositions childPositions = propagate(repository, parent, child,
+							entry.getKey(), entry.getValue());
+					if (childPositions != null)
+						positionsOfChildPaths.put(entry.getKey(), childPositions);
+				}
+				env.executeInTransaction(new TransactionalExecutable() {
+
+					@Override
+					public void execute(Transaction txn) {
+						for (Map.Entry<String, CodeCommentPositions> entry: positionsOfChildPaths.entrySet()) {
+							ByteIterable key = getKey(child, entry.getKey());
+							if (store.get(txn, key) == null) {
+								store.put(txn, key, new ArrayByteIterable(
+										SerializationUtils.serialize(entry.getValue())));
+							}
+						}
+					}
+
+				});
+				positionsOfPaths = positionsOfChildPaths;
+				parent = child;
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/*
+	 * Positions are stored for branch heads when propagating, and for any commit viewed. 
+	 * Drop positions of commits no longer pointed to by any ref so that the store does not 
+	 * grow with every push. Positions of other commits will be calculated again if viewed
+	 */
+	private void cleanup(Project project) {
+		Repository repository = project.getRepository();
+		Set<ObjectId> referencedCommitIds = new HashSet<>();
+		try {
+			RefDatabase refDatabase = repository.getRefDatabase();
+			for (Ref ref: refDatabase.getRefsByPrefix(RefDatabase.ALL)) {
+				Ref peeledRef = refDatabase.peel(ref);
+				if (peeledRef.getPeeledObjectId() != null)
+					referencedCommitIds.add(peeledRef.getPeeledObjectId());
+				else if (peeledRef.getObjectId() != null)
+					referencedCommitIds.add(peeledRef.getObjectId());
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+
+		Environment env = getEnv(project.getId().toString());
+		Store store = getStore(env, POSITIONS_STORE);
+		env.executeInTransaction(new TransactionalExecutable() {
+
+			@Override
+			public void execute(Transaction txn) {
+				Cursor cursor = store.openCursor(txn);
+				try {
+					while (cursor.getNext()) {
+						ByteIterable key = cursor.getKey();
+						if (key.getLength() < 20 || !referencedCommitIds.contains(
+								ObjectId.fromRaw(Arrays.copyOf(key.getBytesUnsafe(), 20)))) {
+							cursor.deleteCurrent();
+						}
+					}
+				} finally {
+					cursor.close();
+				}
+			}
+
+		});
+	}
+
+	@Nullable
+	private CodeCommentPositions propagate(Repository repository, RevCommit parent, RevCommit child,
+			String path, CodeCommentPositions positions) throws IOException {
+		TreeWalk childTreeWalk = TreeWalk.forPath(repository, path, child.getTree());
+		if (childTreeWalk == null)
+			return null;
+		TreeWalk parentTreeWalk = TreeWalk.forPath(repository, path, parent.getTree());
+		if (parentTreeWalk == null)
+			return null;
+
+		CodeCommentPositions childPositions = new CodeCommentPositions();
+		if (childTreeWalk.getObjectId(0).equals(parentTreeWalk.getObjectId(0))) {
+			for (Map.Entry<Long, String> entry: positions.getChecked().entrySet()) {
+				Long commentId = entry.getKey();
+				childPositions.check(commentId, entry.getValue(), positions.getRanges().get(commentId));
+			}
+		} else {
+			List<String> oldLines = GitUtils.readLines(repository, parent, path, WhitespaceOption.DEFAULT);
+			List<String> newLines = GitUtils.readLines(repository, child, path, WhitespaceOption.DEFAULT);
+			Map<Integer, Integer> lineMapping = DiffUtils.mapLines(oldLines, newLines);
+			for (Map.Entry<Long, String> entry: positions.getChecked().entrySet()) {
+				Long commentId = entry.getKey();
+				TextRange range = positions.getRanges().get(commentId);
+				if (range != null)
+					range = DiffUtils.mapRange(lineMapping, range);
+				childPositions.check(commentId, entry.getValue(), range);
+			}
+		}
+
+		/*
+		 * Comments created on child commit were checked against parent commit, and they
+		 * should be re-checked against child commit
+		 */
+		childPositions.uncheck(child.name());
+		return childPositions;
+	}
+
+	private Map<String, CodeCommentPositions> readPositions(Store store, Transaction txn, ObjectId commitId) {
+		Map<String, CodeCommentPositions> positionsOfPaths = new HashMap<>();
+		byte[] prefix = new byte[20];
+		commitId.copyRawTo(prefix, 0);
+		Cursor cursor = store.openCursor(txn);
+		try {
+			if (cursor.getSearchKeyRange(new ArrayByteIterable(prefix)) != null) {
+				do {
+					ByteIterable key = cursor.getKey();
+					byte[] keyBytes = Arrays.copyOf(key.getBytesUnsafe(), key.getLength());
+					if (keyBytes.length < prefix.length
+							|| !Arrays.equals(prefix, Arrays.copyOf(keyBytes, prefix.length))) {
+						break;
+					}
+					String path = new String(keyBytes, prefix.length, keyBytes.length-prefix.length, Charsets.UTF_8);
+					ByteIterable value = cursor.getValue();
+					positionsOfPaths.put(path, (CodeCommentPositions) SerializationUtils.deserialize(
+							Arrays.copyOf(value.getBytesUnsafe(), value.getLength())));
+				} while (cursor.getNext());
+			}
+		} finally {
+			cursor.close();
+		}
+		return positionsOfPaths;
+	}
+
+	private ByteIterable getKey(ObjectId commitId, String path) {
+		byte[] pathBytes = path.getBytes(Charsets.UTF_8);
+		byte[] keyBytes = new byte[20 + pathBytes.length];
+		commitId.copyRawTo(keyBytes, 0);
+		System.arraycopy(pathBytes, 0, keyBytes, 20, pathBytes.length);
+		return new ArrayByteIterable(keyBytes);
+	}
+
+	@Sessional
+	@Override
+	public CodeCommentPositions getPositions(Project project, ObjectId commitId, String path) {
+		Environment env = getEnv(project.getId().toString());
+		Store store = getStore(env, POSITIONS_STORE);
+
+		byte[] bytes = env.computeInReadonlyTransaction(new TransactionalComputable<byte[]>() {
+
+			@Override
+			public byte[] compute(Transaction txn) {
+				return readBytes(store, txn, getKey(commitId, path));
+			}
+
+		});
+		if (bytes != null)
+			return (CodeCommentPositions) SerializationUtils.deserialize(bytes);
+		else
+			return null;
+	}
+
+	@Sessional
+	@Override
+	public void setPositions(Project project, ObjectId commitId, String path, CodeCommentPositions positions) {
+		Environment env = getEnv(project.getId().toString());
+		Store store = getStore(env, POSITIONS_STORE);
+
+		env.executeInTransaction(new TransactionalExecutable() {
+
+			@Override
+			public void execute(Transaction txn) {
+				store.put(txn, getKey(commitId, path), new ArrayByteIterable(SerializationUtils.serialize(positions)));
+			}
+
+		});
+	}
+
+	@Sessional
+	@Listen
+	public void on(RefUpdated event) {
+		if (event.getRefName().startsWith(Constants.R_HEADS)) {
+			Prioritized work;
+			if (!event.getOldCommitId().equals(ObjectId.zeroId()) 
+					&& !event.getNewCommitId().equals(ObjectId.zeroId())) {
+				work = new PropagatingWork(PRIORITY, event.getOldCommitId().copy(), 
+						event.getNewCommitId().copy());
+			} else {
+				// only clean up positions of commits no longer referenced
+				work = new Prioritized(PRIORITY);
+			}
+			batchWorkManager.submit(getBatchWorker(event.getProject().getId()), work);
+		}
+	}
+
+	@Transactional
+	@Listen
+	public void on(EntityRemoved event) {
+		if (event.getEntity() instanceof Project) {
+			Long projectId = event.getEntity().getId();
+			removeEnv(projectId.toString());
+		}
+	}
+
+	@Override
+	protected File getEnvDir(String envKey) {
+		File infoDir = new File(storageManager.getProjectInfoDir(Long.valueOf(envKey)), INFO_DIR);
+		if (!infoDir.exists())
+			FileUtils.createDir(infoDir);
+		return infoDir;
+	}
+
+	@Override
+	protected int getEnvVersion() {
+		return INFO_VERSION;
+	}
+
+	static class PropagatingWork extends Prioritized {
+
+		private final ObjectId oldCommitId;
+
+		private final ObjectId newCommitId;
+
+		public PropagatingWork(int priority, ObjectId oldCommitId, ObjectId newCommitId) {
+			super(priority);
+			this.oldCommitId = oldCommitId;
+			this.newCommitId = newCommitId;
+		}
+
+		public ObjectId getOldCommitId() {
+			return oldCommitId;
+		}
+
+		public ObjectId getNewCommitId() {
+			return newCommitId;
+		}
+
+	}
+
+}
@@ -89,7 +89,7 @@ public class DefaultCommitInfoManager extends AbstractEnvironmentManager impleme
 
 	private static final Logger logger = LoggerFactory.getLogger(DefaultCommitInfoManager.class);
 	
-	private static final int INFO_VERSION = 7;
+	private static final int INFO_VERSION = 9;
 	
 	private static final long LOG_FILE_SIZE = 256*1024;
 	
@@ -107,6 +107,8 @@ public class DefaultCommitInfoManager extends AbstractEnvironmentManager impleme
 	
 	private static final String FIX_COMMITS_STORE = "fixCommits";
 	
+	private static final String FIXED_ISSUES_STORE = "fixedIssues";
+	
 	private static final String EDITS_STORE = "edits";
 
 	private static final String HISTORY_PATHS_STORE = "historyPaths";
@@ -326,6 +328,7 @@ public class DefaultCommitInfoManager extends AbstractEnvironmentManager impleme
 		Store indexToUserStore = getStore(env, INDEX_TO_USER_STORE);
 		Store dailyContributionsStore = getStore(env, DAILY_CONTRIBUTIONS_STORE);	
 		Store fixCommitsStore = getStore(env, FIX_COMMITS_STORE);
+		Store fixedIssuesStore = getStore(env, FIXED_ISSUES_STORE);
 		
 		Repository repository = project.getRepository();
 
@@ -384,7 +387,12 @@ public class DefaultCommitInfoManager extends AbstractEnvironmentManager impleme
 									commitsStore.put(txn, parentCommitKey, new ArrayByteIterable(newParentCommitBytes));
 								}
 								
-								for (Long issueNumber: IssueUtils.parseFixedIssues(project, nextCommit.getFullMessage())) {
+								Collection<Long> issueNumbersOfNextCommit = 
+										IssueUtils.parseFixedIssues(project, nextCommit.getFullMessage());
+								if (!issueNumbersOfNextCommit.isEmpty())
+									writeIssueNumbers(fixedIssuesStore, txn, nextCommitKey, issueNumbersOfNextCommit);
+								
+								for (Long issueNumber: issueNumbersOfNextCommit) {
 									ByteIterable issueKey = new LongByteIterable(issueNumber);
 									Collection<ObjectId> fixCommits = readCommits(fixCommitsStore, txn, issueKey);
 									
@@ -790,9 +798,13 @@ public class DefaultCommitInfoManager extends AbstractEnvironmentManager impleme
 		return pathIndex;
 	}
 	
+	private long getEditsKey(int userIndex, int pathIndex) {
+		return ((long)userIndex<<32) | pathIndex;
+	}
+	
 	private void updateEdits(Store store, Transaction txn, 
 			Map<Long, Integer> editsCache, int userIndex, int pathIndex, int edits) {
-		long editsKey = (userIndex<<32)|pathIndex;
+		long editsKey = getEditsKey(userIndex, pathIndex);
 		
 		Integer editsOfPathByUser = editsCache.get(editsKey);
 		if (editsOfPathByUser == null)
@@ -895,30 +907,66 @@ public class DefaultCommitInfoManager extends AbstractEnvironmentManager impleme
 	}
 	
 	@Override
-	public int getEdits(ProjectFacade project, UserFacade user, String path) {
-		if (user.getEmail() != null) {
-			Environment env = getEnv(project.getId().toString());
-			Store emailToIndexStore = getStore(env, EMAIL_TO_INDEX_STORE);
-			Store pathToIndexStore = getStore(env, PATH_TO_INDEX_STORE);
-			Store editsStore = getStore(env, EDITS_STORE);
-			return env.computeInReadonlyTransaction(new TransactionalComputable<Integer>() {
+	public Map<Long, Long> getContributions(ProjectFacade project, Collection<UserFacade> users, 
+			Map<String, Integer> paths) {
+		Environment env = getEnv(project.getId().toString());
+		Store emailToIndexStore = getStore(env, EMAIL_TO_INDEX_STORE);
+		Store pathToIndexStore = getStore(env, PATH_TO_INDEX_STORE);
+		Store editsStore = getStore(env, EDITS_STORE);
+		return env.computeInReadonlyTransaction(new TransactionalComputable<Map<Long, Long>>() {
 
-				@Override
-				public Integer compute(Transaction txn) {
-					int userIndex = readInt(emailToIndexStore, txn, new StringByteIterable(user.getEmail()), -1);
-					if (userIndex != -1) {
-						int pathIndex = readInt(pathToIndexStore, txn, new StringByteIterable(path), -1);
-						if (pathIndex != -1) {
-							long editsKey = (userIndex<<32)|pathIndex;
-							return readInt(editsStore, txn, new LongByteIterable(editsKey), 0);
-						} 
-					} 
-					return 0;
+			@Override
+			public Map<Long, Long> compute(Transaction txn) {
+				Map<Long, Long> contributions = new HashMap<>();
+				Map<Long, Integer> userIndexes = new HashMap<>();
+				for (UserFacade user: users) {
+					contributions.put(user.getId(), 0L);
+					if (user.getEmail() != null) {
+						int userIndex = readInt(emailToIndexStore, txn, new StringByteIterable(user.getEmail()), -1);
+						if (userIndex != -1)
+							userIndexes.put(user.getId(), userIndex);
+					}
 				}
-			});
-		} else {
-			return 0;
-		}
+				if (userIndexes.isEmpty())
+					return contributions;
+				
+				// parent directories are shared by many paths, cache their edits 
+				Map<String, Map<Long, Integer>> editsCache = new HashMap<>();
+				for (Map.Entry<String, Integer> entry: paths.entrySet()) {
+					String path = entry.getKey();
+					while (true) {
+						Map<Long, Integer> editsOfUsers = editsCache.get(path);
+						if (editsOfUsers == null) {
+							editsOfUsers = new HashMap<>();
+							int pathIndex = readInt(pathToIndexStore, txn, new StringByteIterable(path), -1);
+							if (pathIndex != -1) {
+								for (Map.Entry<Long, Integer> userEntry: userIndexes.entrySet()) {
+									int edits = readInt(editsStore, txn, 
+											new LongByteIterable(getEditsKey(userEntry.getValue(), pathIndex)), 0);
+									if (edits != 0)
+										editsOfUsers.put(userEntry.getKey(), edits);
+								}
+							}
+							editsCache.put(path, editsOfUsers);
+						}
+						if (!editsOfUsers.isEmpty() || path.length() == 0) {
+							for (Map.Entry<Long, Integer> userEntry: editsOfUsers.entrySet()) {
+								long contribution = 1L * entry.getValue() * userEntry.getValue();
+								contributions.put(userEntry.getKey(), 
+										contributions.get(userEntry.getKey()) + contribution);
+							}
+							break;
+						} else if (path.contains("/")) {
+							path = StringUtils.substringBeforeLast(path, "/");
+						} else {
+							path = "";
+						}
+					}
+				}
+				return contributions;
+			}
+			
+		});
 	}
 	
 	@Override
@@ -1123,6 +1171,28 @@ public class DefaultCommitInfoManager extends AbstractEnvironmentManager impleme
 		}
 	}
 
+	/*
+	 * Fixed issue numbers are packed back to back, instead of going through writeLongs whose 
+	 * layout pads each value and is kept as is for data of other stores
+	 */
+	private void writeIssueNumbers(Store store, Transaction txn, ByteIterable key, Collection<Long> issueNumbers) {
+		ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES * issueNumbers.size());
+		for (Long issueNumber: issueNumbers)
+			buffer.putLong(issueNumber);
+		store.put(txn, key, new ArrayByteIterable(buffer.array()));
+	}
+	
+	private Collection<Long> readIssueNumbers(Store store, Transaction txn, ByteIterable key) {
+		Collection<Long> issueNumbers = new HashSet<>();
+		byte[] bytes = readBytes(store, txn, key);
+		if (bytes != null) {
+			ByteBuffer buffer = ByteBuffer.wrap(bytes);
+			while (buffer.remaining() >= Long.BYTES)
+				issueNumbers.add(buffer.getLong());
+		}
+		return issueNumbers;
+	}
+	
 	@Override
 	protected File getEnvDir(String envKey) {
 		File infoDir = new File(storageManager.getProjectInfoDir(Long.valueOf(envKey)), INFO_DIR);
@@ -1380,4 +1450,61 @@ public class DefaultCommitInfoManager extends AbstractEnvironmentManager impleme
 		
 	}
 
+	@Override
+	public Collection<Long> getFixedIssueNumbers(Project project, ObjectId sinceCommitId, ObjectId untilCommitId) {
+		Repository repository = project.getRepository();
+		List<ObjectId> commitIds = new ArrayList<>();
+		try (RevWalk revWalk = new RevWalk(repository)) {
+			/*
+			 * Commit messages are not needed here as fixed issues of collected commits 
+			 * can be read from the store, so only parse commit headers to walk faster
+			 */
+			revWalk.setRetainBody(false);
+			revWalk.markStart(revWalk.parseCommit(untilCommitId));
+			revWalk.markUninteresting(revWalk.parseCommit(sinceCommitId));
+			RevCommit commit;
+			while ((commit = revWalk.next()) != null)
+				commitIds.add(commit.copy());
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		
+		Environment env = getEnv(project.getId().toString());
+		Store commitsStore = getStore(env, COMMITS_STORE);
+		Store fixedIssuesStore = getStore(env, FIXED_ISSUES_STORE);
+		
+		Collection<Long> fixedIssueNumbers = new HashSet<>();
+		Collection<ObjectId> uncollectedCommitIds = env.computeInReadonlyTransaction(
+				new TransactionalComputable<Collection<ObjectId>>() {
+
+			@Override
+			public Collection<ObjectId> compute(Transaction txn) {
+				Collection<ObjectId> uncollectedCommitIds = new ArrayList<>();
+				for (ObjectId commitId: commitIds) {
+					ByteIterable commitKey = new CommitByteIterable(commitId);
+					if (isCommitCollected(readBytes(commitsStore, txn, commitKey))) 
+						fixedIssueNumbers.addAll(readIssueNumbers(fixedIssuesStore, txn, commitKey));
+					else 
+						uncollectedCommitIds.add(commitId);
+				}
+				return uncollectedCommitIds;
+			}
+			
+		});
+		
+		if (!uncollectedCommitIds.isEmpty()) {
+			// Commits might not be collected yet if they are pushed recently
+			try (RevWalk revWalk = new RevWalk(repository)) {
+				for (ObjectId commitId: uncollectedCommitIds) {
+					String commitMessage = revWalk.parseCommit(commitId).getFullMessage();
+					fixedIssueNumbers.addAll(IssueUtils.parseFixedIssues(project, commitMessage));
+				}
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		}
+		
+		return fixedIssueNumbers;
+	}
+	
 }
@@ -0,0 +1,117 @@
+package io.onedev.server.manager.impl;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import javax.annotation.Nullable;
+import javax.inject.Singleton;
+
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import io.onedev.launcher.loader.Listen;
+import io.onedev.server.event.RefUpdated;
+import io.onedev.server.manager.CommitQueryManager;
+import io.onedev.server.model.Project;
+import io.onedev.server.model.User;
+import io.onedev.server.search.commit.CommitQueryUtils;
+import io.onedev.server.security.SecurityUtils;
+
+@Singleton
+public class DefaultCommitQueryManager implements CommitQueryManager {
+
+	private static final int MAX_CURSORS = 100;
+	
+	private static final int CURSOR_EXPIRE_MINUTES = 10;
+	
+	/*
+	 * Cursors are keyed by project, user, compare with revision and query. User is part 
+	 * of the key as query result may depend on current user (authored-by-me for instance)
+	 */
+	private final Cache<String, CommitCursor> cursors = CacheBuilder.newBuilder()
+			.maximumSize(MAX_CURSORS)
+			.expireAfterAccess(CURSOR_EXPIRE_MINUTES, TimeUnit.MINUTES)
+			.<String, CommitCursor>removalListener(notification -> notification.getValue().close())
+			.build();
+	
+	private String getCursorKey(Project project, @Nullable String query, @Nullable String compareWith) {
+		User user = SecurityUtils.getUser();
+		return project.getId() + ":" + (user!=null?user.getId():0) + ":" 
+				+ (compareWith!=null?compareWith:"") + ":" + (query!=null?query:"");
+	}
+	
+	@Override
+	public List<RevCommit> query(Project project, String query, String compareWith, int count) {
+		CommitCursor cursor;
+		try {
+			cursor = cursors.get(getCursorKey(project, query, compareWith), 
+					() -> new CommitCursor(project, query, compareWith));
+		} catch (ExecutionException | UncheckedExecutionException e) {
+			Throwables.throwIfUnchecked(e.getCause());
+			throw new RuntimeException(e.getCause());
+		}
+		return cursor.getCommits(count);
+	}
+
+	@Listen
+	public void on(RefUpdated event) {
+		// Walk state becomes stale once refs change, discard cursors of the project
+		String prefix = event.getProject().getId() + ":";
+		cursors.invalidateAll(cursors.asMap().keySet().stream()
+				.filter(it->it.startsWith(prefix))
+				.collect(Collectors.toList()));
+	}
+	
+	private static class CommitCursor {
+		
+		private final RevWalk revWalk;
+		
+		private final int limit;
+		
+		private final List<RevCommit> commits = new ArrayList<>();
+		
+		private boolean exhausted;
+		
+		CommitCursor(Project project, @Nullable String query, @Nullable String compareWith) throws IOException {
+			revWalk = new RevWalk(project.getRepository());
+			try {
+				limit = CommitQueryUtils.fill(project, CommitQueryUtils.parse(query), compareWith, revWalk);
+			} catch (Exception e) {
+				revWalk.close();
+				throw e;
+			}
+		}
+		
+		synchronized List<RevCommit> getCommits(int count) {
+			if (limit != 0)
+				count = Math.min(count, limit);
+			try {
+				while (!exhausted && commits.size() < count) {
+					RevCommit commit = revWalk.next();
+					if (commit != null)
+						commits.add(commit);
+					else
+						exhausted = true;
+				}
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+			return new ArrayList<>(commits.subList(0, Math.min(count, commits.size())));
+		}
+		
+		synchronized void close() {
+			revWalk.close();
+		}
+		
+	}
+	
+}
@@ -0,0 +1,295 @@
+package io.onedev.server.manager.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Semaphore;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.quartz.CronScheduleBuilder;
+import org.quartz.ScheduleBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.onedev.launcher.loader.Listen;
+import io.onedev.server.event.system.SystemStarted;
+import io.onedev.server.event.system.SystemStopping;
+import io.onedev.server.git.GitVersion;
+import io.onedev.server.git.command.GitCommand;
+import io.onedev.server.git.command.PackRefsCommand;
+import io.onedev.server.git.command.PruneCommand;
+import io.onedev.server.git.command.RepackCommand;
+import io.onedev.server.git.command.WriteCommitGraphCommand;
+import io.onedev.server.manager.GitMaintenanceManager;
+import io.onedev.server.manager.ProjectManager;
+import io.onedev.server.manager.SettingManager;
+import io.onedev.server.manager.WorkExecutor;
+import io.onedev.server.model.Project;
+import io.onedev.server.persistence.UnitOfWork;
+import io.onedev.utils.FileUtils;
+import io.onedev.utils.concurrent.PrioritizedRunnable;
+import io.onedev.utils.schedule.SchedulableTask;
+import io.onedev.utils.schedule.TaskScheduler;
+
+@Singleton
+public class DefaultGitMaintenanceManager implements GitMaintenanceManager, SchedulableTask {
+
+	private static final Logger logger = LoggerFactory.getLogger(DefaultGitMaintenanceManager.class);
+	
+	private static final int PRIORITY = 100;
+	
+	/*
+	 * Same as default value of git config "gc.auto" and "gc.autoPackLimit"
+	 */
+	private static final int LOOSE_OBJECTS_LIMIT = 6700;
+	
+	private static final int PACKS_LIMIT = 50;
+	
+	private static final String PRUNE_EXPIRE = "2.weeks.ago";
+	
+	private static final String BITMAP_MIN_VERSION = "2.0.0";
+	
+	private static final String KEEP_UNREACHABLE_MIN_VERSION = "2.10.0";
+	
+	private static final int MAX_CONCURRENCY = Math.max(1, Runtime.getRuntime().availableProcessors()/4);
+	
+	private final ProjectManager projectManager;
+	
+	private final SettingManager settingManager;
+	
+	private final WorkExecutor workExecutor;
+	
+	private final TaskScheduler taskScheduler;
+	
+	private final UnitOfWork unitOfWork;
+	
+	private String taskId;
+	
+	@Inject
+	public DefaultGitMaintenanceManager(ProjectManager projectManager, SettingManager settingManager, 
+			WorkExecutor workExecutor, TaskScheduler taskScheduler, UnitOfWork unitOfWork) {
+		this.projectManager = projectManager;
+		this.settingManager = settingManager;
+		this.workExecutor = workExecutor;
+		this.taskScheduler = taskScheduler;
+		this.unitOfWork = unitOfWork;
+	}
+	
+	@Listen
+	public void on(SystemStarted event) {
+		taskId = taskScheduler.schedule(this);
+	}
+
+	@Listen
+	public void on(SystemStopping event) {
+		taskScheduler.unschedule(taskId);
+	}
+	
+	@Nullable
+	private GitVersion getGitVersion() {
+		try {
+			return GitCommand.getVersion(settingManager.getSystemSetting().getGitConfig().getExecutable());
+		} catch (Exception e) {
+			logger.error("Error getting git version", e);
+			return null;
+		}
+	}
+	
+	/*
+	 * Get canonical object directories referenced by alternates of specified repositories. 
+	 * Alternates on disk are checked instead of fork relations, as a repository may still 
+	 * borrow objects from another one it is no longer associated with 
+	 */
+	private Set<File> getBorrowedObjectDirs(Collection<MaintenanceWork> works) {
+		Set<File> borrowedObjectDirs = new HashSet<>();
+		for (MaintenanceWork work: works) {
+			File objectsDir = new File(work.gitDir, "objects");
+			File alternatesFile = new File(objectsDir, "info/alternates");
+			if (alternatesFile.exists()) {
+				try {
+					for (String line: FileUtils.readLines(alternatesFile, StandardCharsets.UTF_8)) {
+						line = line.trim();
+						if (line.length() != 0 && !line.startsWith("#")) {
+							File alternateDir = new File(line);
+							if (!alternateDir.isAbsolute())
+								alternateDir = new File(objectsDir, line);
+							borrowedObjectDirs.add(alternateDir.getCanonicalFile());
+						}
+					}
+				} catch (IOException e) {
+					throw new RuntimeException(e);
+				}
+			}
+		}
+		return borrowedObjectDirs;
+	}
+	
+	/*
+	 * Repositories are maintained without holding a session, as repacking may take long. 
+	 * Information needed is loaded in a short unit of work in advance
+	 */
+	@Override
+	public void execute() {
+		GitVersion gitVersion = getGitVersion();
+		if (gitVersion == null)
+			return;
+		
+		List<MaintenanceWork> allWorks = unitOfWork.call(new Callable<List<MaintenanceWork>>() {
+
+			@Override
+			public List<MaintenanceWork> call() throws Exception {
+				List<MaintenanceWork> works = new ArrayList<>();
+				for (Project project: projectManager.query()) 
+					works.add(new MaintenanceWork(project.getName(), project.getGitDir(), !project.getForks().isEmpty()));
+				return works;
+			}
+			
+		});
+		
+		List<MaintenanceWork> works = new ArrayList<>();
+		Set<File> borrowedObjectDirs = getBorrowedObjectDirs(allWorks);
+		for (MaintenanceWork work: allWorks) {
+			if (estimateLooseObjects(work.gitDir) > LOOSE_OBJECTS_LIMIT || countPacks(work.gitDir) > PACKS_LIMIT) {
+				/*
+				 * Forks borrow objects from fork root via git alternates. Besides repositories 
+				 * actually referenced by alternates, we treat all projects having forks as being 
+				 * borrowed from to be on the safe side 
+				 */
+				try {
+					if (borrowedObjectDirs.contains(new File(work.gitDir, "objects").getCanonicalFile()))
+						work.borrowedFrom = true;
+				} catch (IOException e) {
+					throw new RuntimeException(e);
+				}
+				works.add(work);
+			}
+		}
+		
+		if (works.isEmpty())
+			return;
+		
+		long time = System.currentTimeMillis();
+		logger.info("Maintaining git repositories of {} projects...", works.size());
+		Semaphore semaphore = new Semaphore(MAX_CONCURRENCY);
+		try {
+			for (MaintenanceWork work: works) {
+				semaphore.acquire();
+				workExecutor.execute(new PrioritizedRunnable(PRIORITY) {
+
+					@Override
+					public void run() {
+						try {
+							work.maintain(gitVersion);
+						} catch (Exception e) {
+							logger.error("Error maintaining git repository of project '" + work.projectName + "'", e);
+						} finally {
+							semaphore.release();
+						}
+					}
+					
+				});
+			}
+			semaphore.acquire(MAX_CONCURRENCY);
+			logger.info("Maintained git repositories of {} projects in {}ms", 
+					works.size(), System.currentTimeMillis()-time);
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	public ScheduleBuilder<?> getScheduleBuilder() {
+		return CronScheduleBuilder.cronSchedule("0 30 * * * ?");
+	}
+	
+	/*
+	 * Estimate number of loose objects from objects in a single fan out directory, the 
+	 * same as what git gc --auto does
+	 */
+	private static int estimateLooseObjects(File gitDir) {
+		File[] files = new File(gitDir, "objects/17").listFiles();
+		if (files != null)
+			return files.length * 256;
+		else
+			return 0;
+	}
+	
+	private static int countPacks(File gitDir) {
+		int count = 0;
+		File[] files = new File(gitDir, "objects/pack").listFiles();
+		if (files != null) {
+			for (File file: files) {
+				if (file.getName().endsWith(".pack")) 
+					count++;
+			}
+		}
+		return count;
+	}
+	
+	private static class MaintenanceWork {
+		
+		final String projectName;
+		
+		final File gitDir;
+		
+		boolean borrowedFrom;
+		
+		MaintenanceWork(String projectName, File gitDir, boolean borrowedFrom) {
+			this.projectName = projectName;
+			this.gitDir = gitDir;
+			this.borrowedFrom = borrowedFrom;
+		}
+		
+		void maintain(GitVersion gitVersion) {
+			long time = System.currentTimeMillis();
+			int looseObjects = estimateLooseObjects(gitDir);
+			int packs = countPacks(gitDir);
+			
+			boolean borrowing = new File(gitDir, "objects/info/alternates").exists();
+			
+			/*
+			 * Objects no longer reachable from this repository might still be needed by forks, 
+			 * so they should be kept when packing everything into a single pack. With older 
+			 * git, we only pack loose objects incrementally for such repositories 
+			 */
+			boolean all = !borrowedFrom 
+					|| gitVersion.isNotOlderThan(new GitVersion(KEEP_UNREACHABLE_MIN_VERSION));
+			RepackCommand repack = new RepackCommand(gitDir).all(all).deleteRedundant(true)
+					.keepUnreachable(all && borrowedFrom);
+			if (borrowing) {
+				// Do not copy objects borrowed from fork root into this repository
+				repack.local(true);
+			} else if (all && gitVersion.isNotOlderThan(new GitVersion(BITMAP_MIN_VERSION))) {
+				/*
+				 * Bitmaps can only be written when all reachable objects are packed into a 
+				 * single pack, which is not the case for repositories borrowing objects
+				 */
+				repack.writeBitmap(true);
+			}
+			repack.call();
+			
+			if (!borrowedFrom)
+				new PruneCommand(gitDir).expire(PRUNE_EXPIRE).call();
+			
+			new PackRefsCommand(gitDir).call();
+			
+			if (gitVersion.isNotOlderThan(new GitVersion(WriteCommitGraphCommand.MIN_VERSION)))
+				new WriteCommitGraphCommand(gitDir).call();
+			
+			logger.info("Maintained git repository of project '{}' (duration: {}ms, loose objects: {} -> {}, packs: {} -> {})", 
+					projectName, System.currentTimeMillis()-time, looseObjects, estimateLooseObjects(gitDir), 
+					packs, countPacks(gitDir));
+		}
+		
+	}
+	
+}
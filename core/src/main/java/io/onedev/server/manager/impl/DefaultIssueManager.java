@@ -17,6 +17,7 @@ import javax.persistence.criteria.Join;
 import javax.persistence.criteria.JoinType;
 import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Selection;
 
 import org.apache.commons.lang3.StringUtils;
 import org.hibernate.Session;
@@ -25,6 +26,7 @@ import org.hibernate.criterion.Restrictions;
 import org.hibernate.query.Query;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
 
 import io.onedev.launcher.loader.Listen;
 import io.onedev.launcher.loader.ListenerRegistry;
@@ -60,6 +62,7 @@ import io.onedev.server.search.entity.issue.IssueCriteria;
 import io.onedev.server.search.entity.issue.IssueQuery;
 import io.onedev.server.search.entity.issue.IssueQueryBuildContext;
 import io.onedev.server.search.entity.issue.MilestoneCriteria;
+import io.onedev.server.search.entitytext.EntityTextManager;
 import io.onedev.server.util.IssueConstants;
 import io.onedev.server.util.ValueSetEdit;
 import io.onedev.server.util.inputspec.InputSpec;
@@ -80,17 +83,21 @@ public class DefaultIssueManager extends AbstractEntityManager<Issue> implements
 	private final SettingManager settingManager;
 	
 	private final ProjectManager projectManager;
+	
+	private final EntityTextManager entityTextManager;
 
 	@Inject
 	public DefaultIssueManager(Dao dao, IssueFieldUnaryManager issueFieldUnaryManager, 
 			IssueQuerySettingManager issueQuerySettingManager, SettingManager settingManager, 
-			ListenerRegistry listenerRegistry, ProjectManager projectManager) {
+			ListenerRegistry listenerRegistry, ProjectManager projectManager, 
+			EntityTextManager entityTextManager) {
 		super(dao);
 		this.issueFieldUnaryManager = issueFieldUnaryManager;
 		this.issueQuerySettingManager = issueQuerySettingManager;
 		this.listenerRegistry = listenerRegistry;
 		this.settingManager = settingManager;
 		this.projectManager = projectManager;
+		this.entityTextManager = entityTextManager;
 	}
 
 	@Sessional
@@ -174,6 +181,27 @@ public class DefaultIssueManager extends AbstractEntityManager<Issue> implements
 		return issues;
 	}
 	
+	@Sessional
+	@Override
+	public List<List<Issue>> query(Project project, User user, List<? extends EntityQuery<Issue>> issueQueries, 
+			int maxResults) {
+		List<List<Issue>> issueLists = new ArrayList<>();
+		List<Issue> allIssues = new ArrayList<>();
+		for (EntityQuery<Issue> issueQuery: issueQueries) {
+			CriteriaQuery<Issue> criteriaQuery = buildCriteriaQuery(getSession(), project, issueQuery, user);
+			Query<Issue> query = getSession().createQuery(criteriaQuery);
+			query.setFirstResult(0);
+			query.setMaxResults(maxResults);
+			List<Issue> issues = query.getResultList();
+			issueLists.add(issues);
+			allIssues.addAll(issues);
+		}
+		if (!allIssues.isEmpty())
+			issueFieldUnaryManager.populateFields(allIssues);
+		
+		return issueLists;
+	}
+	
 	@Transactional
 	@Listen
 	public void on(IssueEvent event) {
@@ -195,6 +223,47 @@ public class DefaultIssueManager extends AbstractEntityManager<Issue> implements
 		return getSession().createQuery(criteriaQuery).uniqueResult().intValue();
 	}
 
+	@Sessional
+	@Override
+	public List<Integer> count(Project project, User user, List<IssueCriteria> issueCriterias) {
+		List<Integer> counts = new ArrayList<>();
+		if (issueCriterias.isEmpty())
+			return counts;
+		
+		CriteriaBuilder builder = getSession().getCriteriaBuilder();
+		CriteriaQuery<Object[]> criteriaQuery = builder.createQuery(Object[].class);
+		Root<Issue> root = criteriaQuery.from(Issue.class);
+
+		/*
+		 * Predicates of all criterias share the same build context so that joins of same field 
+		 * are only created once. Issues are counted distinctly as joins might multiply rows 
+		 */
+		QueryBuildContext<Issue> context = new IssueQueryBuildContext(root, builder);
+		List<Predicate> predicates = new ArrayList<>();
+		List<Selection<?>> selections = new ArrayList<>();
+		for (IssueCriteria issueCriteria: issueCriterias) {
+			Predicate predicate;
+			if (issueCriteria != null)
+				predicate = issueCriteria.getPredicate(project, context, user);
+			else
+				predicate = builder.conjunction();
+			predicates.add(predicate);
+			selections.add(builder.countDistinct(builder.<Long>selectCase()
+					.when(predicate, root.<Long>get("id"))
+					.otherwise(builder.nullLiteral(Long.class))));
+		}
+		
+		criteriaQuery.multiselect(selections);
+		criteriaQuery.where(
+				builder.equal(root.get("project"), project), 
+				builder.or(predicates.toArray(new Predicate[0])));
+		
+		Object[] result = getSession().createQuery(criteriaQuery).uniqueResult();
+		for (Object count: result) 
+			counts.add(((Number)count).intValue());
+		return counts;
+	}
+
 	@Override
 	public int count(Milestone milestone, User user, @Nullable StateSpec.Category category) {
 		if (category != null) {
@@ -301,6 +370,19 @@ public class DefaultIssueManager extends AbstractEntityManager<Issue> implements
 			criteria.addOrder(Order.desc("number"));
 			issues.addAll(query(criteria, 0, count-issues.size()));
 		} else {
+			if (StringUtils.isNotBlank(term)) {
+				List<Long> issueIds = entityTextManager.search(project, Issue.class, 
+						Lists.newArrayList(EntityTextManager.FIELD_TITLE, EntityTextManager.FIELD_NO_SPACE_TITLE), 
+						term.trim(), count);
+				if (issueIds != null) {
+					for (Long issueId: issueIds) {
+						Issue issue = get(issueId);
+						if (issue != null)
+							issues.add(issue);
+					}
+					return issues;
+				}
+			}
 			EntityCriteria<Issue> criteria = newCriteria();
 			criteria.add(Restrictions.eq("project", project));
 			if (StringUtils.isNotBlank(term)) {
@@ -4,12 +4,15 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 import javax.annotation.Nullable;
@@ -35,7 +38,7 @@ import io.onedev.server.event.system.SystemStarted;
 import io.onedev.server.event.system.SystemStopping;
 import io.onedev.server.git.GitUtils;
 import io.onedev.server.git.command.CloneCommand;
-import io.onedev.server.git.command.ListChangedFilesCommand;
+import io.onedev.server.git.command.RepackCommand;
 import io.onedev.server.manager.BuildManager;
 import io.onedev.server.manager.CacheManager;
 import io.onedev.server.manager.CommitInfoManager;
@@ -114,6 +117,8 @@ public class DefaultProjectManager extends AbstractEntityManager<Project> implem
 						repository = new FileRepository(project.getGitDir());
 						repository.getConfig().setEnum(ConfigConstants.CONFIG_DIFF_SECTION, null, 
 								ConfigConstants.CONFIG_KEY_ALGORITHM, SupportedAlgorithm.HISTOGRAM);
+						// Serve git protocol v2 in process if requested by client 
+						repository.getConfig().setInt("protocol", null, "version", 2);
 					} catch (IOException e) {
 						throw new RuntimeException(e);
 					}
@@ -159,6 +164,14 @@ public class DefaultProjectManager extends AbstractEntityManager<Project> implem
     @Transactional
     @Override
     public void delete(Project project) {
+    	/*
+    	 * Dissociate forks before clearing their fork relation, as the bulk update below does not 
+    	 * touch the forks collection in session. Any failure here aborts the delete so that no 
+    	 * fork is left borrowing objects from a deleted repository
+    	 */
+    	for (Project fork: new ArrayList<>(project.getForks()))
+    		dissociate(fork);
+    	
     	Query<?> query = getSession().createQuery("update Project set forkedFrom=null where forkedFrom=:forkedFrom");
     	query.setParameter("forkedFrom", project);
     	query.executeUpdate();
@@ -186,11 +199,43 @@ public class DefaultProjectManager extends AbstractEntityManager<Project> implem
 	public void fork(Project from, Project to) {
     	save(to);
         FileUtils.cleanDir(to.getGitDir());
-        new CloneCommand(to.getGitDir()).mirror(true).from(from.getGitDir().getAbsolutePath()).call();
+        
+        /*
+         * Borrow objects from fork root via git alternates, so that a fork only stores objects 
+         * not available in fork root. Objects are copied back into forks when fork root is 
+         * deleted, check method dissociate for details
+         */
+        new CloneCommand(to.getGitDir())
+        		.mirror(true)
+        		.reference(from.getForkRoot().getGitDir().getAbsolutePath())
+        		.from(from.getGitDir().getAbsolutePath())
+        		.call();
         commitInfoManager.cloneInfo(from, to);
         avatarManager.copyAvatar(from.getFacade(), to.getFacade());
 	}
 
+	/*
+	 * Copy objects borrowed from other repositories via git alternates into repository of 
+	 * specified project and its forks, so that they remain intact when the repository 
+	 * borrowed from is deleted  
+	 */
+	private void dissociate(Project project) {
+		File alternatesFile = new File(project.getGitDir(), "objects/info/alternates");
+		if (alternatesFile.exists()) {
+			logger.info("Copying borrowed objects into repository of project '" + project.getName() + "'...");
+			new RepackCommand(project.getGitDir()).all(true).deleteRedundant(true).call();
+			FileUtils.deleteFile(alternatesFile);
+			
+	    	synchronized (repositoryCache) {
+				Repository repository = repositoryCache.remove(project.getId());
+				if (repository != null) 
+					repository.close();
+			}
+		}
+		for (Project fork: project.getForks())
+			dissociate(fork);
+	}
+	
 	private boolean isGitHookValid(File gitDir, String hookName) {
         File hookFile = new File(gitDir, "hooks/" + hookName);
         if (!hookFile.exists()) 
@@ -309,17 +354,6 @@ public class DefaultProjectManager extends AbstractEntityManager<Project> implem
 		return projects;
 	}
 
-	private Collection<String> getChangedFiles(Project project, ObjectId oldObjectId, ObjectId newObjectId, 
-			Map<String, String> gitEnvs) {
-		if (gitEnvs != null && !gitEnvs.isEmpty()) {
-			ListChangedFilesCommand cmd = new ListChangedFilesCommand(project.getGitDir(), gitEnvs);
-			cmd.fromRev(oldObjectId.name()).toRev(newObjectId.name());
-			return cmd.call();
-		} else {
-			return GitUtils.getChangedFiles(project.getRepository(), oldObjectId, newObjectId);
-		}
-	}
-	
 	@Override
 	public boolean isModificationNeedsQualityCheck(User user, Project project, String branch, @Nullable String file) {
 		BranchProtection branchProtection = project.getBranchProtection(branch, user);
@@ -346,16 +380,41 @@ public class DefaultProjectManager extends AbstractEntityManager<Project> implem
 			if (!ReviewRequirement.fromString(branchProtection.getReviewRequirement()).satisfied(user)) 
 				return true;
 
-			List<Build> builds = buildManager.query(project, newObjectId.name());
-			if (!builds.stream().map(it->it.getConfiguration().getName()).collect(Collectors.toSet())
-					.containsAll(branchProtection.getConfigurations())) {
-				return true;
+			if (!branchProtection.getConfigurations().isEmpty()) {
+				List<Build> builds = buildManager.query(project, newObjectId.name());
+				if (!builds.stream().map(it->it.getConfiguration().getName()).collect(Collectors.toSet())
+						.containsAll(branchProtection.getConfigurations())) {
+					return true;
+				}
 			}
 			
-			for (String changedFile: getChangedFiles(project, oldObjectId, newObjectId, gitEnvs)) {
-				FileProtection fileProtection = branchProtection.getFileProtection(changedFile);
-				if (fileProtection != null && !ReviewRequirement.fromString(fileProtection.getReviewRequirement()).satisfied(user))
-					return true;
+			/*
+			 * Parse review requirement of each file protection only once, and only diff the 
+			 * trees if some file protection is not satisfied by the user. For each changed 
+			 * file, the first matching file protection applies   
+			 */
+			Set<FileProtection> unsatisfiedFileProtections = new HashSet<>();
+			for (FileProtection fileProtection: branchProtection.getFileProtections()) {
+				if (!ReviewRequirement.fromString(fileProtection.getReviewRequirement()).satisfied(user))
+					unsatisfiedFileProtections.add(fileProtection);
+			}
+			if (!unsatisfiedFileProtections.isEmpty()) {
+				Predicate<String> needsCheck = new Predicate<String>() {
+
+					@Override
+					public boolean test(String changedFile) {
+						FileProtection fileProtection = branchProtection.getFileProtection(changedFile);
+						return fileProtection != null && unsatisfiedFileProtections.contains(fileProtection);
+					}
+					
+				};
+				if (gitEnvs != null && !gitEnvs.isEmpty()) {
+					try (Repository repository = GitUtils.openQuarantinedRepository(project.getGitDir(), gitEnvs)) {
+						return GitUtils.findChangedFile(repository, oldObjectId, newObjectId, needsCheck) != null;
+					}
+				} else {
+					return GitUtils.findChangedFile(project.getRepository(), oldObjectId, newObjectId, needsCheck) != null;
+				}
 			}
 		}
 		return false;
@@ -51,6 +51,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Sets;
 
 import io.onedev.launcher.loader.Listen;
 import io.onedev.launcher.loader.ListenerRegistry;
@@ -159,6 +160,8 @@ public class DefaultPullRequestManager extends AbstractEntityManager<PullRequest
 	
 	private final BuildManager buildManager;
 	
+	private final Set<Long> pendingChecks = Sets.newConcurrentHashSet();
+	
 	@Inject
 	public DefaultPullRequestManager(Dao dao, PullRequestUpdateManager pullRequestUpdateManager,  
 			PullRequestReviewManager pullRequestReviewManager, UserManager userManager, 
@@ -654,11 +657,34 @@ public class DefaultPullRequestManager extends AbstractEntityManager<PullRequest
 		};		
 	}
 	
+	/*
+	 * Multiple check requests of same pull request in a single transaction (for instance 
+	 * when many builds of the request are reported in a batch) are coalesced into one 
+	 * check after the transaction is committed, as the request will not be scheduled 
+	 * again until its pending check starts 
+	 */
 	@Sessional
 	protected void checkAsync(PullRequest request) {
 		Long requestId = request.getId();
 		Subject subject = SecurityUtils.getSubject();
-		dao.doUnitOfWorkAsyncAfterCommit(newCheckStatusRunnable(requestId, subject));
+		dao.doAfterCommit(new Runnable() {
+
+			@Override
+			public void run() {
+				if (pendingChecks.add(requestId)) {
+					unitOfWork.doAsync(new Runnable() {
+
+						@Override
+						public void run() {
+							pendingChecks.remove(requestId);
+							newCheckStatusRunnable(requestId, subject).run();
+						}
+						
+					});
+				}
+			}
+			
+		});
 	}
 	
 	@Transactional
@@ -859,59 +885,34 @@ public class DefaultPullRequestManager extends AbstractEntityManager<PullRequest
 		if (users.size() <= 1)
 			return;
 		
-		CommitInfoManager commitInfoManager = OneDev.getInstance(CommitInfoManager.class);
-		Map<User, Long> contributions = new HashMap<>();
-		for (User user: users)
-			contributions.put(user, 0L);
-
-		int count = 0;
+		Map<String, Integer> paths = new HashMap<>();
 		for (FileChange change: update.getFileChanges()) {
-			String path = change.getPath();
 			int edits = change.getAdditions() + change.getDeletions();
 			if (edits < 0)
 				edits = 100;
 			else if (edits == 0)
 				edits = 1;
-			int addedContributions = addContributions(contributions, commitInfoManager, path, edits, update);
-			while (addedContributions == 0) {
-				if (path.contains("/")) {
-					path = StringUtils.substringBeforeLast(path, "/");
-					addedContributions = addContributions(contributions, commitInfoManager, path, edits, update);
-				} else {
-					addContributions(contributions, commitInfoManager, "", edits, update);
-					break;
-				}
-			}
-			if (++count >= MAX_CONTRIBUTION_FILES)
+			paths.merge(change.getPath(), edits, Integer::sum);
+			if (paths.size() >= MAX_CONTRIBUTION_FILES)
 				break;
 		}
 
+		List<UserFacade> userFacades = new ArrayList<>();
+		for (User user: users)
+			userFacades.add(user.getFacade());
+		Map<Long, Long> contributions = OneDev.getInstance(CommitInfoManager.class).getContributions(
+				update.getRequest().getTargetProject().getFacade(), userFacades, paths);
+
 		Collections.sort(users, new Comparator<User>() {
 
 			@Override
 			public int compare(User o1, User o2) {
-				if (contributions.get(o1) < contributions.get(o2))
-					return 1;
-				else
-					return -1;
+				return contributions.get(o2.getId()).compareTo(contributions.get(o1.getId()));
 			}
 			
 		});
 	}
 	
-	private int addContributions(Map<User, Long> contributions, CommitInfoManager commitInfoManager, 
-			String path, int edits, PullRequestUpdate update) {
-		int addedContributions = 0;
-		for (Map.Entry<User, Long> entry: contributions.entrySet()) {
-			User user = entry.getKey();
-			int pathEdits = commitInfoManager.getEdits(
-					update.getRequest().getTargetProject().getFacade(), user.getFacade(), path);
-			entry.setValue(entry.getValue() + edits*pathEdits);
-			addedContributions += pathEdits;
-		}
-		return addedContributions;
-	}
-	
 	@Transactional
 	@Override
 	public Collection<PullRequest> queryOpenByCommit(String commitHash) {
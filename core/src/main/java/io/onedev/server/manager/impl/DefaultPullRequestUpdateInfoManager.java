@@ -0,0 +1,344 @@
+package io.onedev.server.manager.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.eclipse.jgit.diff.DiffAlgorithm;
+import org.eclipse.jgit.diff.DiffAlgorithm.SupportedAlgorithm;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.diff.DiffFormatter;
+import org.eclipse.jgit.diff.Edit;
+import org.eclipse.jgit.diff.RawTextComparator;
+import org.eclipse.jgit.errors.IncorrectObjectTypeException;
+import org.eclipse.jgit.errors.MissingObjectException;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.patch.FileHeader;
+import org.eclipse.jgit.patch.FileHeader.PatchType;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.revwalk.filter.RevFilter;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+import org.eclipse.jgit.util.io.NullOutputStream;
+
+import com.google.common.base.Preconditions;
+
+import io.onedev.launcher.loader.Listen;
+import io.onedev.server.event.entity.EntityRemoved;
+import io.onedev.server.event.system.SystemStarted;
+import io.onedev.server.git.command.FileChange;
+import io.onedev.server.manager.ProjectManager;
+import io.onedev.server.manager.PullRequestUpdateInfoManager;
+import io.onedev.server.manager.StorageManager;
+import io.onedev.server.model.Project;
+import io.onedev.server.model.PullRequestUpdate;
+import io.onedev.server.persistence.annotation.Sessional;
+import io.onedev.server.persistence.annotation.Transactional;
+import io.onedev.utils.FileUtils;
+import jetbrains.exodus.ArrayByteIterable;
+import jetbrains.exodus.ByteIterable;
+import jetbrains.exodus.env.Environment;
+import jetbrains.exodus.env.Store;
+import jetbrains.exodus.env.Transaction;
+import jetbrains.exodus.env.TransactionalComputable;
+import jetbrains.exodus.env.TransactionalExecutable;
+
+/**
+ * Persists file changes and changed files of pull request updates. As head, base and merge base 
+ * commits of an update never change, these are calculated only once per update, with diffs 
+ * done in process via JGit instead of forking git.
+ */
+@Singleton
+public class DefaultPullRequestUpdateInfoManager extends AbstractEnvironmentManager 
+		implements PullRequestUpdateInfoManager {
+
+	private static final int INFO_VERSION = 1;
+	
+	private static final String INFO_DIR = "pullRequestUpdate";
+	
+	private static final String FILE_CHANGES_STORE = "fileChanges";
+	
+	private static final String CHANGED_FILES_STORE = "changedFiles";
+	
+	private final StorageManager storageManager;
+	
+	private final ProjectManager projectManager;
+	
+	@Inject
+	public DefaultPullRequestUpdateInfoManager(StorageManager storageManager, ProjectManager projectManager) {
+		this.storageManager = storageManager;
+		this.projectManager = projectManager;
+	}
+	
+	@Nullable
+	private byte[] read(PullRequestUpdate update, String storeName) {
+		Environment env = getEnv(update.getRequest().getTargetProject().getId().toString());
+		Store store = getStore(env, storeName);
+		return env.computeInReadonlyTransaction(new TransactionalComputable<byte[]>() {
+
+			@Override
+			public byte[] compute(Transaction txn) {
+				return readBytes(store, txn, new LongByteIterable(update.getId()));
+			}
+			
+		});
+	}
+	
+	private void write(PullRequestUpdate update, String storeName, byte[] bytes) {
+		Environment env = getEnv(update.getRequest().getTargetProject().getId().toString());
+		Store store = getStore(env, storeName);
+		env.executeInTransaction(new TransactionalExecutable() {
+
+			@Override
+			public void execute(Transaction txn) {
+				store.put(txn, new LongByteIterable(update.getId()), new ArrayByteIterable(bytes));
+			}
+			
+		});
+	}
+	
+	@Override
+	public Collection<FileChange> getFileChanges(PullRequestUpdate update) {
+		try {
+			if (update.isNew())
+				return calcFileChanges(update);
+			
+			byte[] bytes = read(update, FILE_CHANGES_STORE);
+			if (bytes != null) {
+				DataInput input = new DataInputStream(new ByteArrayInputStream(bytes));
+				int count = readVarInt(input);
+				Collection<FileChange> fileChanges = new ArrayList<>(count);
+				for (int i=0; i<count; i++) {
+					String path = input.readUTF();
+					int additions = readVarInt(input) - 1;
+					int deletions = readVarInt(input) - 1;
+					fileChanges.add(new FileChange(null, path, additions, deletions));
+				}
+				return fileChanges;
+			} else {
+				Collection<FileChange> fileChanges = calcFileChanges(update);
+				ByteArrayOutputStream baos = new ByteArrayOutputStream();
+				DataOutput output = new DataOutputStream(baos);
+				writeVarInt(output, fileChanges.size());
+				for (FileChange change: fileChanges) {
+					output.writeUTF(change.getPath());
+					
+					// additions and deletions are -1 for binary files
+					writeVarInt(output, change.getAdditions() + 1);
+					writeVarInt(output, change.getDeletions() + 1);
+				}
+				write(update, FILE_CHANGES_STORE, baos.toByteArray());
+				return fileChanges;
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	@Override
+	public Collection<String> getChangedFiles(PullRequestUpdate update) {
+		try {
+			if (update.isNew())
+				return calcChangedFiles(update);
+			
+			byte[] bytes = read(update, CHANGED_FILES_STORE);
+			if (bytes != null) {
+				DataInput input = new DataInputStream(new ByteArrayInputStream(bytes));
+				int count = readVarInt(input);
+				Collection<String> changedFiles = new HashSet<>();
+				for (int i=0; i<count; i++) 
+					changedFiles.add(input.readUTF());
+				return changedFiles;
+			} else {
+				Collection<String> changedFiles = calcChangedFiles(update);
+				ByteArrayOutputStream baos = new ByteArrayOutputStream();
+				DataOutput output = new DataOutputStream(baos);
+				writeVarInt(output, changedFiles.size());
+				for (String file: changedFiles)
+					output.writeUTF(file);
+				write(update, CHANGED_FILES_STORE, baos.toByteArray());
+				return changedFiles;
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	private Collection<FileChange> calcFileChanges(PullRequestUpdate update) throws IOException {
+		Collection<FileChange> fileChanges = new ArrayList<>();
+		Repository repository = update.getRequest().getTargetProject().getRepository();
+		try (	RevWalk revWalk = new RevWalk(repository);
+				DiffFormatter diffFormatter = new DiffFormatter(NullOutputStream.INSTANCE)) {
+			diffFormatter.setRepository(repository);
+			diffFormatter.setDetectRenames(false);
+			diffFormatter.setDiffComparator(RawTextComparator.DEFAULT);
+			
+			// use the same algorithm as git to get the same numbers as "git diff --numstat"
+			diffFormatter.setDiffAlgorithm(DiffAlgorithm.getAlgorithm(SupportedAlgorithm.MYERS));
+			
+			RevCommit baseCommit = revWalk.parseCommit(ObjectId.fromString(update.getBaseCommitHash()));
+			RevCommit headCommit = revWalk.parseCommit(ObjectId.fromString(update.getHeadCommitHash()));
+			for (DiffEntry entry: diffFormatter.scan(baseCommit.getTree(), headCommit.getTree())) {
+				String path;
+				if (entry.getChangeType() == DiffEntry.ChangeType.DELETE)
+					path = entry.getOldPath();
+				else
+					path = entry.getNewPath();
+				FileHeader header = diffFormatter.toFileHeader(entry);
+				if (header.getPatchType() != PatchType.UNIFIED) {
+					fileChanges.add(new FileChange(null, path, -1, -1));
+				} else {
+					int additions = 0;
+					int deletions = 0;
+					for (Edit edit: header.toEditList()) {
+						additions += edit.getLengthB();
+						deletions += edit.getLengthA();
+					}
+					fileChanges.add(new FileChange(null, path, additions, deletions));
+				}
+			}
+		}
+		return fileChanges;
+	}
+	
+	private Collection<String> calcChangedFiles(PullRequestUpdate update) throws IOException {
+		Collection<String> changedFiles = new HashSet<>();
+		
+		Repository repository = update.getRequest().getWorkProject().getRepository();
+		try (	RevWalk revWalk = new RevWalk(repository);
+				TreeWalk treeWalk = new TreeWalk(repository)) {
+			RevCommit mergeBaseCommit = revWalk.parseCommit(ObjectId.fromString(update.getMergeBaseCommitHash()));
+			RevCommit baseCommit = revWalk.parseCommit(ObjectId.fromString(update.getBaseCommitHash()));
+			RevCommit headCommit = revWalk.parseCommit(ObjectId.fromString(update.getHeadCommitHash()));
+			revWalk.markStart(mergeBaseCommit);
+			revWalk.markStart(baseCommit);
+			revWalk.setRevFilter(RevFilter.MERGE_BASE);
+			RevCommit nextMergeBase = Preconditions.checkNotNull(revWalk.next());
+			treeWalk.setRecursive(true);
+			if (nextMergeBase.equals(baseCommit)) {
+				treeWalk.addTree(mergeBaseCommit.getTree());
+				treeWalk.addTree(headCommit.getTree());
+				treeWalk.setFilter(TreeFilter.ANY_DIFF);
+				while (treeWalk.next())
+					changedFiles.add(treeWalk.getPathString());
+			} else if (nextMergeBase.equals(mergeBaseCommit)) {
+				treeWalk.addTree(baseCommit.getTree());
+				treeWalk.addTree(headCommit.getTree());
+				treeWalk.setFilter(TreeFilter.ANY_DIFF);
+				while (treeWalk.next())
+					changedFiles.add(treeWalk.getPathString());
+			} else {
+				treeWalk.addTree(headCommit.getTree());
+				treeWalk.addTree(baseCommit.getTree());
+				treeWalk.addTree(mergeBaseCommit.getTree());
+				treeWalk.setFilter(new TreeFilter() {
+
+					@Override
+					public boolean include(TreeWalk walker)
+							throws MissingObjectException, IncorrectObjectTypeException, IOException {
+						int m0 = walker.getRawMode(0);
+						
+						// only include the path if the file is modified in head commit 
+						// compared to base commit and that modification is not introduced
+						// by commit from target branch
+						return (walker.getRawMode(1) != m0 || !walker.idEqual(1, 0)) 
+								&& (walker.getRawMode(2) != m0 || !walker.idEqual(2, 0));
+					}
+
+					@Override
+					public boolean shouldBeRecursive() {
+						return false;
+					}
+
+					@Override
+					public TreeFilter clone() {
+						return this;
+					}
+					
+				});
+				while (treeWalk.next()) {
+					changedFiles.add(treeWalk.getPathString());
+				}
+			}
+		}
+		return changedFiles;
+	}
+	
+	private static void writeVarInt(DataOutput output, int value) throws IOException {
+		while ((value & ~0x7F) != 0) {
+			output.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		output.writeByte(value);
+	}
+	
+	private static int readVarInt(DataInput input) throws IOException {
+		int value = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = input.readByte();
+			value |= (b & 0x7F) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+		return value;
+	}
+	
+	@Transactional
+	@Listen
+	public void on(EntityRemoved event) {
+		if (event.getEntity() instanceof Project) {
+			removeEnv(event.getEntity().getId().toString());
+		} else if (event.getEntity() instanceof PullRequestUpdate) {
+			PullRequestUpdate update = (PullRequestUpdate) event.getEntity();
+			Environment env = getEnv(update.getRequest().getTargetProject().getId().toString());
+			Store fileChangesStore = getStore(env, FILE_CHANGES_STORE);
+			Store changedFilesStore = getStore(env, CHANGED_FILES_STORE);
+			env.executeInTransaction(new TransactionalExecutable() {
+
+				@Override
+				public void execute(Transaction txn) {
+					ByteIterable key = new LongByteIterable(update.getId());
+					fileChangesStore.delete(txn, key);
+					changedFilesStore.delete(txn, key);
+				}
+				
+			});
+		}
+	}
+	
+	@Sessional
+	@Listen
+	public void on(SystemStarted event) {
+		for (Project project: projectManager.query()) 
+			checkVersion(project.getId().toString());
+	}
+	
+	@Override
+	protected File getEnvDir(String envKey) {
+		File infoDir = new File(storageManager.getProjectInfoDir(Long.valueOf(envKey)), INFO_DIR);
+		if (!infoDir.exists()) 
+			FileUtils.createDir(infoDir);
+		return infoDir;
+	}
+
+	@Override
+	protected int getEnvVersion() {
+		return INFO_VERSION;
+	}
+	
+}
@@ -887,4 +887,7 @@ public class DatabaseMigrator {
 		}
 	}
 	
+	private void migrate21(File dataDir, Stack<Integer> versions) {
+	}
+	
 }
@@ -12,9 +12,10 @@ import javax.persistence.Table;
 @Entity
 @Table(
 		indexes={
-				@Index(columnList="o_issue_id"), @Index(columnList="name"), 
-				@Index(columnList="value"), @Index(columnList="type"), 
-				@Index(columnList="ordinal")})
+				@Index(columnList="o_issue_id"), @Index(columnList="value"), 
+				@Index(columnList="type"), @Index(columnList="ordinal"), 
+				@Index(columnList="o_issue_id, name, ordinal"), 
+				@Index(columnList="name, value"), @Index(columnList="name, ordinal")})
 public class IssueFieldUnary extends AbstractEntity {
 
 	private static final long serialVersionUID = 1L;
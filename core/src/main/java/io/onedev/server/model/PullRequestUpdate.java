@@ -5,7 +5,6 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
-import java.util.HashSet;
 import java.util.List;
 
 import javax.persistence.Column;
@@ -16,22 +15,17 @@ import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.Table;
 
-import org.eclipse.jgit.errors.IncorrectObjectTypeException;
-import org.eclipse.jgit.errors.MissingObjectException;
 import org.eclipse.jgit.lib.ObjectId;
-import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.revwalk.RevWalk;
-import org.eclipse.jgit.revwalk.filter.RevFilter;
-import org.eclipse.jgit.treewalk.TreeWalk;
-import org.eclipse.jgit.treewalk.filter.TreeFilter;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.common.base.Preconditions;
 
+import io.onedev.server.OneDev;
 import io.onedev.server.git.GitUtils;
 import io.onedev.server.git.command.FileChange;
-import io.onedev.server.git.command.ListFileChangesCommand;
+import io.onedev.server.manager.PullRequestUpdateInfoManager;
 import io.onedev.server.manager.impl.DefaultCodeCommentRelationManager;
 
 @Entity
@@ -104,12 +98,8 @@ public class PullRequestUpdate extends AbstractEntity {
 	}	
 	
 	public Collection<FileChange> getFileChanges() {
-		if (fileChanges == null) {
-			ListFileChangesCommand cmd = new ListFileChangesCommand(getRequest().getTargetProject().getGitDir());
-			cmd.fromRev(getBaseCommitHash());
-			cmd.toRev(getHeadCommitHash());
-			fileChanges = cmd.call();
-		}
+		if (fileChanges == null)
+			fileChanges = OneDev.getInstance(PullRequestUpdateInfoManager.class).getFileChanges(this);
 		return fileChanges;
 	}
 	
@@ -119,69 +109,8 @@ public class PullRequestUpdate extends AbstractEntity {
 	 * happen if some commits were merged from target branch to source branch)
 	 */
 	public Collection<String> getChangedFiles() {
-		if (changedFiles == null) {
-			changedFiles = new HashSet<>();
-			
-			Repository repository = getRequest().getWorkProject().getRepository();
-			try (	RevWalk revWalk = new RevWalk(repository);
-					TreeWalk treeWalk = new TreeWalk(repository)) {
-				RevCommit mergeBaseCommit = revWalk.parseCommit(ObjectId.fromString(getMergeBaseCommitHash()));
-				RevCommit baseCommit = revWalk.parseCommit(ObjectId.fromString(getBaseCommitHash()));
-				RevCommit headCommit = revWalk.parseCommit(ObjectId.fromString(getHeadCommitHash()));
-				revWalk.markStart(mergeBaseCommit);
-				revWalk.markStart(baseCommit);
-				revWalk.setRevFilter(RevFilter.MERGE_BASE);
-				RevCommit nextMergeBase = Preconditions.checkNotNull(revWalk.next());
-				treeWalk.setRecursive(true);
-				if (nextMergeBase.equals(baseCommit)) {
-					treeWalk.addTree(mergeBaseCommit.getTree());
-					treeWalk.addTree(headCommit.getTree());
-					treeWalk.setFilter(TreeFilter.ANY_DIFF);
-					while (treeWalk.next())
-						changedFiles.add(treeWalk.getPathString());
-				} else if (nextMergeBase.equals(mergeBaseCommit)) {
-					treeWalk.addTree(baseCommit.getTree());
-					treeWalk.addTree(headCommit.getTree());
-					treeWalk.setFilter(TreeFilter.ANY_DIFF);
-					while (treeWalk.next())
-						changedFiles.add(treeWalk.getPathString());
-				} else {
-					treeWalk.addTree(headCommit.getTree());
-					treeWalk.addTree(baseCommit.getTree());
-					treeWalk.addTree(mergeBaseCommit.getTree());
-					treeWalk.setFilter(new TreeFilter() {
-
-						@Override
-						public boolean include(TreeWalk walker)
-								throws MissingObjectException, IncorrectObjectTypeException, IOException {
-							int m0 = walker.getRawMode(0);
-							
-							// only include the path if the file is modified in head commit 
-							// compared to base commit and that modification is not introduced
-							// by commit from target branch
-							return (walker.getRawMode(1) != m0 || !walker.idEqual(1, 0)) 
-									&& (walker.getRawMode(2) != m0 || !walker.idEqual(2, 0));
-						}
-
-						@Override
-						public boolean shouldBeRecursive() {
-							return false;
-						}
-
-						@Override
-						public TreeFilter clone() {
-							return this;
-						}
-						
-					});
-					while (treeWalk.next()) {
-						changedFiles.add(treeWalk.getPathString());
-					}
-				}
-			} catch (IOException e) {
-				throw new RuntimeException(e);
-			}
-		}
+		if (changedFiles == null) 
+			changedFiles = OneDev.getInstance(PullRequestUpdateInfoManager.class).getChangedFiles(this);
 		return changedFiles;
 	}
 	
@@ -0,0 +1,57 @@
+package io.onedev.server.model.support;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+/**
+ * Positions of code comments mapped to a particular file of a particular commit
+ */
+public class CodeCommentPositions implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final Map<Long, String> checked = new HashMap<>();
+	
+	private final Map<Long, TextRange> ranges = new HashMap<>();
+
+	/**
+	 * @return
+	 * 			map of checked comment id to commit of the comment. A comment is considered 
+	 * 			checked if we know whether or not it can be mapped to the file
+	 */
+	public Map<Long, String> getChecked() {
+		return checked;
+	}
+
+	/**
+	 * @return
+	 * 			map of comment id to mapped range of the comment. Only checked comments 
+	 * 			able to be mapped are included
+	 */
+	public Map<Long, TextRange> getRanges() {
+		return ranges;
+	}
+	
+	public void check(Long commentId, String commentCommit, @Nullable TextRange range) {
+		checked.put(commentId, commentCommit);
+		if (range != null)
+			ranges.put(commentId, range);
+		else
+			ranges.remove(commentId);
+	}
+	
+	public void uncheck(String commentCommit) {
+		for (Iterator<Map.Entry<Long, String>> it = checked.entrySet().iterator(); it.hasNext();) {
+			Map.Entry<Long, String> entry = it.next();
+			if (entry.getValue().equals(commentCommit)) {
+				ranges.remove(entry.getKey());
+				it.remove();
+			}
+		}
+	}
+	
+}
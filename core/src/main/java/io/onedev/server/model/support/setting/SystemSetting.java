@@ -32,6 +32,8 @@ public class SystemSetting implements Serializable, Validatable {
 	
 	private CurlConfig curlConfig = new SystemCurl();
 	
+	private boolean inProcessGitFetch;
+	
 	private boolean gravatarEnabled = true;
 	
 	@Editable(name="Server URL", order=90, description="Specify root URL to access this server. OneDev uses this url "
@@ -79,6 +81,19 @@ public class SystemSetting implements Serializable, Validatable {
 		this.curlConfig = curlConfig;
 	}
 
+	@Editable(name="Serve Git Fetch In Process", order=260, description="Whether or not to serve git clone "
+			+ "and fetch over http inside OneDev process instead of launching a git command for each request. "
+			+ "This avoids process startup and reuses cached repository objects, and is recommended for "
+			+ "repositories fetched frequently, for instance by build agents. Git push is always handled by "
+			+ "git command line as it needs to run repository hooks.")
+	public boolean isInProcessGitFetch() {
+		return inProcessGitFetch;
+	}
+
+	public void setInProcessGitFetch(boolean inProcessGitFetch) {
+		this.inProcessGitFetch = inProcessGitFetch;
+	}
+
 	@Editable(order=300, description="Whether or not to enable user gravatar.")
 	public boolean isGravatarEnabled() {
 		return gravatarEnabled;
@@ -1,8 +1,11 @@
 package io.onedev.server.persistence;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.FilenameFilter;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.lang.reflect.Field;
 import java.nio.charset.Charset;
 import java.sql.Connection;
@@ -13,19 +16,31 @@ import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.ManyToOne;
-import javax.persistence.criteria.CriteriaBuilder;
-import javax.persistence.criteria.CriteriaQuery;
-import javax.persistence.criteria.Root;
 import javax.persistence.metamodel.EntityType;
 
+import org.apache.commons.io.IOUtils;
 import org.dom4j.DocumentHelper;
 import org.dom4j.Element;
+import org.dom4j.ElementHandler;
+import org.dom4j.ElementPath;
+import org.dom4j.io.OutputFormat;
+import org.dom4j.io.SAXReader;
+import org.dom4j.io.XMLWriter;
 import org.hibernate.Interceptor;
 import org.hibernate.ReplicationMode;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.Transaction;
@@ -42,7 +57,9 @@ import org.hibernate.tool.hbm2ddl.SchemaExport;
 import org.hibernate.tool.schema.TargetType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.xml.sax.SAXException;
 
+import com.google.common.base.Charsets;
 import com.google.common.base.Preconditions;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
@@ -65,6 +82,12 @@ public class DefaultPersistManager implements PersistManager {
 
 	private static final int BACKUP_BATCH_SIZE = 1000;
 	
+	private static final int IMPORT_BATCH_SIZE = 100;
+	
+	private static final int IMPORT_CONCURRENCY = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+	
+	private static final int EXPORT_CONCURRENCY = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+	
 	private static final Logger logger = LoggerFactory.getLogger(DefaultPersistManager.class);
 	
 	protected final PhysicalNamingStrategy physicalNamingStrategy;
@@ -79,6 +102,8 @@ public class DefaultPersistManager implements PersistManager {
 	
 	protected final EntityValidator validator;
 	
+	protected final UnitOfWork unitOfWork;
+	
 	protected final StandardServiceRegistry serviceRegistry;
 	
 	protected volatile SessionFactory sessionFactory;
@@ -86,13 +111,14 @@ public class DefaultPersistManager implements PersistManager {
 	@Inject
 	public DefaultPersistManager(PhysicalNamingStrategy physicalNamingStrategy,
 			HibernateProperties properties, Interceptor interceptor, 
-			IdManager idManager, Dao dao, EntityValidator validator) {
+			IdManager idManager, Dao dao, EntityValidator validator, UnitOfWork unitOfWork) {
 		this.physicalNamingStrategy = physicalNamingStrategy;
 		this.properties = properties;
 		this.interceptor = interceptor;
 		this.idManager = idManager;
 		this.dao = dao;
 		this.validator = validator;
+		this.unitOfWork = unitOfWork;
 		serviceRegistry = new StandardServiceRegistryBuilder().applySettings(properties).build();
 	}
 	
@@ -369,99 +395,240 @@ public class DefaultPersistManager implements PersistManager {
 		exportData(exportDir, BACKUP_BATCH_SIZE);
 	}
 	
+	/*
+	 * Tables are exported concurrently, each in its own unit of work scrolling through table 
+	 * rows with a forward-only cursor. Rows are converted to XML one by one and written to file 
+	 * incrementally, so that memory usage does not grow with table size.
+	 */
 	@Sessional
 	@Override
 	public void exportData(File exportDir, int batchSize) {
-		Session session = sessionFactory.openSession();
-		for (Class<?> entityType: getEntityTypes(sessionFactory)) {
-			logger.info("Exporting table '" + entityType.getSimpleName() + "'...");
-			
-			logger.info("Querying table ids...");
-			
-			CriteriaBuilder builder = sessionFactory.getCriteriaBuilder();
-			CriteriaQuery<Number> query = builder.createQuery(Number.class);
-			Root<?> root = query.from(entityType);
-			query.select(root.get("id")).orderBy(builder.asc(root.get("id")));
-			
-			List<Number> ids = session.createQuery(query).list();
-			
-			int count = ids.size();
-			
-			for (int i=0; i<count/batchSize; i++) {
-				exportEntity(session, entityType, ids, i*batchSize, batchSize, batchSize, exportDir);
-				// clear session to free memory
-				session.clear();
-			}
-			
-			if (count%batchSize != 0) {
-				exportEntity(session, entityType, ids, count/batchSize*batchSize, count%batchSize, batchSize, exportDir);
+		ExecutorService executor = Executors.newFixedThreadPool(EXPORT_CONCURRENCY);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (Class<?> entityType: getEntityTypes(sessionFactory)) {
+				futures.add(executor.submit(new Runnable() {
+
+					@Override
+					public void run() {
+						unitOfWork.run(() -> exportEntities(entityType, batchSize, exportDir));
+					}
+					
+				}));
 			}
-			logger.info("");
+			for (Future<?> future: futures) 
+				future.get();
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw ExceptionUtils.unchecked(e.getCause());
+		} finally {
+			executor.shutdownNow();
 		}
 	}
 
-	private void exportEntity(Session session, Class<?> entityType, List<Number> ids, int start, int count, int batchSize, File exportDir) {
-		logger.info("Loading table rows ({}->{}) from database...", String.valueOf(start+1), (start + count));
+	private void exportEntities(Class<?> entityType, int batchSize, File exportDir) {
+		logger.info("Exporting table '" + entityType.getSimpleName() + "'...");
+		
+		long time = System.currentTimeMillis();
+		int count = 0;
+		Session session = dao.getSession();
+		Query<?> query = session.createQuery("from " + entityType.getSimpleName() + " order by id");
+		query.setFetchSize(batchSize);
+		query.setReadOnly(true);
+		ScrollableResults results = query.scroll(ScrollMode.FORWARD_ONLY);
+		try {
+			EntityFileWriter fileWriter = null;
+			try {
+				while (results.next()) {
+					if (count % batchSize == 0) {
+						if (fileWriter != null) {
+							fileWriter.close();
+							// clear session to free memory
+							session.clear();
+						}
+						String fileName;
+						if (count == 0)
+							fileName = entityType.getSimpleName() + "s.xml";
+						else
+							fileName = entityType.getSimpleName() + "s.xml." + (count/batchSize + 1);
+						fileWriter = new EntityFileWriter(new File(exportDir, fileName));
+					}
+					fileWriter.write(results.get(0));
+					count++;
+				}
+			} finally {
+				if (fileWriter != null)
+					fileWriter.close();
+			}
+		} finally {
+			results.close();
+		}
+		
+		long elapsed = System.currentTimeMillis() - time;
+		logger.info("Exported {} rows of table '{}' in {} ms ({} rows/s)", count, entityType.getSimpleName(), 
+				elapsed, elapsed != 0? count*1000L/elapsed: count);
+	}
+	
+	/**
+	 * Write entities into a data file as elements of a list. The file has the same format 
+	 * as a list document containing all entities, but only one entity is held in memory 
+	 * at a time. 
+	 */
+	private static class EntityFileWriter {
 		
-		Query<?> query = session.createQuery("from " + entityType.getSimpleName() + " where id>=:fromId and id<=:toId");
-		query.setParameter("fromId", ids.get(start));
-		query.setParameter("toId", ids.get(start+count-1));
+		private final OutputStream os;
 		
-		logger.info("Converting table rows to XML...");
-		VersionedDocument dom = new VersionedDocument();
-		Element rootElement = dom.addElement("list");
-		for (Object entity: query.list())
-			rootElement.appendContent(VersionedDocument.fromBean(entity));
-		String fileName;
-
-		if (start == 0)
-			fileName = entityType.getSimpleName() + "s.xml";
-		else
-			fileName = entityType.getSimpleName() + "s.xml." + (start/batchSize + 1);
+		private final XMLWriter writer;
+		
+		private final Element listElement = DocumentHelper.createElement("list");
+		
+		public EntityFileWriter(File file) {
+			try {
+				os = new BufferedOutputStream(new FileOutputStream(file));
+				OutputFormat format = new OutputFormat();
+				format.setIndent(true);
+				format.setNewlines(true);
+				format.setEncoding(Charsets.UTF_8.name());
+				writer = new XMLWriter(os, format);
+				writer.startDocument();
+				writer.writeOpen(listElement);
+			} catch (IOException | SAXException e) {
+				throw new RuntimeException(e);
+			}
+		}
+		
+		public void write(Object entity) {
+			try {
+				writer.write(VersionedDocument.fromBean(entity).getRootElement());
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		}
+		
+		public void close() {
+			try {
+				writer.writeClose(listElement);
+				writer.endDocument();
+				writer.flush();
+			} catch (IOException | SAXException e) {
+				throw new RuntimeException(e);
+			} finally {
+				IOUtils.closeQuietly(os);
+			}
+		}
 		
-		logger.info("Writing resulting XML to file '" + fileName + "...");
-		dom.writeToFile(new File(exportDir, fileName), true);
 	}
 
 	/*
 	 * We do not use @Transactional annotation and will manage the session and transaction manually 
-	 * in this method to reduce memory usage if importing a large database.
+	 * in this method to reduce memory usage if importing a large database. Tables are imported 
+	 * level by level according to their foreign key dependencies, and tables of the same level are 
+	 * imported concurrently, each in its own unit of work, so that references resolved via Dao 
+	 * while converting XML to entities are attached to the session replicating the entities. 
 	 */
 	@Sessional
 	@Override
 	public void importData(Metadata metadata, File dataDir) {
-		Session session = dao.getSession();
 		List<Class<?>> entityTypes = getEntityTypes(sessionFactory);
 		Collections.reverse(entityTypes);
-		for (Class<?> entityType: entityTypes) {
-			File[] dataFiles = dataDir.listFiles(new FilenameFilter() {
+		
+		Map<Class<?>, Integer> levels = new HashMap<>();
+		List<List<Class<?>>> entityTypesByLevel = new ArrayList<>();
+		for (int i=0; i<entityTypes.size(); i++) {
+			Class<?> entityType = entityTypes.get(i);
+			int level = 0;
+			for (int j=0; j<i; j++) {
+				if (hasForeignKeyDependency(entityType, entityTypes.get(j)))
+					level = Math.max(level, levels.get(entityTypes.get(j))+1);
+			}
+			levels.put(entityType, level);
+			while (entityTypesByLevel.size() <= level)
+				entityTypesByLevel.add(new ArrayList<>());
+			entityTypesByLevel.get(level).add(entityType);
+		}
+		
+		ExecutorService executor = Executors.newFixedThreadPool(IMPORT_CONCURRENCY);
+		try {
+			for (List<Class<?>> entityTypesOfLevel: entityTypesByLevel) {
+				List<Future<?>> futures = new ArrayList<>();
+				for (Class<?> entityType: entityTypesOfLevel) {
+					futures.add(executor.submit(new Runnable() {
 
-				@Override
-				public boolean accept(File dir, String name) {
-					return name.startsWith(entityType.getSimpleName() + "s.xml");
+						@Override
+						public void run() {
+							unitOfWork.run(() -> importEntities(entityType, dataDir));
+						}
+						
+					}));
 				}
+				for (Future<?> future: futures)
+					future.get();
+			}
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw ExceptionUtils.unchecked(e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+	
+	private void importEntities(Class<?> entityType, File dataDir) {
+		File[] dataFiles = dataDir.listFiles(new FilenameFilter() {
+
+			@Override
+			public boolean accept(File dir, String name) {
+				return name.startsWith(entityType.getSimpleName() + "s.xml");
+			}
+			
+		});
+		
+		long time = System.currentTimeMillis();
+		AtomicInteger count = new AtomicInteger(0);
+		Session session = dao.getSession();
+		session.setJdbcBatchSize(IMPORT_BATCH_SIZE);
+		for (File file: dataFiles) {
+			Transaction transaction = session.beginTransaction();
+			try {
+				logger.info("Importing from data file '" + file.getName() + "'...");
 				
-			});
-			for (File file: dataFiles) {
-				Transaction transaction = session.beginTransaction();
-				try {
-					logger.info("Importing from data file '" + file.getName() + "'...");
-					VersionedDocument dom = VersionedDocument.fromFile(file);
-					
-					for (Element element: dom.getRootElement().elements()) {
+				/*
+				 * Parse data file element by element to avoid loading whole file into memory
+				 */
+				SAXReader reader = new SAXReader();
+				reader.addHandler("/list/*", new ElementHandler() {
+
+					@Override
+					public void onStart(ElementPath elementPath) {
+					}
+
+					@Override
+					public void onEnd(ElementPath elementPath) {
+						Element element = elementPath.getCurrent();
 						element.detach();
 						AbstractEntity entity = (AbstractEntity) new VersionedDocument(DocumentHelper.createDocument(element)).toBean();
 						session.replicate(entity, ReplicationMode.EXCEPTION);
+						if (count.incrementAndGet() % IMPORT_BATCH_SIZE == 0) {
+							session.flush();
+							session.clear();
+						}
 					}
-					session.flush();
-					session.clear();
-					transaction.commit();
-				} catch (Throwable e) {
-					transaction.rollback();
-					throw ExceptionUtils.unchecked(e);
-				}
+					
+				});
+				reader.read(file);
+				session.flush();
+				session.clear();
+				transaction.commit();
+			} catch (Throwable e) {
+				transaction.rollback();
+				throw ExceptionUtils.unchecked(e);
 			}
-		}	
+		}
+		
+		long elapsed = System.currentTimeMillis() - time;
+		logger.info("Imported {} rows of table '{}' in {} ms ({} rows/s)", count.get(), entityType.getSimpleName(), 
+				elapsed, elapsed != 0? count.get()*1000L/elapsed: count.get());
 	}
 	
 	protected void validateData(Metadata metadata, File dataDir) {
@@ -1,6 +1,8 @@
 package io.onedev.server.rest;
 
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
@@ -13,16 +15,24 @@ import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.ResponseBuilder;
+import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriInfo;
 
 import org.apache.shiro.authz.UnauthorizedException;
+import org.hibernate.criterion.Order;
 import org.hibernate.criterion.Restrictions;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+
 import io.onedev.server.manager.BuildManager;
+import io.onedev.server.manager.ProjectManager;
 import io.onedev.server.model.Build;
+import io.onedev.server.persistence.dao.Dao;
 import io.onedev.server.persistence.dao.EntityCriteria;
 import io.onedev.server.rest.jersey.ValidQueryParams;
 import io.onedev.server.security.SecurityUtils;
+import io.onedev.server.util.facade.ProjectFacade;
 
 @Path("/builds")
 @Consumes(MediaType.WILDCARD)
@@ -32,39 +42,92 @@ public class BuildResource {
 
 	private final BuildManager buildManager;
 	
+	private final ProjectManager projectManager;
+	
+	private final Dao dao;
+	
+	private final ObjectMapper objectMapper;
+	
 	@Inject
-	public BuildResource(BuildManager buildManager) {
+	public BuildResource(BuildManager buildManager, ProjectManager projectManager, Dao dao, 
+			ObjectMapper objectMapper) {
 		this.buildManager = buildManager;
+		this.projectManager = projectManager;
+		this.dao = dao;
+		this.objectMapper = objectMapper;
 	}
 	
 	@ValidQueryParams
 	@GET
     public Response query(@QueryParam("configuration") Long configurationId, @QueryParam("commit") String commit, 
-    		@QueryParam("name") String name, @QueryParam("offset") Integer offset, @QueryParam("count") Integer count, 
-    		@Context UriInfo uriInfo) {
-		EntityCriteria<Build> criteria = buildManager.newCriteria();
-		if (configurationId != null)
-			criteria.add(Restrictions.eq("configuration.id", configurationId));
-		if (commit != null)
-			criteria.add(Restrictions.eq("commit", commit));
-		if (name != null)
-			criteria.add(Restrictions.eq("name", name));
+    		@QueryParam("name") String name, @QueryParam("after") Long after, @QueryParam("offset") Integer offset, 
+    		@QueryParam("count") Integer count, @Context UriInfo uriInfo) {
+		EntityCriteria<Build> criteria = getCriteria(configurationId, commit, name);
 		
-    	if (offset == null)
+    	/*
+    	 * Order by id so that pages are stable, and so that a page can be located via id of 
+    	 * last entity of previous page without skipping over all previous entities 
+    	 */
+		criteria.addOrder(Order.asc("id"));
+		if (after != null) {
+			criteria.add(Restrictions.gt("id", after));
+			offset = 0;
+		} else if (offset == null) {
     		offset = 0;
+		}
     	
     	if (count == null || count > RestConstants.PAGE_SIZE) 
     		count = RestConstants.PAGE_SIZE;
 
-    	Collection<Build> builds = buildManager.query(criteria, offset, count);
-		for (Build build: builds) {
-			if (!SecurityUtils.canReadIssues(build.getConfiguration().getProject().getFacade()))
-				throw new UnauthorizedException("Unable to access project '" + build.getConfiguration().getProject().getName() + "'");
-		}
-		
-		return Response.ok(builds, RestConstants.JSON_UTF8).build();
+    	List<Build> builds = buildManager.query(criteria, offset, count);
+		for (Build build: builds) 
+			check(build);
 		
+		ResponseBuilder builder = Response.ok(builds, RestConstants.JSON_UTF8);
+		if (builds.size() == count)
+			builder.links(PageUtils.getNextLink(uriInfo, builds.get(builds.size()-1).getId()));
+		return builder.build();
     }
+	
+	@Path("/export")
+	@ValidQueryParams
+	@GET
+	@Produces(EntityStreamingOutput.MEDIA_TYPE)
+    public Response export(@QueryParam("configuration") Long configurationId, @QueryParam("commit") String commit, 
+    		@QueryParam("name") String name) {
+		EntityCriteria<Build> criteria = getCriteria(configurationId, commit, name);
+		
+		// Restrict to readable projects up front as access can not be denied once streaming starts
+		Collection<Long> projectIds = new HashSet<>();
+		for (ProjectFacade project: projectManager.getAccessibleProjects(SecurityUtils.getUser())) {
+			if (SecurityUtils.canReadIssues(project))
+				projectIds.add(project.getId());
+		}
+		criteria.createAlias("configuration", "configuration");
+		if (!projectIds.isEmpty())
+			criteria.add(Restrictions.in("configuration.project.id", projectIds));
+		else
+			criteria.add(Restrictions.sqlRestriction("1=0"));
+		
+		StreamingOutput output = new EntityStreamingOutput<Build>(dao.getSession(), criteria, objectMapper);
+		return Response.ok(output, EntityStreamingOutput.MEDIA_TYPE).build();
+	}
+	
+	private EntityCriteria<Build> getCriteria(Long configurationId, String commit, String name) {
+		EntityCriteria<Build> criteria = buildManager.newCriteria();
+		if (configurationId != null)
+			criteria.add(Restrictions.eq("configuration.id", configurationId));
+		if (commit != null)
+			criteria.add(Restrictions.eq("commit", commit));
+		if (name != null)
+			criteria.add(Restrictions.eq("name", name));
+		return criteria;
+	}
+	
+	private void check(Build build) {
+		if (!SecurityUtils.canReadIssues(build.getConfiguration().getProject().getFacade()))
+			throw new UnauthorizedException("Unable to access project '" + build.getConfiguration().getProject().getName() + "'");
+	}
     
 	@Path("/{buildId}")
     @GET
@@ -0,0 +1,75 @@
+package io.onedev.server.rest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.StreamingOutput;
+
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.hibernate.criterion.Order;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import io.onedev.server.model.AbstractEntity;
+import io.onedev.server.persistence.dao.EntityCriteria;
+import io.onedev.server.util.jackson.RestView;
+
+/**
+ * Write entities matching specified criteria as newline delimited json. Entities are
+ * iterated with a forward-only cursor, and evicted from session once written, so that
+ * memory usage stays flat regardless of number of exported entities.
+ * <p>
+ * Response status is sent before the first entity is written, so access can not be 
+ * denied while streaming. Specified criteria should only match entities accessible to 
+ * current user.
+ */
+public class EntityStreamingOutput<T extends AbstractEntity> implements StreamingOutput {
+
+	public static final String MEDIA_TYPE = "application/x-ndjson";
+
+	private static final int FETCH_SIZE = 500;
+
+	private static final int FLUSH_INTERVAL = 100;
+
+	private final Session session;
+
+	private final EntityCriteria<T> criteria;
+
+	private final ObjectWriter writer;
+
+	public EntityStreamingOutput(Session session, EntityCriteria<T> criteria, ObjectMapper objectMapper) {
+		this.session = session;
+		this.criteria = criteria;
+		writer = objectMapper.writerWithView(RestView.class).without(SerializationFeature.INDENT_OUTPUT);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public void write(OutputStream os) throws IOException, WebApplicationException {
+		criteria.addOrder(Order.asc("id"));
+		ScrollableResults results = criteria.getExecutableCriteria(session)
+				.setFetchSize(FETCH_SIZE)
+				.setReadOnly(true)
+				.scroll(ScrollMode.FORWARD_ONLY);
+		try {
+			int count = 0;
+			while (results.next()) {
+				T entity = (T) results.get(0);
+				os.write(writer.writeValueAsBytes(entity));
+				os.write('\n');
+				session.evict(entity);
+				if (++count % FLUSH_INTERVAL == 0)
+					os.flush();
+			}
+			os.flush();
+		} finally {
+			results.close();
+		}
+	}
+
+}
@@ -13,6 +13,10 @@ public class PageUtils {
 	
 	public static final String PARAM_PAGE = "page";
 	
+	public static final String PARAM_AFTER = "after";
+	
+	public static final String PARAM_OFFSET = "offset";
+	
 	public static int getLastPage(int totalCount, int pageSize) {
 		if (totalCount % pageSize == 0)
 			return totalCount / pageSize;
@@ -58,4 +62,23 @@ public class PageUtils {
 		return links.toArray(new Link[links.size()]);
 	}
 	
+	/**
+	 * Get link to next page of a keyset paged query. Next page starts after the id of 
+	 * last entity of current page, so that database does not need to skip over all 
+	 * entities of previous pages
+	 * 
+	 * @param uriInfo
+	 * 			uri info of current request
+	 * @param lastId
+	 * 			id of last entity in current page
+	 * @return
+	 * 			link to next page
+	 */
+	public static Link getNextLink(UriInfo uriInfo, Long lastId) {
+		UriBuilder uriBuilder = uriInfo.getRequestUriBuilder()
+				.replaceQueryParam(PARAM_OFFSET)
+				.replaceQueryParam(PARAM_AFTER, lastId);
+		return Link.fromUriBuilder(uriBuilder).rel("next").type("GET").build();
+	}
+	
 }
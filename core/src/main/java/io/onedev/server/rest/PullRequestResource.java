@@ -2,6 +2,8 @@ package io.onedev.server.rest;
 
 import java.util.Collection;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
@@ -14,17 +16,25 @@ import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.ResponseBuilder;
+import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriInfo;
 
 import org.apache.shiro.authz.UnauthorizedException;
+import org.hibernate.criterion.Order;
 import org.hibernate.criterion.Restrictions;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.onedev.server.manager.ProjectManager;
 import io.onedev.server.manager.PullRequestManager;
 import io.onedev.server.model.PullRequest;
 import io.onedev.server.model.support.pullrequest.CloseInfo;
+import io.onedev.server.persistence.dao.Dao;
 import io.onedev.server.persistence.dao.EntityCriteria;
 import io.onedev.server.rest.jersey.ValidQueryParams;
 import io.onedev.server.security.SecurityUtils;
+import io.onedev.server.util.facade.ProjectFacade;
 
 @Path("/pulls")
 @Consumes(MediaType.WILDCARD)
@@ -34,17 +44,26 @@ public class PullRequestResource {
 
 	private final PullRequestManager pullRequestManager;
 	
+	private final ProjectManager projectManager;
+	
+	private final Dao dao;
+	
+	private final ObjectMapper objectMapper;
+	
 	@Inject
-	public PullRequestResource(PullRequestManager pullRequestManager) {
+	public PullRequestResource(PullRequestManager pullRequestManager, ProjectManager projectManager, 
+			Dao dao, ObjectMapper objectMapper) {
 		this.pullRequestManager = pullRequestManager;
+		this.projectManager = projectManager;
+		this.dao = dao;
+		this.objectMapper = objectMapper;
 	}
 
     @Path("/{pullRequestId}")
     @GET
     public PullRequest get(@PathParam("pullRequestId") Long pullRequestId) {
     	PullRequest request = pullRequestManager.load(pullRequestId);
-    	if (!SecurityUtils.canReadCode(request.getTargetProject().getFacade()))
-    		throw new UnauthorizedException();
+    	check(request);
     	return request;
     }
         
@@ -57,8 +76,80 @@ public class PullRequestResource {
     		@QueryParam("submittedBefore") Date submittedBefore, @QueryParam("submittedAfter") Date submittedAfter,   
     		@QueryParam("status") String status, @QueryParam("closeUser") Long closeUserId, 
     		@QueryParam("closedBefore") Date closedBefore, @QueryParam("closedAfter") Date closedAfter,   
-    		@QueryParam("offset") Integer offset, @QueryParam("count") Integer count, @Context UriInfo uriInfo) {
+    		@QueryParam("after") Long after, @QueryParam("offset") Integer offset, 
+    		@QueryParam("count") Integer count, @Context UriInfo uriInfo) {
+    	
+    	EntityCriteria<PullRequest> criteria = getCriteria(targetProjectId, targetBranch, sourceProjectId, 
+    			sourceBranch, number, submitterId, submittedBefore, submittedAfter, status, closeUserId, 
+    			closedBefore, closedAfter);
     	
+    	/*
+    	 * Order by id so that pages are stable, and so that a page can be located via id of 
+    	 * last entity of previous page without skipping over all previous entities 
+    	 */
+    	criteria.addOrder(Order.asc("id"));
+    	if (after != null) {
+    		criteria.add(Restrictions.gt("id", after));
+    		offset = 0;
+    	} else if (offset == null) {
+    		offset = 0;
+    	}
+    	
+    	if (count == null || count > RestConstants.PAGE_SIZE) 
+    		count = RestConstants.PAGE_SIZE;
+
+    	List<PullRequest> requests = pullRequestManager.query(criteria, offset, count);
+		for (PullRequest request: requests) 
+			check(request);
+
+		ResponseBuilder builder = Response.ok(requests, RestConstants.JSON_UTF8);
+		if (requests.size() == count)
+			builder.links(PageUtils.getNextLink(uriInfo, requests.get(requests.size()-1).getId()));
+		return builder.build();
+    }
+    
+    @Path("/export")
+    @ValidQueryParams
+    @GET
+    @Produces(EntityStreamingOutput.MEDIA_TYPE)
+    public Response export(
+    		@QueryParam("targetProject") Long targetProjectId, @QueryParam("targetBranch") String targetBranch,
+    		@QueryParam("sourceProject") Long sourceProjectId, @QueryParam("sourceBranch") String sourceBranch,
+    		@QueryParam("number") Long number, @QueryParam("submitter") String submitterId, 
+    		@QueryParam("submittedBefore") Date submittedBefore, @QueryParam("submittedAfter") Date submittedAfter,   
+    		@QueryParam("status") String status, @QueryParam("closeUser") Long closeUserId, 
+    		@QueryParam("closedBefore") Date closedBefore, @QueryParam("closedAfter") Date closedAfter) {
+    	EntityCriteria<PullRequest> criteria = getCriteria(targetProjectId, targetBranch, sourceProjectId, 
+    			sourceBranch, number, submitterId, submittedBefore, submittedAfter, status, closeUserId, 
+    			closedBefore, closedAfter);
+    	
+    	
+    	// Restrict to readable projects up front as access can not be denied once streaming starts
+    	Collection<Long> projectIds = new HashSet<>();
+    	for (ProjectFacade project: projectManager.getAccessibleProjects(SecurityUtils.getUser())) {
+    		if (SecurityUtils.canReadCode(project))
+    			projectIds.add(project.getId());
+    	}
+    	if (!projectIds.isEmpty())
+    		criteria.add(Restrictions.in("targetProject.id", projectIds));
+    	else
+    		criteria.add(Restrictions.sqlRestriction("1=0"));
+    	
+    	StreamingOutput output = new EntityStreamingOutput<PullRequest>(dao.getSession(), criteria, objectMapper);
+    	return Response.ok(output, EntityStreamingOutput.MEDIA_TYPE).build();
+    }
+    
+    private void check(PullRequest request) {
+    	if (!SecurityUtils.canReadCode(request.getTargetProject().getFacade())) {
+    		throw new UnauthorizedException("Unable to access pull requests of project '" 
+    				+ request.getTargetProject() + "'");
+    	}
+    }
+    
+    private EntityCriteria<PullRequest> getCriteria(Long targetProjectId, String targetBranch,
+    		Long sourceProjectId, String sourceBranch, Long number, String submitterId, 
+    		Date submittedBefore, Date submittedAfter, String status, Long closeUserId, 
+    		Date closedBefore, Date closedAfter) {
     	EntityCriteria<PullRequest> criteria = EntityCriteria.of(PullRequest.class);
 
     	if (targetProjectId != null)
@@ -94,21 +185,7 @@ public class PullRequestResource {
 		if (closedAfter != null)
 			criteria.add(Restrictions.ge("closeInfo.date", closedAfter));
 		
-    	if (offset == null)
-    		offset = 0;
-    	
-    	if (count == null || count > RestConstants.PAGE_SIZE) 
-    		count = RestConstants.PAGE_SIZE;
-
-    	Collection<PullRequest> requests = pullRequestManager.query(criteria, offset, count);
-		for (PullRequest request: requests) {
-	    	if (!SecurityUtils.canReadCode(request.getTargetProject().getFacade())) {
-	    		throw new UnauthorizedException("Unable to access pull requests of project '" 
-	    				+ request.getTargetProject() + "'");
-	    	}
-		}
-
-		return Response.ok(requests, RestConstants.JSON_UTF8).build();
+		return criteria;
     }
     
-}
\ No newline at end of file
+}
@@ -2,6 +2,9 @@ package io.onedev.server.rest.github;
 
 import java.io.IOException;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 import javax.inject.Inject;
@@ -75,26 +78,105 @@ public class CommitStatusResource {
     	if (!SecurityUtils.canWriteCode(project.getFacade()))
     		throw new UnauthorizedException();
     	
+    	String context = getContext(commitStatus);
+    	Build build = getBuild(getConfiguration(project, context), commitHash, commitStatus);
+    	buildManager.save(build);
+    	UriBuilder uriBuilder = uriInfo.getAbsolutePathBuilder();
+    	uriBuilder.path(context);
+    	commitStatus.put("id", build.getId().toString());
+    	
+    	return Response.created(uriBuilder.build()).entity(commitStatus).type(RestConstants.JSON_UTF8).build();
+    }
+	
+	/**
+	 * Save multiple commit statuses in one go. Each status should specify its commit via 
+	 * key <tt>sha</tt>, in addition to the keys accepted by single status endpoint. All 
+	 * statuses are saved in a single transaction, and checks of affected pull requests 
+	 * are coalesced
+	 */
+	@Consumes(MediaType.APPLICATION_JSON)
+	@Path("/{projectName}/statuses")
+    @POST
+    public Response save(@PathParam("projectName") String projectName, List<Map<String, String>> commitStatuses) {
+		Project project = getProject(projectName);
+    	if (!SecurityUtils.canWriteCode(project.getFacade()))
+    		throw new UnauthorizedException();
+    	
+    	/*
+    	 * Validate all statuses before saving any of them, so that a malformed entry  
+    	 * is rejected as bad request instead of failing the batch half way 
+    	 */
+    	for (int i=0; i<commitStatuses.size(); i++) {
+    		String commitHash = commitStatuses.get(i).get("sha");
+    		if (commitHash == null)
+    			throw new IllegalArgumentException("Commit sha should be specified for commit status #" + (i+1));
+    		else if (!ObjectId.isId(commitHash))
+    			throw new IllegalArgumentException("Invalid commit sha of commit status #" + (i+1) + ": " + commitHash);
+    	}
+    	
+    	Map<String, Configuration> configurations = new HashMap<>();
+    	Map<String, Build> builds = new LinkedHashMap<>();
+    	for (Map<String, String> commitStatus: commitStatuses) {
+    		String commitHash = commitStatus.get("sha");
+        	String context = getContext(commitStatus);
+        	Configuration configuration = configurations.get(context);
+        	if (configuration == null) {
+        		configuration = getConfiguration(project, context);
+        		configurations.put(context, configuration);
+        	}
+        	
+        	/*
+        	 * Only the last reported status of a commit and configuration is saved
+        	 */
+        	String key = context + ":" + ObjectId.fromString(commitHash).name();
+        	Build build = builds.get(key);
+        	if (build == null)
+        		build = getBuild(configuration, commitHash, commitStatus);
+        	else
+        		populate(build, commitStatus);
+        	builds.put(key, build);
+    	}
+    	buildManager.save(builds.values());
+    	
+    	for (Map<String, String> commitStatus: commitStatuses) {
+    		String key = getContext(commitStatus) + ":" + ObjectId.fromString(commitStatus.get("sha")).name();
+    		commitStatus.put("id", builds.get(key).getId().toString());
+    	}
+    	return Response.ok(commitStatuses, RestConstants.JSON_UTF8).build();
+	}
+	
+	private String getContext(Map<String, String> commitStatus) {
     	String context = commitStatus.get("context");
     	if (context == null)
     		context = "default";
-    	
+    	return context;
+	}
+	
+	private Configuration getConfiguration(Project project, String context) {
     	Configuration configuration = configurationManager.find(project, context);
     	if (configuration == null) {
     		String message = String.format("Unable to find configuration (project: %s, name: %s)", project.getName(), context);
     		throw new OneException(message);
     	}
-    	
+    	return configuration;
+	}
+	
+	private Build getBuild(Configuration configuration, String commitHash, Map<String, String> commitStatus) {
     	ObjectId commit = ObjectId.fromString(commitHash);
-    	String status = commitStatus.get("state").toUpperCase();
-    	if (status.equals("PENDING"))
-    		status = "RUNNING";
     	Build build = buildManager.findByCommit(configuration, commit.name());
     	if (build == null) {
     		build = new Build();
     		build.setConfiguration(configuration);
         	build.setCommitHash(commit.name());
     	}
+    	populate(build, commitStatus);
+    	return build;
+	}
+	
+	private void populate(Build build, Map<String, String> commitStatus) {
+    	String status = commitStatus.get("state").toUpperCase();
+    	if (status.equals("PENDING"))
+    		status = "RUNNING";
     	String version;
     	String description = commitStatus.get("description");
     	String url = commitStatus.get("target_url");
@@ -116,13 +198,7 @@ public class CommitStatusResource {
     	build.setStatus(Build.Status.valueOf(status));
     	build.setDate(new Date());
     	build.setUrl(url);
-    	buildManager.save(build);
-    	UriBuilder uriBuilder = uriInfo.getAbsolutePathBuilder();
-    	uriBuilder.path(context);
-    	commitStatus.put("id", build.getId().toString());
-    	
-    	return Response.created(uriBuilder.build()).entity(commitStatus).type(RestConstants.JSON_UTF8).build();
-    }
+	}
 
 	@Consumes(MediaType.APPLICATION_FORM_URLENCODED)
 	@Path("/{projectName}/statuses/{commit}")
@@ -4,25 +4,37 @@ import static io.onedev.server.search.code.FieldConstants.BLOB_HASH;
 import static io.onedev.server.search.code.FieldConstants.BLOB_INDEX_VERSION;
 import static io.onedev.server.search.code.FieldConstants.BLOB_PATH;
 import static io.onedev.server.search.code.FieldConstants.BLOB_SYMBOL_LIST;
+import static io.onedev.server.search.code.IndexConstants.MAX_INDEXABLE_SIZE;
 
 import java.io.IOException;
 import java.nio.channels.ClosedByInterruptException;
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
 
 import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
-import org.apache.commons.lang.SerializationUtils;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.index.BinaryDocValues;
 import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.search.BooleanClause.Occur;
 import org.apache.lucene.search.BooleanQuery;
@@ -33,13 +45,20 @@ import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
 import org.apache.lucene.util.BytesRef;
 import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectLoader;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevTree;
 import org.eclipse.jgit.revwalk.RevWalk;
 import org.eclipse.jgit.treewalk.TreeWalk;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
 import io.onedev.jsymbol.Symbol;
+import io.onedev.jsymbol.SymbolExtractor;
 import io.onedev.jsymbol.SymbolExtractorRegistry;
 import io.onedev.launcher.loader.Listen;
 import io.onedev.server.event.entity.EntityRemoved;
@@ -49,7 +68,10 @@ import io.onedev.server.model.Project;
 import io.onedev.server.persistence.annotation.Transactional;
 import io.onedev.server.search.code.hit.QueryHit;
 import io.onedev.server.search.code.query.BlobQuery;
+import io.onedev.server.search.code.query.SymbolQuery;
+import io.onedev.server.util.ContentDetector;
 import io.onedev.utils.ExceptionUtils;
+import io.onedev.utils.StringUtils;
 import jersey.repackaged.com.google.common.base.Preconditions;
 
 @Singleton
@@ -57,16 +79,55 @@ public class DefaultSearchManager implements SearchManager {
 
 	private static final Logger logger = LoggerFactory.getLogger(DefaultSearchManager.class);
 	
+	private static final long SYMBOL_MEMORY_BUDGET = Runtime.getRuntime().maxMemory()/20;
+	
+	private static final int MAX_CACHED_DEFINITIONS = 1000;
+	
+	private static final int DEFINITION_EXPIRE_MINUTES = 30;
+	
+	private static final int MAX_CACHED_SYMBOLS = 200000;
+	
+	/*
+	 * Symbols are keyed by blob index version, blob hash and blob path, which uniquely 
+	 * identifies symbols stored in index, so cached symbols never go stale
+	 */
+	private final Cache<String, IndexedSymbols> indexedSymbolCache = CacheBuilder.newBuilder()
+			.maximumWeight(SYMBOL_MEMORY_BUDGET)
+			.<String, IndexedSymbols>weigher((key, value) -> value.getLength())
+			.build();
+	
+	/*
+	 * Symbols extracted from blob content for outline, keyed the same way as indexed symbols
+	 */
+	private final Cache<String, List<Symbol>> extractedSymbolCache = CacheBuilder.newBuilder()
+			.maximumWeight(MAX_CACHED_SYMBOLS)
+			.<String, List<Symbol>>weigher((key, value) -> value.size() + 1)
+			.build();
+	
+	/*
+	 * Definitions are keyed by fork root, commit, excluded blob path, count and symbol name. 
+	 * Definitions of a project are discarded whenever a commit is indexed, as blobs of 
+	 * the cached commit may not be indexed completely at the time of lookup
+	 */
+	private final Cache<String, List<QueryHit>> definitionCache = CacheBuilder.newBuilder()
+			.maximumSize(MAX_CACHED_DEFINITIONS)
+			.expireAfterAccess(DEFINITION_EXPIRE_MINUTES, TimeUnit.MINUTES)
+			.build();
+	
 	private final StorageManager storageManager;
 	
 	private final Map<Long, SearcherManager> searcherManagers = new ConcurrentHashMap<>();
 	
 	private final IndexManager indexManager;
 	
+	private final ExecutorService executorService;
+	
 	@Inject
-	public DefaultSearchManager(StorageManager storageManager, IndexManager indexManager) {
+	public DefaultSearchManager(StorageManager storageManager, IndexManager indexManager, 
+			ExecutorService executorService) {
 		this.storageManager = storageManager;
 		this.indexManager = indexManager;
+		this.executorService = executorService;
 	}
 	
 	@Nullable
@@ -96,6 +157,58 @@ public class DefaultSearchManager implements SearchManager {
 		}
 	}
 	
+	/*
+	 * Verify candidate blobs of specified query concurrently. At most one task per processor 
+	 * is in flight, and results are merged in candidate order so that hits are the same as 
+	 * verifying candidates sequentially. Remaining tasks are cancelled once enough hits are 
+	 * found or searching thread is interrupted. Cancelled tasks may still be running after 
+	 * searcher is released by the searching thread, so each task holds its own reference 
+	 * of the index reader while using the searcher
+	 */
+	private void verify(Repository repository, RevTree revTree, IndexSearcher searcher, BlobQuery query, 
+			Collection<String> blobPaths, List<QueryHit> hits) throws InterruptedException {
+		int concurrency = Runtime.getRuntime().availableProcessors();
+		Queue<Future<List<QueryHit>>> futures = new LinkedList<>();
+		Iterator<String> it = blobPaths.iterator();
+		try {
+			while (hits.size() < query.getCount()) {
+				while (futures.size() < concurrency && it.hasNext()) {
+					String blobPath = it.next();
+					futures.add(executorService.submit(new Callable<List<QueryHit>>() {
+
+						@Override
+						public List<QueryHit> call() throws Exception {
+							List<QueryHit> hitsOfBlob = new ArrayList<>();
+							IndexReader reader = searcher.getIndexReader();
+							if (!reader.tryIncRef()) // searcher already released as searching is done
+								return hitsOfBlob;
+							try (TreeWalk treeWalk = TreeWalk.forPath(repository, blobPath, revTree)) {
+								if (treeWalk != null)
+									query.collect(searcher, treeWalk, hitsOfBlob);
+							} finally {
+								reader.decRef();
+							}
+							return hitsOfBlob;
+						}
+						
+					}));
+				}
+				Future<List<QueryHit>> future = futures.poll();
+				if (future == null)
+					break;
+				for (QueryHit hit: future.get()) {
+					if (hits.size() < query.getCount())
+						hits.add(hit);
+				}
+			}
+		} catch (ExecutionException e) {
+			throw ExceptionUtils.unchecked(e.getCause());
+		} finally {
+			for (Future<List<QueryHit>> future: futures)
+				future.cancel(true);
+		}
+	}
+	
 	@Override
 	public List<QueryHit> search(Project project, ObjectId commit, final BlobQuery query) 
 			throws InterruptedException {
@@ -106,9 +219,10 @@ public class DefaultSearchManager implements SearchManager {
 			try {
 				final IndexSearcher searcher = searcherManager.acquire();
 				try {
-					try (RevWalk revWalk = new RevWalk(project.getRepository())){
+					Repository repository = project.getRepository();
+					try (RevWalk revWalk = new RevWalk(repository)){
 						final RevTree revTree = revWalk.parseCommit(commit).getTree();
-						final Set<String> checkedBlobPaths = new HashSet<>();
+						final Set<String> blobPaths = new LinkedHashSet<>();
 						
 						searcher.search(query.asLuceneQuery(), new SimpleCollector() {
 	
@@ -116,16 +230,9 @@ public class DefaultSearchManager implements SearchManager {
 							
 							@Override
 							public void collect(int doc) throws IOException {
-								if (hits.size() < query.getCount() && !Thread.currentThread().isInterrupted()) {
+								if (!Thread.currentThread().isInterrupted()) {
 									Preconditions.checkState(blobPathValues.advanceExact(doc));
-									String blobPath = blobPathValues.binaryValue().utf8ToString();
-									
-									if (!checkedBlobPaths.contains(blobPath)) {
-										TreeWalk treeWalk = TreeWalk.forPath(project.getRepository(), blobPath, revTree);									
-										if (treeWalk != null)
-											query.collect(searcher, treeWalk, hits);
-										checkedBlobPaths.add(blobPath);
-									}
+									blobPaths.add(blobPathValues.binaryValue().utf8ToString());
 								}
 							}
 	
@@ -140,6 +247,9 @@ public class DefaultSearchManager implements SearchManager {
 							}
 	
 						});
+						
+						if (!Thread.currentThread().isInterrupted())
+							verify(repository, revTree, searcher, query, blobPaths, hits);
 					}
 				} finally {
 					searcherManager.release(searcher);
@@ -156,29 +266,35 @@ public class DefaultSearchManager implements SearchManager {
 
 	@Override
 	public List<Symbol> getSymbols(Project project, ObjectId blobId, String blobPath) {
-		try {
-			SearcherManager searcherManager = getSearcherManager(project.getForkRoot());
-			if (searcherManager != null) {
-				try {
-					IndexSearcher searcher = searcherManager.acquire();
-					try {
-						return getSymbols(searcher, blobId, blobPath);
-					} finally {
-						searcherManager.release(searcher);
-					}
-				} catch (IOException e) {
-					throw ExceptionUtils.unchecked(e);
-				}
-			} else {
+		String blobName = blobPath;
+		if (blobPath.indexOf('/') != -1) 
+			blobName = StringUtils.substringAfterLast(blobPath, "/");
+		SymbolExtractor<Symbol> extractor = SymbolExtractorRegistry.getExtractor(blobName);
+		if (extractor == null)
+			return null;
+		
+		String cacheKey = indexManager.getIndexVersion(extractor) + ":" + blobId.name() + ":" + blobPath;
+		List<Symbol> symbols = extractedSymbolCache.getIfPresent(cacheKey);
+		if (symbols == null) {
+			try (ObjectReader reader = project.getRepository().newObjectReader()) {
+				ObjectLoader objectLoader = reader.open(blobId);
+				if (objectLoader.getSize() > MAX_INDEXABLE_SIZE)
+					return null;
+				String content = ContentDetector.convertToText(objectLoader.getCachedBytes(), blobName);
+				if (content == null)
+					return null;
+				symbols = Collections.unmodifiableList(extractor.extract(blobName, StringUtils.removeBOM(content)));
+			} catch (Throwable e) {
+				logger.warn("Error extracting symbols from blob (hash:" + blobId.name() + ", path:" + blobPath + ")", e);
 				return null;
 			}
-		} catch (InterruptedException e) {
-			throw new RuntimeException(e);
+			extractedSymbolCache.put(cacheKey, symbols);
 		}
+		return symbols;
 	}
 	
 	@Override
-	public List<Symbol> getSymbols(IndexSearcher searcher, ObjectId blobId, String blobPath) {
+	public IndexedSymbols getIndexedSymbols(IndexSearcher searcher, ObjectId blobId, String blobPath) {
 		BooleanQuery.Builder builder = new BooleanQuery.Builder();
 		builder.add(BLOB_HASH.query(blobId.name()), Occur.MUST);
 		builder.add(BLOB_PATH.query(blobPath), Occur.MUST);
@@ -186,14 +302,18 @@ public class DefaultSearchManager implements SearchManager {
 		BooleanQuery query = builder.build();
 		
 		String indexVersion = indexManager.getIndexVersion(SymbolExtractorRegistry.getExtractor(blobPath));
-		AtomicReference<List<Symbol>> symbolsRef = new AtomicReference<>(null);
+		String cacheKey = indexVersion + ":" + blobId.name() + ":" + blobPath;
+		IndexedSymbols cachedSymbols = indexedSymbolCache.getIfPresent(cacheKey);
+		if (cachedSymbols != null)
+			return cachedSymbols;
+		
+		AtomicReference<IndexedSymbols> symbolsRef = new AtomicReference<>(null);
 		if (searcher != null) {
 			try {
 				searcher.search(query, new SimpleCollector() {
 
 					private LeafReaderContext context;
 
-					@SuppressWarnings("unchecked")
 					@Override
 					public void collect(int doc) throws IOException {
 						Document document = searcher.doc(context.docBase+doc);
@@ -201,9 +321,9 @@ public class DefaultSearchManager implements SearchManager {
 							BytesRef bytesRef = document.getBinaryValue(BLOB_SYMBOL_LIST.name());
 							if (bytesRef != null) {
 								try {
-									symbolsRef.set((List<Symbol>) SerializationUtils.deserialize(bytesRef.bytes));
+									symbolsRef.set(new IndexedSymbols(BytesRef.deepCopyOf(bytesRef).bytes));
 								} catch (Exception e) {
-									logger.error("Error deserializing symbols", e);
+									logger.error("Error decoding symbols", e);
 								}
 							}
 						}
@@ -225,7 +345,42 @@ public class DefaultSearchManager implements SearchManager {
 			}
 		}
 		
-		return symbolsRef.get();
+		IndexedSymbols symbols = symbolsRef.get();
+		if (symbols != null)
+			indexedSymbolCache.put(cacheKey, symbols);
+		return symbols;
+	}
+	
+	@Override
+	public List<QueryHit> findDefinitions(Project project, ObjectId commit, String symbolName, 
+			@Nullable String excludeBlobPath, int count) throws InterruptedException {
+		String cacheKey = project.getForkRoot().getId() + ":" + commit.name() + ":" 
+				+ (excludeBlobPath!=null?excludeBlobPath:"") + ":" + count + ":" + symbolName;
+		List<QueryHit> definitions = definitionCache.getIfPresent(cacheKey);
+		if (definitions == null) {
+			definitions = new ArrayList<>();
+			BlobQuery query = new SymbolQuery.Builder().term(symbolName)
+					.excludeBlobPath(excludeBlobPath)
+					.primary(true)
+					.local(false)
+					.caseSensitive(true)
+					.count(count)
+					.build();
+			definitions.addAll(search(project, commit, query));
+			if (definitions.size() < count) {
+				query = new SymbolQuery.Builder().term(symbolName)
+						.excludeBlobPath(excludeBlobPath)
+						.primary(false)
+						.local(false)
+						.caseSensitive(true)
+						.count(count - definitions.size())
+						.build();
+				definitions.addAll(search(project, commit, query));
+			}
+			definitions = Collections.unmodifiableList(definitions);
+			definitionCache.put(cacheKey, definitions);
+		}
+		return definitions;
 	}
 	
 	@Listen
@@ -234,17 +389,26 @@ public class DefaultSearchManager implements SearchManager {
 			SearcherManager searcherManager = getSearcherManager(event.getProject().getForkRoot()); 
 			if (searcherManager != null)
 				searcherManager.maybeRefresh();
+			invalidateDefinitions(event.getProject().getForkRoot().getId());
 		} catch (InterruptedException | IOException e) {
 			throw ExceptionUtils.unchecked(e);
 		}
 	}
 
+	private void invalidateDefinitions(Long forkRootId) {
+		String prefix = forkRootId + ":";
+		definitionCache.invalidateAll(definitionCache.asMap().keySet().stream()
+				.filter(it->it.startsWith(prefix))
+				.collect(Collectors.toList()));
+	}
+	
 	@Transactional
 	@Listen
 	public void on(EntityRemoved event) {
 		if (event.getEntity() instanceof Project) {
 			synchronized (searcherManagers) {
 				Long projectId = event.getEntity().getId();						
+				invalidateDefinitions(projectId);
 				SearcherManager searcherManager = searcherManagers.remove(projectId);
 				if (searcherManager != null) {
 					try {
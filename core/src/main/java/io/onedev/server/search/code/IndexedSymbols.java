@@ -0,0 +1,192 @@
+package io.onedev.server.search.code;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import org.apache.lucene.store.ByteArrayDataInput;
+import org.apache.lucene.store.GrowableByteArrayDataOutput;
+
+import com.google.common.base.Preconditions;
+
+import io.onedev.jsymbol.Symbol;
+import io.onedev.jsymbol.TokenPosition;
+
+/**
+ * Symbols of a blob stored in index. Name, namespace, flags and position of each symbol 
+ * are encoded compactly (names and namespaces via a per blob dictionary, numbers as 
+ * variable length ints), so that symbols can be matched and rendered as query hits without 
+ * any object deserialization or parsing of blob content. 
+ */
+public class IndexedSymbols {
+
+	private static final byte FORMAT_VERSION = 3;
+
+	private static final int PRIMARY = 1;
+
+	private static final int SEARCHABLE = 2;
+
+	private static final int LOCAL_IN_HIERARCHY = 4;
+
+	private static final int HAS_POSITION = 8;
+
+	private final int length;
+
+	private final String[] names;
+	
+	private final String[] namespaces;
+
+	private final byte[] flags;
+
+	private final int[] positions;
+
+	/**
+	 * Parse encoded symbols
+	 *
+	 * @param bytes
+	 * 			bytes encoded via {@link #encode(List)}
+	 * @throws IllegalArgumentException
+	 * 			if bytes are not encoded with current format
+	 */
+	public IndexedSymbols(byte[] bytes) {
+		length = bytes.length;
+
+		ByteArrayDataInput input = new ByteArrayDataInput(bytes);
+		Preconditions.checkArgument(input.readByte() == FORMAT_VERSION, "Unexpected symbols format");
+
+		String[] dictionary = new String[input.readVInt()];
+		for (int i=0; i<dictionary.length; i++)
+			dictionary[i] = input.readString();
+
+		int count = input.readVInt();
+		names = new String[count];
+		namespaces = new String[count];
+		flags = new byte[count];
+		positions = new int[count*4];
+		for (int i=0; i<count; i++) {
+			int nameRef = input.readVInt();
+			if (nameRef != 0)
+				names[i] = dictionary[nameRef-1];
+			int namespaceRef = input.readVInt();
+			if (namespaceRef != 0)
+				namespaces[i] = dictionary[namespaceRef-1];
+			flags[i] = input.readByte();
+			if ((flags[i] & HAS_POSITION) != 0) {
+				positions[i*4] = input.readVInt();
+				positions[i*4+1] = input.readVInt();
+				positions[i*4+2] = positions[i*4] + input.readVInt();
+				positions[i*4+3] = input.readVInt();
+			}
+		}
+		Preconditions.checkArgument(input.eof(), "Unexpected trailing bytes of symbols");
+	}
+
+	public static byte[] encode(List<Symbol> symbols) {
+		try {
+			GrowableByteArrayDataOutput output = new GrowableByteArrayDataOutput(1024);
+			output.writeByte(FORMAT_VERSION);
+
+			Map<String, Integer> dictionary = new HashMap<>();
+			List<String> dictionaryNames = new ArrayList<>();
+			List<String> namespaces = new ArrayList<>();
+			for (Symbol symbol: symbols) {
+				String namespace = symbol.getParent()!=null?symbol.getParent().getFQN():null;
+				namespaces.add(namespace);
+				for (String name: new String[] {symbol.getName(), namespace}) {
+					if (name != null && !dictionary.containsKey(name)) {
+						dictionary.put(name, dictionary.size()+1);
+						dictionaryNames.add(name);
+					}
+				}
+			}
+			output.writeVInt(dictionaryNames.size());
+			for (String name: dictionaryNames)
+				output.writeString(name);
+
+			output.writeVInt(symbols.size());
+			for (int i=0; i<symbols.size(); i++) {
+				Symbol symbol = symbols.get(i);
+				String namespace = namespaces.get(i);
+				output.writeVInt(symbol.getName()!=null?dictionary.get(symbol.getName()):0);
+				output.writeVInt(namespace!=null?dictionary.get(namespace):0);
+				int flags = 0;
+				if (symbol.isPrimary())
+					flags |= PRIMARY;
+				if (symbol.isSearchable())
+					flags |= SEARCHABLE;
+				if (symbol.isLocalInHierarchy())
+					flags |= LOCAL_IN_HIERARCHY;
+				TokenPosition position = symbol.getPosition();
+				if (position != null)
+					flags |= HAS_POSITION;
+				output.writeByte((byte) flags);
+				if (position != null) {
+					output.writeVInt(position.getFromLine());
+					output.writeVInt(position.getFromCh());
+					output.writeVInt(position.getToLine() - position.getFromLine());
+					output.writeVInt(position.getToCh());
+				}
+			}
+
+			byte[] bytes = new byte[output.getPosition()];
+			System.arraycopy(output.getBytes(), 0, bytes, 0, bytes.length);
+			return bytes;
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * @return
+	 * 			length of encoded bytes
+	 */
+	public int getLength() {
+		return length;
+	}
+
+	public int size() {
+		return names.length;
+	}
+
+	@Nullable
+	public String getName(int index) {
+		return names[index];
+	}
+
+	/**
+	 * @return
+	 * 			fully qualified name of parent of symbol at specified index, or <tt>null</tt> 
+	 * 			if the symbol does not have a parent
+	 */
+	@Nullable
+	public String getNamespace(int index) {
+		return namespaces[index];
+	}
+
+	public boolean isPrimary(int index) {
+		return (flags[index] & PRIMARY) != 0;
+	}
+
+	public boolean isSearchable(int index) {
+		return (flags[index] & SEARCHABLE) != 0;
+	}
+
+	public boolean isLocalInHierarchy(int index) {
+		return (flags[index] & LOCAL_IN_HIERARCHY) != 0;
+	}
+
+	@Nullable
+	public TokenPosition getPosition(int index) {
+		if ((flags[index] & HAS_POSITION) != 0) {
+			return new TokenPosition(positions[index*4], positions[index*4+1],
+					positions[index*4+2], positions[index*4+3]);
+		} else {
+			return null;
+		}
+	}
+
+}
@@ -27,10 +27,42 @@ public interface SearchManager {
 	List<QueryHit> search(Project project, ObjectId commit, BlobQuery query) 
 			throws InterruptedException, TooGeneralQueryException;
 	
+	/**
+	 * Get symbol objects of specified blob, for instance to display outline of the blob. 
+	 * Symbols are extracted from blob content, and cached in memory once extracted. Use 
+	 * {@link #search(Project, ObjectId, BlobQuery)} or {@link #findDefinitions} to look 
+	 * up symbols across blobs, which does not extract symbol objects
+	 * 
+	 * @return
+	 * 			unmodifiable list of symbols, or <tt>null</tt> if symbols can not be extracted 
+	 * 			from specified blob
+	 */
 	@Nullable
 	List<Symbol> getSymbols(Project project, ObjectId blobId, String blobPath);
 	
+	/**
+	 * Get indexed symbols of specified blob, so that symbols can be matched and rendered 
+	 * without extracting symbol objects. Indexed symbols are cached in memory once loaded
+	 * 
+	 * @return
+	 * 			indexed symbols, or <tt>null</tt> if specified blob is not indexed yet
+	 */
 	@Nullable
-	List<Symbol> getSymbols(IndexSearcher searcher, ObjectId blobId, String blobPath);
+	IndexedSymbols getIndexedSymbols(IndexSearcher searcher, ObjectId blobId, String blobPath);
+	
+	/**
+	 * Find non-local definitions of specified symbol in specified commit, with primary 
+	 * definitions coming first. Result is cached per commit so that repeated lookups of 
+	 * the same symbol (while hovering over source for instance) return immediately.
+	 * 
+	 * @param excludeBlobPath
+	 * 			blob path to exclude from the result, or <tt>null</tt> to include all blobs
+	 * @return
+	 * 			unmodifiable list of symbol hits
+	 * @throws 
+	 * 			InterruptedException if the search process is interrupted
+	 */
+	List<QueryHit> findDefinitions(Project project, ObjectId commit, String symbolName, 
+			@Nullable String excludeBlobPath, int count) throws InterruptedException;
 	
 }
\ No newline at end of file
@@ -4,49 +4,81 @@ import javax.annotation.Nullable;
 
 import org.apache.wicket.Component;
 import org.apache.wicket.markup.html.image.Image;
+import org.apache.wicket.request.resource.PackageResourceReference;
 
 import io.onedev.jsymbol.Symbol;
+import io.onedev.jsymbol.TokenPosition;
+import io.onedev.jsymbol.util.HighlightableLabel;
+import io.onedev.jsymbol.util.NoAntiCacheImage;
 import io.onedev.utils.Range;
 
+/**
+ * Hit of a symbol. Hits found via symbol index only carry name, namespace and position
+ * of the symbol, and are rendered from these information, so that blob content does not
+ * need to be parsed for symbol objects
+ */
 public class SymbolHit extends QueryHit {
 
 	private static final long serialVersionUID = 1L;
 
 	private final Symbol symbol;
-	
+
+	private final String name;
+
+	private final String namespace;
+
 	private final Range match;
-	
+
 	public SymbolHit(String blobPath, Symbol symbol, @Nullable Range match) {
 		super(blobPath, symbol.getPosition());
 		this.symbol = symbol;
+		name = symbol.getName();
+		namespace = symbol.getParent()!=null?symbol.getParent().getFQN():null;
+		this.match = match;
+	}
+
+	public SymbolHit(String blobPath, String name, @Nullable String namespace,
+			@Nullable TokenPosition position, @Nullable Range match) {
+		super(blobPath, position);
+		symbol = null;
+		this.name = name;
+		this.namespace = namespace;
 		this.match = match;
 	}
 
+	@Nullable
 	public Symbol getSymbol() {
 		return symbol;
 	}
 
+	public String getName() {
+		return name;
+	}
+
 	@Override
 	public String toString() {
-		return symbol.toString();
+		return symbol!=null?symbol.toString():name;
 	}
 
 	@Override
 	public Component render(String componentId) {
-		return symbol.render(componentId, match);
+		if (symbol != null)
+			return symbol.render(componentId, match);
+		else
+			return new HighlightableLabel(componentId, name, match);
 	}
 
 	@Override
 	public Image renderIcon(String componentId) {
-		return symbol.renderIcon(componentId);
+		if (symbol != null)
+			return symbol.renderIcon(componentId);
+		else
+			return new NoAntiCacheImage(componentId, new PackageResourceReference(FileHit.class, "bullet.gif"));
 	}
-	
+
 	@Override
 	public String getNamespace() {
-		if (symbol.getParent() != null)
-			return symbol.getParent().getFQN();
-		else
-			return null;
+		return namespace;
 	}
 
 }
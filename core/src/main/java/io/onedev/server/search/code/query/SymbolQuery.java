@@ -12,12 +12,13 @@ import org.apache.lucene.index.Term;
 import org.apache.lucene.search.BooleanClause.Occur;
 import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.WildcardQuery;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.treewalk.TreeWalk;
 
-import io.onedev.jsymbol.Symbol;
 import io.onedev.server.OneDev;
+import io.onedev.server.search.code.IndexedSymbols;
 import io.onedev.server.search.code.SearchManager;
 import io.onedev.server.search.code.hit.QueryHit;
 import io.onedev.server.search.code.hit.SymbolHit;
@@ -60,42 +61,48 @@ public class SymbolQuery extends BlobQuery {
 	@Override
 	public void collect(IndexSearcher searcher, TreeWalk treeWalk, List<QueryHit> hits) {
 		String blobPath = treeWalk.getPathString();
+		if (excludeBlobPath != null && excludeBlobPath.equals(blobPath))
+			return;
 		ObjectId blobId = treeWalk.getObjectId(0);
 		
-		List<Symbol> symbols = OneDev.getInstance(SearchManager.class).getSymbols(searcher, blobId, blobPath);
+		// match and render hits from indexed symbols, so that blob content does not need to be 
+		// parsed for symbol objects
+		IndexedSymbols symbols = OneDev.getInstance(SearchManager.class).getIndexedSymbols(searcher, blobId, blobPath);
 		if (symbols != null) {
-			for (Symbol symbol: symbols) {
+			String normalizedTerm;
+			if (!caseSensitive)
+				normalizedTerm = term.toLowerCase();
+			else
+				normalizedTerm = term;
+			
+			String normalizedExcludeTerm;
+			if (excludeTerm != null) {
+				if (!caseSensitive)
+					normalizedExcludeTerm = excludeTerm.toLowerCase();
+				else
+					normalizedExcludeTerm = excludeTerm;
+			} else {
+				normalizedExcludeTerm = null;
+			}
+			
+			for (int i=0; i<symbols.size(); i++) {
 				if (hits.size() < getCount()) {
-					if ((primary==null || primary.booleanValue() == symbol.isPrimary()) 
-							&& symbol.getName() != null 
-							&& symbol.isSearchable()
-							&& (local == null || local.booleanValue() == symbol.isLocalInHierarchy())) {
-						String normalizedTerm;
-						if (!caseSensitive)
-							normalizedTerm = term.toLowerCase();
-						else
-							normalizedTerm = term;
-						
+					String symbolName = symbols.getName(i);
+					if ((primary==null || primary.booleanValue() == symbols.isPrimary(i)) 
+							&& symbolName != null 
+							&& symbols.isSearchable(i)
+							&& (local == null || local.booleanValue() == symbols.isLocalInHierarchy(i))) {
 						String normalizedSymbolName;
 						if (!caseSensitive)
-							normalizedSymbolName = symbol.getName().toLowerCase();
+							normalizedSymbolName = symbolName.toLowerCase();
 						else
-							normalizedSymbolName = symbol.getName();
+							normalizedSymbolName = symbolName;
 						
-						String normalizedExcludeTerm;
-						if (excludeTerm != null) {
-							if (!caseSensitive)
-								normalizedExcludeTerm = excludeTerm.toLowerCase();
-							else
-								normalizedExcludeTerm = excludeTerm;
-						} else {
-							normalizedExcludeTerm = null;
-						}
 						if (WildcardUtils.matchString(normalizedTerm, normalizedSymbolName)
-								&& (normalizedExcludeTerm == null || !normalizedSymbolName.equals(normalizedExcludeTerm))
-								&& (excludeBlobPath == null || !excludeBlobPath.equals(blobPath))) {
+								&& (normalizedExcludeTerm == null || !normalizedSymbolName.equals(normalizedExcludeTerm))) {
 							Range match = WildcardUtils.rangeOfMatch(normalizedTerm, normalizedSymbolName);
-							hits.add(new SymbolHit(blobPath, symbol, match));
+							hits.add(new SymbolHit(blobPath, symbolName, symbols.getNamespace(i), 
+									symbols.getPosition(i), match));
 						}
 					}
 				} else {
@@ -133,7 +140,11 @@ public class SymbolQuery extends BlobQuery {
 			else
 				fieldName = BLOB_SECONDARY_SYMBOLS.name();
 			
-			builder.add(new WildcardQuery(new Term(fieldName, term.toLowerCase())), Occur.MUST);
+			Term symbolTerm = new Term(fieldName, term.toLowerCase());
+			if (term.indexOf('?') != -1 || term.indexOf('*') != -1)
+				builder.add(new WildcardQuery(symbolTerm), Occur.MUST);
+			else // exact lookup (jump to definition for instance) does not need to walk the terms dictionary
+				builder.add(new TermQuery(symbolTerm), Occur.MUST);
 		}
 	}
 	
@@ -21,11 +21,13 @@ import org.eclipse.jgit.lib.ObjectLoader;
 import org.eclipse.jgit.treewalk.TreeWalk;
 
 import io.onedev.jsymbol.TokenPosition;
+import io.onedev.server.OneDev;
+import io.onedev.server.git.Blob;
+import io.onedev.server.manager.BlobContentManager;
 import io.onedev.server.search.code.IndexConstants;
 import io.onedev.server.search.code.hit.QueryHit;
 import io.onedev.server.search.code.hit.TextHit;
 import io.onedev.server.search.code.query.regex.RegexLiterals;
-import io.onedev.server.util.ContentDetector;
 import io.onedev.utils.Range;
 
 import com.google.common.base.Preconditions;
@@ -87,8 +89,10 @@ public class TextQuery extends BlobQuery {
 			objectLoader = treeWalk.getObjectReader().open(treeWalk.getObjectId(0));
 			if (objectLoader.getSize() <= IndexConstants.MAX_INDEXABLE_SIZE) {
 				String blobPath = treeWalk.getPathString();
-				String content = ContentDetector.convertToText(objectLoader.getCachedBytes(), blobPath);
-				if (content != null) {
+				BlobContentManager blobContentManager = OneDev.getInstance(BlobContentManager.class);
+				Blob.Text text = blobContentManager.getText(treeWalk.getObjectId(0), blobPath, objectLoader::getCachedBytes);
+				if (text != null) {
+					String content = text.getContent();
 					Pattern pattern = getPattern();
 					if (pattern != null) {
 						int lineNo = 0;
@@ -108,58 +112,7 @@ public class TextQuery extends BlobQuery {
 							lineNo++;
 						}
 					} else {
-						String normalizedTerm;
-						if (!caseSensitive)
-							normalizedTerm = term.toLowerCase();
-						else
-							normalizedTerm = term;
-						
-						int lineNo = 0;
-						for (String line: Splitter.on('\n').split(content)) {
-							if (line.length() <= MAX_LINE_LEN) {
-								String normalizedLine;
-								if (!caseSensitive)
-									normalizedLine = line.toLowerCase();
-								else
-									normalizedLine = line;
-								
-								int start = normalizedLine.indexOf(normalizedTerm, 0);
-								while (start != -1) {
-									int end = start + normalizedTerm.length();
-									if (wholeWord) {
-										char beforeChar;
-										if (start == 0)
-											beforeChar = ' ';
-										else 
-											beforeChar = line.charAt(start-1);
-										
-										char afterChar;
-										if (end == line.length())
-											afterChar = ' ';
-										else
-											afterChar = line.charAt(end);
-										
-										if (!isWordChar(beforeChar) && !isWordChar(afterChar)) {
-											Range range = new Range(start, end);
-											TokenPosition position = new TokenPosition(lineNo, range.getFrom(), lineNo, range.getTo());
-											hits.add(new TextHit(blobPath, line, position));
-											if (hits.size() >= getCount())
-												break;
-										}
-									} else {
-										Range range = new Range(start, end);
-										TokenPosition position = new TokenPosition(lineNo, range.getFrom(), lineNo, range.getTo());
-										hits.add(new TextHit(blobPath, line, position));
-										if (hits.size() >= getCount())
-											break;
-									}
-									start = normalizedLine.indexOf(normalizedTerm, end);
-								}
-								if (hits.size() >= getCount())
-									break;
-							}
-							lineNo++;
-						}
+						collectLiterals(blobPath, content, hits);
 					}
 				}
 			}
@@ -168,6 +121,74 @@ public class TextQuery extends BlobQuery {
 		}
 	}
 
+	/*
+	 * Search literal term in whole content instead of line by line, so that lines without 
+	 * matches do not need to be split out and normalized 
+	 */
+	void collectLiterals(String blobPath, String content, List<QueryHit> hits) {
+		if (term.length() == 0 || term.indexOf('\n') != -1)
+			return;
+		
+		int lineNo = 0;
+		int lineStart = 0;
+		int lineEnd = getLineEnd(content, lineStart);
+		String line = null;
+		
+		int start = indexOf(content, 0);
+		while (start != -1) {
+			while (start > lineEnd) {
+				lineStart = lineEnd + 1;
+				lineEnd = getLineEnd(content, lineStart);
+				lineNo++;
+				line = null;
+			}
+			if (lineEnd - lineStart <= MAX_LINE_LEN) {
+				int end = start + term.length();
+				boolean matches;
+				if (wholeWord) {
+					char beforeChar = start==lineStart? ' ': content.charAt(start-1);
+					char afterChar = end==lineEnd? ' ': content.charAt(end);
+					matches = !isWordChar(beforeChar) && !isWordChar(afterChar);
+				} else {
+					matches = true;
+				}
+				if (matches) {
+					if (line == null)
+						line = content.substring(lineStart, lineEnd);
+					TokenPosition position = new TokenPosition(lineNo, start-lineStart, lineNo, end-lineStart);
+					hits.add(new TextHit(blobPath, line, position));
+					if (hits.size() >= getCount())
+						break;
+				}
+				start = indexOf(content, end);
+			} else {
+				start = indexOf(content, lineEnd);
+			}
+		}
+	}
+	
+	private int getLineEnd(String content, int lineStart) {
+		int lineEnd = content.indexOf('\n', lineStart);
+		return lineEnd != -1? lineEnd: content.length();
+	}
+	
+	private int indexOf(String content, int fromIndex) {
+		if (caseSensitive)
+			return content.indexOf(term, fromIndex);
+		
+		char lowerFirst = Character.toLowerCase(term.charAt(0));
+		char upperFirst = Character.toUpperCase(term.charAt(0));
+		int maxIndex = content.length() - term.length();
+		for (int i=fromIndex; i<=maxIndex; i++) {
+			char ch = content.charAt(i);
+			if ((ch == lowerFirst || ch == upperFirst || Character.toLowerCase(ch) == lowerFirst) 
+					&& content.regionMatches(true, i, term, 0, term.length())) {
+				return i;
+			}
+		}
+		return -1;
+	}
+	
 	private boolean isWordChar(char ch) {
 		return CharUtils.isAsciiAlphanumeric(ch) || ch == '_';
 	}
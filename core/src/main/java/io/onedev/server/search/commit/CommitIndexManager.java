@@ -0,0 +1,49 @@
+package io.onedev.server.search.commit;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+import org.eclipse.jgit.lib.ObjectId;
+
+import io.onedev.server.model.Project;
+
+/**
+ * Maintains a per-project Lucene index of commit messages, authors, committers and touched
+ * paths, so that commit queries can narrow down candidate commits before walking git history.
+ * Commits are always indexed together with all their ancestors, hence if a commit is indexed,
+ * its whole history is indexed as well.
+ */
+public interface CommitIndexManager {
+
+	/**
+	 * Get candidate commits of specified criterias. Criterias of the same kind are or'ed, and
+	 * criterias of different kinds are and'ed, the same as how commit query is evaluated
+	 *
+	 * @param project
+	 * 			project to get candidate commits in
+	 * @param startCommits
+	 * 			commits to start walking history from. Index can only be used if all of them
+	 * 			are indexed
+	 * @param messages
+	 * 			regular expressions of commit messages
+	 * @param authors
+	 * 			regular expressions of commit authors in form of <tt>name &lt;email&gt;</tt>
+	 * @param committers
+	 * 			regular expressions of commit committers in form of <tt>name &lt;email&gt;</tt>
+	 * @param paths
+	 * 			touched paths, may contain wildcards
+	 * @return
+	 * 			a superset of commits matching specified criterias in history of start commits,
+	 * 			or <tt>null</tt> if the index can not be used, for instance if start commits are
+	 * 			not indexed yet, if no criteria can be translated to index query, or if too
+	 * 			many commits are matched to narrow down the walk. Caller should check all
+	 * 			commits in this case
+	 */
+	@Nullable
+	Set<ObjectId> getCandidates(Project project, Collection<? extends ObjectId> startCommits, List<String> messages,
+			List<String> authors, List<String> committers, List<String> paths);
+
+}
@@ -3,8 +3,11 @@ package io.onedev.server.search.commit;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import javax.annotation.Nullable;
 
@@ -14,10 +17,24 @@ import org.antlr.v4.runtime.BaseErrorListener;
 import org.antlr.v4.runtime.CommonTokenStream;
 import org.antlr.v4.runtime.RecognitionException;
 import org.antlr.v4.runtime.Recognizer;
+import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.PersonIdent;
 import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.revwalk.filter.AndRevFilter;
+import org.eclipse.jgit.revwalk.filter.AuthorRevFilter;
+import org.eclipse.jgit.revwalk.filter.CommitTimeRevFilter;
+import org.eclipse.jgit.revwalk.filter.CommitterRevFilter;
+import org.eclipse.jgit.revwalk.filter.MessageRevFilter;
+import org.eclipse.jgit.revwalk.filter.OrRevFilter;
+import org.eclipse.jgit.revwalk.filter.RevFilter;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
+import org.eclipse.jgit.treewalk.filter.OrTreeFilter;
+import org.eclipse.jgit.treewalk.filter.PathFilterGroup;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -25,7 +42,6 @@ import io.onedev.server.OneDev;
 import io.onedev.server.event.RefUpdated;
 import io.onedev.server.exception.OneException;
 import io.onedev.server.git.GitUtils;
-import io.onedev.server.git.command.RevListCommand;
 import io.onedev.server.manager.BuildManager;
 import io.onedev.server.model.Build;
 import io.onedev.server.model.Project;
@@ -268,59 +284,221 @@ public class CommitQueryUtils {
 		}
 	}
 	
-	public static void fill(Project project, @Nullable QueryContext query, RevListCommand command) {
+	/**
+	 * Fill specified rev walk with start points and filters of specified query, so that 
+	 * commits can be queried in process with JGit
+	 * 
+	 * @param project
+	 * 			project to query commits in
+	 * @param query
+	 * 			query to fill, <tt>null</tt> to query all commits
+	 * @param compareWith
+	 * 			revision to start walking from if query does not specify any revisions, 
+	 * 			<tt>null</tt> to start walking from all branches 
+	 * @param revWalk
+	 * 			rev walk to fill
+	 * @return
+	 * 			maximum number of commits should be returned by the walk, or <tt>0</tt> 
+	 * 			if there is no limit
+	 */
+	public static int fill(Project project, @Nullable QueryContext query, @Nullable String compareWith, 
+			RevWalk revWalk) throws IOException {
+		List<String> authors = new ArrayList<>();
+		List<String> committers = new ArrayList<>();
+		List<String> messages = new ArrayList<>();
+		List<String> paths = new ArrayList<>();
+		List<RevFilter> timeFilters = new ArrayList<>();
+		List<Revision> revisions = new ArrayList<>();
 		if (query != null && query.ALL() == null) {
 			for (CriteriaContext criteria: query.criteria()) {
 				if (criteria.authorCriteria() != null) {
 					if (criteria.authorCriteria().AuthoredByMe() != null) {
 						if (SecurityUtils.getUser() != null)
-							command.authors().add("<" + SecurityUtils.getUser().getEmail() + ">");
+							authors.add("<" + SecurityUtils.getUser().getEmail() + ">");
 						else
 							throw new OneException("Please login to perform this query");
 					} else {
 						String value = criteria.authorCriteria().Value().getText();
-						value = StringUtils.replace(unescape(removeParens(value)), "*", ".*");
-						command.authors().add(value);
+						authors.add(StringUtils.replace(unescape(removeParens(value)), "*", ".*"));
 					}
 				} else if (criteria.committerCriteria() != null) {
 					if (criteria.committerCriteria().CommittedByMe() != null) {
 						if (SecurityUtils.getUser() != null)
-							command.committers().add("<" + SecurityUtils.getUser().getEmail() + ">");
+							committers.add("<" + SecurityUtils.getUser().getEmail() + ">");
 						else
 							throw new OneException("Please login to perform this query");
 					} else {
 						String value = criteria.committerCriteria().Value().getText();
-						value = StringUtils.replace(unescape(removeParens(value)), "*", ".*");
-						command.committers().add(value);
+						committers.add(StringUtils.replace(unescape(removeParens(value)), "*", ".*"));
 					}
 				} else if (criteria.pathCriteria() != null) {
-					command.paths().add(unescape(removeParens(criteria.pathCriteria().Value().getText())));
+					paths.add(unescape(removeParens(criteria.pathCriteria().Value().getText())));
 				} else if (criteria.beforeCriteria() != null) {
-					command.before(removeParens(criteria.beforeCriteria().Value().getText()));
+					Date date = parseDate(removeParens(criteria.beforeCriteria().Value().getText()));
+					timeFilters.add(CommitTimeRevFilter.before(date));
 				} else if (criteria.afterCriteria() != null) {
-					command.after(removeParens(criteria.afterCriteria().Value().getText()));
+					Date date = parseDate(removeParens(criteria.afterCriteria().Value().getText()));
+					timeFilters.add(CommitTimeRevFilter.after(date));
 				} 
 			}
-			command.messages(getMessages(query));
-			
-			boolean ranged = false;
-			for (Revision revision: getRevisions(project, query)) {
-				if (revision.since) {
-					command.revisions().add("^" + revision.value);
-					ranged = true;
-				} else if (revision.until) {
-					command.revisions().add(revision.value);
-					ranged = true;
-				} else if (project.getBranchRef(revision.value) != null) {
+			messages = getMessages(query);
+			revisions = getRevisions(project, query);
+		}
+		
+		int limit = 0;
+		boolean ranged = false;
+		List<RevCommit> startCommits = new ArrayList<>();
+		for (Revision revision: revisions) {
+			RevCommit commit = revWalk.parseCommit(project.getObjectId(revision.value, true));
+			if (revision.since) {
+				revWalk.markUninteresting(commit);
+				ranged = true;
+			} else {
+				startCommits.add(commit);
+				if (revision.until || project.getBranchRef(revision.value) != null)
 					ranged = true;
-					command.revisions().add(revision.value);
-				} else {
-					command.revisions().add(revision.value);
-				}
 			}
-			if (command.revisions().size() == 1 && !ranged) {
-				command.count(1);
+		}
+		if (revisions.size() == 1 && !ranged)
+			limit = 1;
+		
+		if (revisions.isEmpty() && compareWith != null) {
+			startCommits.add(revWalk.parseCommit(project.getObjectId(compareWith, true)));
+		} else if (startCommits.isEmpty()) {
+			for (Ref ref: project.getRefs(Constants.R_HEADS))
+				startCommits.add(revWalk.parseCommit(ref.getObjectId()));
+		}
+		for (RevCommit startCommit: startCommits)
+			revWalk.markStart(startCommit);
+
+		/*
+		 * Time filters go first as they are cheap and can stop the walk early. Candidates 
+		 * from commit index go next as a cheap pre-filter to avoid checking commit body of 
+		 * commits not possibly matching the query
+		 */
+		List<RevFilter> filters = new ArrayList<>(timeFilters);
+		
+		Set<ObjectId> candidates = OneDev.getInstance(CommitIndexManager.class).getCandidates(
+				project, startCommits, messages, authors, committers, paths);
+		if (candidates != null)
+			filters.add(new CandidateRevFilter(candidates));
+		
+		if (!authors.isEmpty()) 
+			filters.add(or(authors.stream().map(AuthorRevFilter::create).collect(Collectors.toList())));
+		if (!committers.isEmpty())
+			filters.add(or(committers.stream().map(CommitterRevFilter::create).collect(Collectors.toList())));
+		if (!messages.isEmpty())
+			filters.add(or(messages.stream().map(MessageRevFilter::create).collect(Collectors.toList())));
+		
+		if (!paths.isEmpty()) {
+			List<TreeFilter> pathFilters = new ArrayList<>();
+			List<String> exactPaths = new ArrayList<>();
+			for (String path: paths) {
+				if (path.contains("*"))
+					pathFilters.add(new WildcardPathFilter(path));
+				else
+					exactPaths.add(path);
 			}
+			if (!exactPaths.isEmpty())
+				pathFilters.add(PathFilterGroup.createFromStrings(exactPaths));
+			TreeFilter pathFilter;
+			if (pathFilters.size() == 1)
+				pathFilter = pathFilters.get(0);
+			else
+				pathFilter = OrTreeFilter.create(pathFilters);
+			
+			/* 
+			 * Set as tree filter of the walk so that it is evaluated before rev filters. This 
+			 * way merges always get TREESAME parent simplification, the same as "git rev-list 
+			 * -- path", regardless of whether they match other filters
+			 */
+			revWalk.setTreeFilter(AndTreeFilter.create(pathFilter, TreeFilter.ANY_DIFF));
 		}
+		
+		if (filters.size() == 1)
+			revWalk.setRevFilter(filters.get(0));
+		else if (filters.size() > 1)
+			revWalk.setRevFilter(AndRevFilter.create(filters));
+		
+		return limit;
 	}
+	
+	private static RevFilter or(List<RevFilter> filters) {
+		if (filters.size() == 1)
+			return filters.get(0);
+		else
+			return OrRevFilter.create(filters);
+	}
+	
+	private static Date parseDate(String value) {
+		Date date = DateUtils.parseRelaxed(value);
+		if (date != null)
+			return date;
+		else
+			throw new OneException("Unrecognized date: " + value);
+	}
+	
+	private static class CandidateRevFilter extends RevFilter {
+
+		private final Set<ObjectId> candidates;
+		
+		CandidateRevFilter(Set<ObjectId> candidates) {
+			this.candidates = candidates;
+		}
+		
+		@Override
+		public boolean include(RevWalk walker, RevCommit commit) {
+			return candidates.contains(commit);
+		}
+
+		@Override
+		public RevFilter clone() {
+			return this;
+		}
+
+		@Override
+		public boolean requiresCommitBody() {
+			return false;
+		}
+		
+	}
+	
+	/**
+	 * Match file paths against wildcard pattern, the same way as path criteria is matched 
+	 * when checking commits of ref update 
+	 */
+	private static class WildcardPathFilter extends TreeFilter {
+
+		private final String pattern;
+		
+		private final String prefix;
+		
+		WildcardPathFilter(String pattern) {
+			this.pattern = pattern;
+			prefix = pattern.substring(0, pattern.indexOf('*'));
+		}
+		
+		@Override
+		public boolean include(TreeWalk walker) {
+			String path = walker.getPathString();
+			if (walker.isSubtree()) {
+				path += "/";
+				return path.startsWith(prefix) || prefix.startsWith(path);
+			} else {
+				return WildcardUtils.matchString(pattern, path);
+			}
+		}
+
+		@Override
+		public boolean shouldBeRecursive() {
+			return true;
+		}
+
+		@Override
+		public TreeFilter clone() {
+			return this;
+		}
+		
+	}
+	
 }
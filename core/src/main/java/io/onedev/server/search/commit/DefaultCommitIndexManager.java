@@ -0,0 +1,490 @@
+package io.onedev.server.search.commit;
+
+import static io.onedev.server.search.code.IndexConstants.NGRAM_SIZE;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.lucene.document.BinaryDocValuesField;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.BinaryDocValues;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.IndexWriterConfig.OpenMode;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.SimpleCollector;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.WildcardQuery;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevObject;
+import org.eclipse.jgit.revwalk.RevSort;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+
+import io.onedev.launcher.loader.Listen;
+import io.onedev.server.event.RefUpdated;
+import io.onedev.server.event.system.SystemStarted;
+import io.onedev.server.git.GitUtils;
+import io.onedev.server.manager.BatchWorkManager;
+import io.onedev.server.manager.ProjectManager;
+import io.onedev.server.manager.StorageManager;
+import io.onedev.server.model.Project;
+import io.onedev.server.persistence.UnitOfWork;
+import io.onedev.server.persistence.annotation.Sessional;
+import io.onedev.server.search.code.NGramAnalyzer;
+import io.onedev.server.search.code.query.regex.RegexLiterals;
+import io.onedev.server.util.BatchWorker;
+import io.onedev.utils.ExceptionUtils;
+import io.onedev.utils.FileUtils;
+import io.onedev.utils.concurrent.Prioritized;
+
+@Singleton
+public class DefaultCommitIndexManager implements CommitIndexManager {
+
+	private static final Logger logger = LoggerFactory.getLogger(DefaultCommitIndexManager.class);
+
+	private static final int INDEX_VERSION = 1;
+
+	private static final String INDEX_DIR = "commitIndex";
+
+	private static final String VERSION_FILE = "version.txt";
+
+	private static final String FIELD_COMMIT = "commit";
+
+	private static final String FIELD_MESSAGE = "message";
+
+	private static final String FIELD_AUTHOR = "author";
+
+	private static final String FIELD_COMMITTER = "committer";
+
+	private static final String FIELD_PATH = "path";
+
+	private static final String FIELD_ALL_PATHS = "allPaths";
+
+	private static final String FIELD_META = "meta";
+
+	private static final String FIELD_LAST_COMMIT = "lastCommit";
+
+	private static final String META_LAST_COMMIT = "lastCommit";
+
+	/*
+	 * Commits touching more paths than this are marked as touching all paths, to avoid
+	 * bloating the index with huge imports or merges
+	 */
+	private static final int MAX_PATHS = 1000;
+
+	private static final int MAX_CANDIDATES = 100000;
+
+	private static final int COMMIT_BATCH_SIZE = 10000;
+
+	private static final int INDEXING_PRIORITY = 60;
+
+	private final StorageManager storageManager;
+
+	private final BatchWorkManager batchWorkManager;
+
+	private final UnitOfWork unitOfWork;
+
+	private final ProjectManager projectManager;
+
+	@Inject
+	public DefaultCommitIndexManager(StorageManager storageManager, BatchWorkManager batchWorkManager,
+			UnitOfWork unitOfWork, ProjectManager projectManager) {
+		this.storageManager = storageManager;
+		this.batchWorkManager = batchWorkManager;
+		this.unitOfWork = unitOfWork;
+		this.projectManager = projectManager;
+	}
+
+	private File getIndexDir(Long projectId) {
+		File indexDir = new File(storageManager.getProjectInfoDir(projectId), INDEX_DIR);
+		if (!indexDir.exists())
+			FileUtils.createDir(indexDir);
+		return indexDir;
+	}
+
+	private boolean isVersionCurrent(File indexDir) {
+		File versionFile = new File(indexDir, VERSION_FILE);
+		if (versionFile.exists()) {
+			try {
+				String version = FileUtils.readFileToString(versionFile, Charset.defaultCharset()).trim();
+				return version.equals(String.valueOf(INDEX_VERSION));
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		} else {
+			return false;
+		}
+	}
+
+	private IndexWriterConfig newWriterConfig() {
+		IndexWriterConfig writerConfig = new IndexWriterConfig(new NGramAnalyzer(NGRAM_SIZE, NGRAM_SIZE));
+		writerConfig.setOpenMode(OpenMode.CREATE_OR_APPEND);
+		return writerConfig;
+	}
+
+	private boolean isIndexed(IndexSearcher searcher, ObjectId commitId) throws IOException {
+		return searcher.count(new TermQuery(new Term(FIELD_COMMIT, commitId.name()))) != 0;
+	}
+
+	@Nullable
+	private ObjectId getLastCommit(IndexSearcher searcher) throws IOException {
+		TopDocs topDocs = searcher.search(new TermQuery(new Term(FIELD_META, META_LAST_COMMIT)), 1);
+		if (topDocs.scoreDocs.length != 0) {
+			Document document = searcher.doc(topDocs.scoreDocs[0].doc);
+			return ObjectId.fromString(document.get(FIELD_LAST_COMMIT));
+		} else {
+			return null;
+		}
+	}
+
+	private String format(PersonIdent person) {
+		return String.format("%s <%s>", person.getName(), person.getEmailAddress());
+	}
+
+	/*
+	 * Touched paths include changed files compared to each parent, as well as their parent
+	 * directories, so that directory paths can be looked up directly
+	 */
+	@Nullable
+	private Set<String> getTouchedPaths(RevWalk revWalk, RevCommit commit) throws IOException {
+		Set<String> paths = new HashSet<>();
+		try (TreeWalk treeWalk = new TreeWalk(revWalk.getObjectReader())) {
+			treeWalk.setRecursive(true);
+			if (commit.getParentCount() != 0) {
+				treeWalk.setFilter(TreeFilter.ANY_DIFF);
+				for (RevCommit parent: commit.getParents()) {
+					revWalk.parseHeaders(parent);
+					treeWalk.reset(parent.getTree(), commit.getTree());
+					if (!addPaths(treeWalk, paths))
+						return null;
+				}
+			} else {
+				treeWalk.reset(commit.getTree());
+				if (!addPaths(treeWalk, paths))
+					return null;
+			}
+		}
+		return paths;
+	}
+
+	private boolean addPaths(TreeWalk treeWalk, Set<String> paths) throws IOException {
+		while (treeWalk.next()) {
+			String path = treeWalk.getPathString();
+			paths.add(path);
+			while (path.contains("/")) {
+				path = StringUtils.substringBeforeLast(path, "/");
+				paths.add(path);
+			}
+			if (paths.size() > MAX_PATHS)
+				return false;
+		}
+		return true;
+	}
+
+	private Document newDocument(RevWalk revWalk, RevCommit commit) throws IOException {
+		Document document = new Document();
+		byte[] commitBytes = new byte[Constants.OBJECT_ID_LENGTH];
+		commit.copyRawTo(commitBytes, 0);
+		document.add(new StringField(FIELD_COMMIT, commit.name(), Store.NO));
+		document.add(new BinaryDocValuesField(FIELD_COMMIT, new BytesRef(commitBytes)));
+		document.add(new TextField(FIELD_MESSAGE, commit.getFullMessage(), Store.NO));
+		document.add(new TextField(FIELD_AUTHOR, format(commit.getAuthorIdent()), Store.NO));
+		document.add(new TextField(FIELD_COMMITTER, format(commit.getCommitterIdent()), Store.NO));
+		Set<String> paths = getTouchedPaths(revWalk, commit);
+		if (paths != null) {
+			for (String path: paths)
+				document.add(new StringField(FIELD_PATH, path, Store.NO));
+		} else {
+			document.add(new StringField(FIELD_ALL_PATHS, String.valueOf(true), Store.NO));
+		}
+		return document;
+	}
+
+	private void markLastCommit(IndexWriter writer, ObjectId commitId) throws IOException {
+		Document document = new Document();
+		document.add(new StringField(FIELD_META, META_LAST_COMMIT, Store.NO));
+		document.add(new StoredField(FIELD_LAST_COMMIT, commitId.name()));
+		writer.updateDocument(new Term(FIELD_META, META_LAST_COMMIT), document);
+	}
+
+	/*
+	 * Index specified commit together with all its ancestors not indexed yet. Commits are
+	 * indexed in reverse topological order and committed in batches, so that committed
+	 * commits always have their ancestors committed
+	 */
+	private int index(Project project, IndexWriter writer, IndexSearcher searcher, ObjectId commitId)
+			throws IOException {
+		if (isIndexed(searcher, commitId))
+			return 0;
+
+		Repository repository = project.getRepository();
+		try (RevWalk revWalk = new RevWalk(repository)) {
+			revWalk.setRetainBody(false);
+			revWalk.markStart(revWalk.parseCommit(commitId));
+
+			ObjectId lastCommitId = getLastCommit(searcher);
+			if (lastCommitId != null && repository.hasObject(lastCommitId))
+				revWalk.markUninteresting(revWalk.parseCommit(lastCommitId));
+
+			List<Ref> refs = new ArrayList<>();
+			refs.addAll(repository.getRefDatabase().getRefsByPrefix(Constants.R_HEADS));
+			refs.addAll(repository.getRefDatabase().getRefsByPrefix(Constants.R_TAGS));
+			for (Ref ref: refs) {
+				RevObject revObj = revWalk.peel(revWalk.parseAny(ref.getObjectId()));
+				if (revObj instanceof RevCommit && isIndexed(searcher, revObj))
+					revWalk.markUninteresting((RevCommit) revObj);
+			}
+
+			revWalk.sort(RevSort.TOPO);
+			revWalk.sort(RevSort.REVERSE, true);
+
+			int count = 0;
+			for (RevCommit commit: revWalk) {
+				if (!isIndexed(searcher, commit)) {
+					revWalk.parseBody(commit);
+					writer.addDocument(newDocument(revWalk, commit));
+					commit.disposeBody();
+					if (++count % COMMIT_BATCH_SIZE == 0)
+						writer.commit();
+				}
+			}
+			markLastCommit(writer, commitId);
+			writer.commit();
+			return count;
+		}
+	}
+
+	private BatchWorker getBatchWorker(Long projectId) {
+		return new BatchWorker("project-" + projectId + "-indexCommits") {
+
+			@Override
+			public void doWorks(Collection<Prioritized> works) {
+				unitOfWork.run(new Runnable() {
+
+					@Override
+					public void run() {
+						Project project = projectManager.load(projectId);
+
+						File indexDir = getIndexDir(projectId);
+						if (!isVersionCurrent(indexDir)) {
+							FileUtils.cleanDir(indexDir);
+							FileUtils.writeFile(new File(indexDir, VERSION_FILE), String.valueOf(INDEX_VERSION));
+						}
+
+						try (	Directory directory = FSDirectory.open(indexDir.toPath());
+								IndexWriter writer = new IndexWriter(directory, newWriterConfig())) {
+							try {
+								for (Prioritized work: works) {
+									ObjectId commitId = ((IndexWork) work).getCommitId();
+									// reopen reader for each work to see commits indexed by previous works
+									try (IndexReader reader = DirectoryReader.open(writer)) {
+										logger.debug("Indexing commits up to '{}' (project: {})...",
+												commitId.name(), project.getName());
+										int count = index(project, writer, new IndexSearcher(reader), commitId);
+										if (count != 0) {
+											logger.debug("Indexed {} commits up to '{}' (project: {})",
+													count, commitId.name(), project.getName());
+										}
+									}
+								}
+							} catch (Exception e) {
+								writer.rollback();
+								throw ExceptionUtils.unchecked(e);
+							}
+						} catch (IOException e) {
+							throw new RuntimeException(e);
+						}
+					}
+
+				});
+			}
+
+		};
+	}
+
+	private void submit(Project project, ObjectId commitId) {
+		batchWorkManager.submit(getBatchWorker(project.getId()), new IndexWork(INDEXING_PRIORITY, commitId));
+	}
+
+	@Sessional
+	@Listen
+	public void on(SystemStarted event) {
+		for (Project project: projectManager.query()) {
+			try (RevWalk revWalk = new RevWalk(project.getRepository())) {
+				List<Ref> refs = new ArrayList<>();
+				refs.addAll(project.getRepository().getRefDatabase().getRefsByPrefix(Constants.R_HEADS));
+				refs.addAll(project.getRepository().getRefDatabase().getRefsByPrefix(Constants.R_TAGS));
+				for (Ref ref: refs) {
+					RevObject revObj = revWalk.peel(revWalk.parseAny(ref.getObjectId()));
+					if (revObj instanceof RevCommit)
+						submit(project, revObj.copy());
+				}
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		}
+	}
+
+	@Sessional
+	@Listen
+	public void on(RefUpdated event) {
+		if (!event.getNewCommitId().equals(ObjectId.zeroId())
+				&& (event.getRefName().startsWith(Constants.R_HEADS)
+						|| event.getRefName().startsWith(Constants.R_TAGS))) {
+			try (RevWalk revWalk = new RevWalk(event.getProject().getRepository())) {
+				RevCommit commit = GitUtils.parseCommit(revWalk, event.getNewCommitId());
+				if (commit != null)
+					submit(event.getProject(), commit.copy());
+			}
+		}
+	}
+
+	@Nullable
+	private Query getRegexQuery(String fieldName, List<String> regexes) {
+		BooleanQuery.Builder builder = new BooleanQuery.Builder();
+		for (String regex: regexes) {
+			try {
+				builder.add(new RegexLiterals(regex).asNGramQuery(fieldName, NGRAM_SIZE), Occur.SHOULD);
+			} catch (Exception e) {
+				// regex too general or not recognized, do not restrict this field then
+				return null;
+			}
+		}
+		return builder.build();
+	}
+
+	private Query getPathQuery(List<String> paths) {
+		BooleanQuery.Builder builder = new BooleanQuery.Builder();
+		for (String path: paths) {
+			if (path.contains("*")) {
+				path = path.replace("\\", "\\\\").replace("?", "\\?");
+				builder.add(new WildcardQuery(new Term(FIELD_PATH, path)), Occur.SHOULD);
+			} else {
+				builder.add(new TermQuery(new Term(FIELD_PATH, StringUtils.stripEnd(path, "/"))), Occur.SHOULD);
+			}
+		}
+		builder.add(new TermQuery(new Term(FIELD_ALL_PATHS, String.valueOf(true))), Occur.SHOULD);
+		return builder.build();
+	}
+
+	@Override
+	public Set<ObjectId> getCandidates(Project project, Collection<? extends ObjectId> startCommits, List<String> messages,
+			List<String> authors, List<String> committers, List<String> paths) {
+		List<Query> queries = new ArrayList<>();
+		if (!messages.isEmpty())
+			queries.add(getRegexQuery(FIELD_MESSAGE, messages));
+		if (!authors.isEmpty())
+			queries.add(getRegexQuery(FIELD_AUTHOR, authors));
+		if (!committers.isEmpty())
+			queries.add(getRegexQuery(FIELD_COMMITTER, committers));
+		if (!paths.isEmpty())
+			queries.add(getPathQuery(paths));
+
+		BooleanQuery.Builder builder = new BooleanQuery.Builder();
+		for (Query query: queries) {
+			if (query != null)
+				builder.add(query, Occur.FILTER);
+		}
+		BooleanQuery query = builder.build();
+		if (query.clauses().isEmpty())
+			return null;
+
+		File indexDir = getIndexDir(project.getId());
+		if (!isVersionCurrent(indexDir))
+			return null;
+
+		try (Directory directory = FSDirectory.open(indexDir.toPath())) {
+			if (!DirectoryReader.indexExists(directory))
+				return null;
+			try (IndexReader reader = DirectoryReader.open(directory)) {
+				IndexSearcher searcher = new IndexSearcher(reader);
+				for (ObjectId startCommit: startCommits) {
+					if (!isIndexed(searcher, startCommit))
+						return null;
+				}
+				if (searcher.count(query) > MAX_CANDIDATES)
+					return null;
+
+				Set<ObjectId> candidates = new HashSet<>();
+				searcher.search(query, new SimpleCollector() {
+
+					private BinaryDocValues commitValues;
+
+					@Override
+					public void collect(int doc) throws IOException {
+						Preconditions.checkState(commitValues.advanceExact(doc));
+						BytesRef bytesRef = commitValues.binaryValue();
+						candidates.add(ObjectId.fromRaw(bytesRef.bytes, bytesRef.offset));
+					}
+
+					@Override
+					protected void doSetNextReader(LeafReaderContext context) throws IOException {
+						commitValues = context.reader().getBinaryDocValues(FIELD_COMMIT);
+					}
+
+					@Override
+					public boolean needsScores() {
+						return false;
+					}
+
+				});
+				return candidates;
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static class IndexWork extends Prioritized {
+
+		private final ObjectId commitId;
+
+		public IndexWork(int priority, ObjectId commitId) {
+			super(priority);
+			this.commitId = commitId;
+		}
+
+		public ObjectId getCommitId() {
+			return commitId;
+		}
+
+	}
+
+}
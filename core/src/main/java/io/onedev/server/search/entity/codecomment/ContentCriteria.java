@@ -1,14 +1,18 @@
 package io.onedev.server.search.entity.codecomment;
 
+import java.util.Collection;
+
 import javax.persistence.criteria.Path;
 import javax.persistence.criteria.Predicate;
 
+import io.onedev.server.OneDev;
 import io.onedev.server.model.CodeComment;
 import io.onedev.server.model.Project;
 import io.onedev.server.model.User;
 import io.onedev.server.search.entity.EntityCriteria;
 import io.onedev.server.search.entity.QueryBuildContext;
 import io.onedev.server.search.entity.codecomment.CodeCommentQueryLexer;
+import io.onedev.server.search.entitytext.EntityTextManager;
 import io.onedev.server.util.CodeCommentConstants;
 
 public class ContentCriteria extends EntityCriteria<CodeComment> {
@@ -23,6 +27,11 @@ public class ContentCriteria extends EntityCriteria<CodeComment> {
 
 	@Override
 	public Predicate getPredicate(Project project, QueryBuildContext<CodeComment> context, User user) {
+		Collection<Long> ids = OneDev.getInstance(EntityTextManager.class).match(project, CodeComment.class, 
+				EntityTextManager.FIELD_CONTENT, value);
+		if (ids != null) 
+			return ids.isEmpty()? context.getBuilder().disjunction(): context.getRoot().get("id").in(ids);
+		
 		Path<String> attribute = context.getRoot().get(CodeCommentConstants.ATTR_CONTENT);
 		return context.getBuilder().like(context.getBuilder().lower(attribute), "%" + value.toLowerCase() + "%");
 	}
@@ -1,14 +1,18 @@
 package io.onedev.server.search.entity.issue;
 
+import java.util.Collection;
+
 import javax.persistence.criteria.From;
 import javax.persistence.criteria.Path;
 import javax.persistence.criteria.Predicate;
 
+import io.onedev.server.OneDev;
 import io.onedev.server.model.Issue;
 import io.onedev.server.model.IssueComment;
 import io.onedev.server.model.Project;
 import io.onedev.server.model.User;
 import io.onedev.server.search.entity.QueryBuildContext;
+import io.onedev.server.search.entitytext.EntityTextManager;
 import io.onedev.server.util.IssueConstants;
 
 public class CommentCriteria extends IssueCriteria {
@@ -23,6 +27,11 @@ public class CommentCriteria extends IssueCriteria {
 
 	@Override
 	public Predicate getPredicate(Project project, QueryBuildContext<Issue> context, User user) {
+		Collection<Long> ids = OneDev.getInstance(EntityTextManager.class).match(project, Issue.class, 
+				EntityTextManager.FIELD_COMMENTS, value);
+		if (ids != null) 
+			return ids.isEmpty()? context.getBuilder().disjunction(): context.getRoot().get("id").in(ids);
+		
 		From<?, ?> join = context.getJoin(IssueConstants.FIELD_COMMENT);
 		Path<String> attribute = join.get(IssueComment.PATH_CONTENT);
 		return context.getBuilder().like(context.getBuilder().lower(attribute), "%" + value.toLowerCase() + "%");
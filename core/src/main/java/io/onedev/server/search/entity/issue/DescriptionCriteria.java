@@ -1,13 +1,17 @@
 package io.onedev.server.search.entity.issue;
 
+import java.util.Collection;
+
 import javax.annotation.Nullable;
 import javax.persistence.criteria.Expression;
 import javax.persistence.criteria.Predicate;
 
+import io.onedev.server.OneDev;
 import io.onedev.server.model.Issue;
 import io.onedev.server.model.Project;
 import io.onedev.server.model.User;
 import io.onedev.server.search.entity.QueryBuildContext;
+import io.onedev.server.search.entitytext.EntityTextManager;
 import io.onedev.server.util.IssueConstants;
 
 public class DescriptionCriteria extends IssueCriteria {
@@ -23,10 +27,16 @@ public class DescriptionCriteria extends IssueCriteria {
 	@Override
 	public Predicate getPredicate(Project project, QueryBuildContext<Issue> context, User user) {
 		Expression<String> attribute = context.getRoot().get(IssueConstants.ATTR_DESCRIPTION);
-		if (value != null)
-			return context.getBuilder().like(context.getBuilder().lower(attribute), "%" + value.toLowerCase() + "%");
-		else
+		if (value != null) {
+			Collection<Long> ids = OneDev.getInstance(EntityTextManager.class).match(project, Issue.class, 
+					EntityTextManager.FIELD_DESCRIPTION, value);
+			if (ids != null) 
+				return ids.isEmpty()? context.getBuilder().disjunction(): context.getRoot().get("id").in(ids);
+			else
+				return context.getBuilder().like(context.getBuilder().lower(attribute), "%" + value.toLowerCase() + "%");
+		} else {
 			return context.getBuilder().isNull(attribute);
+		}
 	}
 
 	@Override
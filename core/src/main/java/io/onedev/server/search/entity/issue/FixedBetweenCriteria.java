@@ -3,27 +3,21 @@ package io.onedev.server.search.entity.issue;
 import static io.onedev.server.search.entity.EntityQuery.quote;
 import static io.onedev.server.search.entity.issue.IssueQuery.getRuleName;
 
-import java.io.IOException;
 import java.util.Collection;
-import java.util.HashSet;
-import java.util.Set;
 
 import javax.persistence.criteria.Path;
 import javax.persistence.criteria.Predicate;
 
 import org.eclipse.jgit.lib.ObjectId;
-import org.eclipse.jgit.lib.Repository;
-import org.eclipse.jgit.revwalk.RevCommit;
-import org.eclipse.jgit.revwalk.RevWalk;
 
 import io.onedev.server.OneDev;
 import io.onedev.server.manager.CacheManager;
+import io.onedev.server.manager.CommitInfoManager;
 import io.onedev.server.model.Issue;
 import io.onedev.server.model.Project;
 import io.onedev.server.model.User;
 import io.onedev.server.search.entity.QueryBuildContext;
 import io.onedev.server.util.IssueConstants;
-import io.onedev.server.util.IssueUtils;
 
 public class FixedBetweenCriteria extends IssueCriteria {
 
@@ -51,21 +45,19 @@ public class FixedBetweenCriteria extends IssueCriteria {
 		this.untilCommitId = untilCommitId;
 	}
 
+	private transient Collection<Long> fixedIssueNumbers;
+	
+	private Collection<Long> getFixedIssueNumbers(Project project) {
+		if (fixedIssueNumbers == null) {
+			fixedIssueNumbers = OneDev.getInstance(CommitInfoManager.class)
+					.getFixedIssueNumbers(project, sinceCommitId, untilCommitId);
+		}
+		return fixedIssueNumbers;
+	}
+	
 	@Override
 	public Predicate getPredicate(Project project, QueryBuildContext<Issue> context, User user) {
-		Set<Long> fixedIssueNumbers = new HashSet<>();
-		
-		Repository repository = project.getRepository();
-		try (RevWalk revWalk = new RevWalk(repository)) {
-			revWalk.markStart(revWalk.parseCommit(untilCommitId));
-			revWalk.markUninteresting(revWalk.parseCommit(sinceCommitId));
-
-			RevCommit commit;
-			while ((commit = revWalk.next()) != null) 
-				fixedIssueNumbers.addAll(IssueUtils.parseFixedIssues(project, commit.getFullMessage()));
-		} catch (IOException e) {
-			throw new RuntimeException(e);
-		}
+		Collection<Long> fixedIssueNumbers = getFixedIssueNumbers(project);
 		
 		Path<Long> attribute = context.getRoot().get(IssueConstants.ATTR_NUMBER);		
 		if (fixedIssueNumbers.size() > IN_CLAUSE_LIMIT) {
@@ -80,20 +72,7 @@ public class FixedBetweenCriteria extends IssueCriteria {
 
 	@Override
 	public boolean matches(Issue issue, User user) {
-		Repository repository = issue.getProject().getRepository();
-		try (RevWalk revWalk = new RevWalk(repository)) {
-			revWalk.markStart(revWalk.parseCommit(untilCommitId));
-			revWalk.markUninteresting(revWalk.parseCommit(sinceCommitId));
-
-			RevCommit commit;
-			while ((commit = revWalk.next()) != null) { 
-				if (IssueUtils.parseFixedIssues(issue.getProject(), commit.getFullMessage()).contains(issue.getNumber()))
-					return true;
-			}
-			return false;
-		} catch (IOException e) {
-			throw new RuntimeException(e);
-		}
+		return getFixedIssueNumbers(issue.getProject()).contains(issue.getNumber());
 	}
 
 	@Override
@@ -1,12 +1,16 @@
 package io.onedev.server.search.entity.issue;
 
+import java.util.Collection;
+
 import javax.persistence.criteria.Path;
 import javax.persistence.criteria.Predicate;
 
+import io.onedev.server.OneDev;
 import io.onedev.server.model.Issue;
 import io.onedev.server.model.Project;
 import io.onedev.server.model.User;
 import io.onedev.server.search.entity.QueryBuildContext;
+import io.onedev.server.search.entitytext.EntityTextManager;
 import io.onedev.server.util.IssueConstants;
 
 public class TitleCriteria extends IssueCriteria {
@@ -21,6 +25,11 @@ public class TitleCriteria extends IssueCriteria {
 
 	@Override
 	public Predicate getPredicate(Project project, QueryBuildContext<Issue> context, User user) {
+		Collection<Long> ids = OneDev.getInstance(EntityTextManager.class).match(project, Issue.class, 
+				EntityTextManager.FIELD_TITLE, value);
+		if (ids != null) 
+			return ids.isEmpty()? context.getBuilder().disjunction(): context.getRoot().get("id").in(ids);
+		
 		Path<String> attribute = context.getRoot().get(IssueConstants.ATTR_TITLE);
 		return context.getBuilder().like(context.getBuilder().lower(attribute), "%" + value.toLowerCase() + "%");
 	}
@@ -1,9 +1,14 @@
 package io.onedev.server.search.entity.pullrequest;
 
+import java.util.Collection;
+import java.util.HashSet;
+
 import javax.persistence.criteria.From;
 import javax.persistence.criteria.Path;
 import javax.persistence.criteria.Predicate;
 
+import io.onedev.server.OneDev;
+import io.onedev.server.model.CodeComment;
 import io.onedev.server.model.CodeCommentRelation;
 import io.onedev.server.model.CodeCommentReply;
 import io.onedev.server.model.Project;
@@ -11,6 +16,7 @@ import io.onedev.server.model.PullRequest;
 import io.onedev.server.model.PullRequestComment;
 import io.onedev.server.model.User;
 import io.onedev.server.search.entity.QueryBuildContext;
+import io.onedev.server.search.entitytext.EntityTextManager;
 import io.onedev.server.util.CodeCommentConstants;
 import io.onedev.server.util.PullRequestConstants;
 
@@ -26,13 +32,39 @@ public class CommentCriteria extends PullRequestCriteria {
 
 	@Override
 	public Predicate getPredicate(Project project, QueryBuildContext<PullRequest> context, User user) {
-		From<?, ?> join = context.getJoin(PullRequestConstants.ATTR_COMMENTS);
-		Path<String> attribute = join.get(PullRequestComment.ATTR_CONTENT);
-		Predicate commentPredicate = context.getBuilder().like(context.getBuilder().lower(attribute), "%" + value.toLowerCase() + "%");
+		EntityTextManager entityTextManager = OneDev.getInstance(EntityTextManager.class);
 		
-		join = context.getJoin(PullRequestConstants.ATTR_CODE_COMMENT_RELATIONS + 
+		Predicate commentPredicate;
+		Collection<Long> requestIds = entityTextManager.match(project, PullRequest.class, 
+				EntityTextManager.FIELD_COMMENTS, value);
+		if (requestIds != null) {
+			if (!requestIds.isEmpty())
+				commentPredicate = context.getRoot().get("id").in(requestIds);
+			else
+				commentPredicate = context.getBuilder().disjunction();
+		} else {
+			From<?, ?> join = context.getJoin(PullRequestConstants.ATTR_COMMENTS);
+			Path<String> attribute = join.get(PullRequestComment.ATTR_CONTENT);
+			commentPredicate = context.getBuilder().like(context.getBuilder().lower(attribute), "%" + value.toLowerCase() + "%");
+		}
+		
+		From<?, ?> join = context.getJoin(PullRequestConstants.ATTR_CODE_COMMENT_RELATIONS + 
 				"." + CodeCommentRelation.ATTR_COMMENT);
-		attribute = join.get(CodeCommentConstants.ATTR_CONTENT);
+		
+		Collection<Long> codeCommentIds = entityTextManager.match(project, CodeComment.class, 
+				EntityTextManager.FIELD_CONTENT, value);
+		Collection<Long> codeCommentReplyIds = entityTextManager.match(project, CodeComment.class, 
+				EntityTextManager.FIELD_COMMENTS, value);
+		if (codeCommentIds != null && codeCommentReplyIds != null) {
+			Collection<Long> ids = new HashSet<>(codeCommentIds);
+			ids.addAll(codeCommentReplyIds);
+			if (!ids.isEmpty())
+				return context.getBuilder().or(commentPredicate, join.get("id").in(ids));
+			else
+				return commentPredicate;
+		}
+		
+		Path<String> attribute = join.get(CodeCommentConstants.ATTR_CONTENT);
 		Predicate codeCommentPredicate = context.getBuilder().like(context.getBuilder().lower(attribute), "%" + value.toLowerCase() + "%");
 		
 		join = context.getJoin(PullRequestConstants.ATTR_CODE_COMMENT_RELATIONS + 
@@ -1,12 +1,16 @@
 package io.onedev.server.search.entity.pullrequest;
 
+import java.util.Collection;
+
 import javax.persistence.criteria.Path;
 import javax.persistence.criteria.Predicate;
 
+import io.onedev.server.OneDev;
 import io.onedev.server.model.Project;
 import io.onedev.server.model.PullRequest;
 import io.onedev.server.model.User;
 import io.onedev.server.search.entity.QueryBuildContext;
+import io.onedev.server.search.entitytext.EntityTextManager;
 import io.onedev.server.util.PullRequestConstants;
 
 public class DescriptionCriteria extends PullRequestCriteria {
@@ -21,6 +25,11 @@ public class DescriptionCriteria extends PullRequestCriteria {
 
 	@Override
 	public Predicate getPredicate(Project project, QueryBuildContext<PullRequest> context, User user) {
+		Collection<Long> ids = OneDev.getInstance(EntityTextManager.class).match(project, PullRequest.class, 
+				EntityTextManager.FIELD_DESCRIPTION, value);
+		if (ids != null) 
+			return ids.isEmpty()? context.getBuilder().disjunction(): context.getRoot().get("id").in(ids);
+		
 		Path<String> attribute = context.getRoot().get(PullRequestConstants.ATTR_DESCRIPTION);
 		return context.getBuilder().like(context.getBuilder().lower(attribute), "%" + value.toLowerCase() + "%");
 	}
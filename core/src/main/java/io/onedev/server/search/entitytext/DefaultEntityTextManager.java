@@ -0,0 +1,538 @@
+package io.onedev.server.search.entitytext;
+
+import static io.onedev.server.search.code.IndexConstants.NGRAM_SIZE;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.IndexWriterConfig.OpenMode;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.AlreadyClosedException;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Restrictions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Lists;
+
+import io.onedev.launcher.loader.Listen;
+import io.onedev.server.event.entity.EntityPersisted;
+import io.onedev.server.event.entity.EntityRemoved;
+import io.onedev.server.event.system.SystemStarted;
+import io.onedev.server.event.system.SystemStopping;
+import io.onedev.server.manager.BatchWorkManager;
+import io.onedev.server.manager.ProjectManager;
+import io.onedev.server.manager.StorageManager;
+import io.onedev.server.model.AbstractEntity;
+import io.onedev.server.model.CodeComment;
+import io.onedev.server.model.CodeCommentReply;
+import io.onedev.server.model.Issue;
+import io.onedev.server.model.IssueComment;
+import io.onedev.server.model.Project;
+import io.onedev.server.model.PullRequest;
+import io.onedev.server.model.PullRequestComment;
+import io.onedev.server.persistence.UnitOfWork;
+import io.onedev.server.persistence.annotation.Sessional;
+import io.onedev.server.persistence.annotation.Transactional;
+import io.onedev.server.persistence.dao.Dao;
+import io.onedev.server.persistence.dao.EntityCriteria;
+import io.onedev.server.search.code.NGramAnalyzer;
+import io.onedev.server.search.code.query.NGramLuceneQuery;
+import io.onedev.server.util.BatchWorker;
+import io.onedev.utils.ExceptionUtils;
+import io.onedev.utils.FileUtils;
+import io.onedev.utils.concurrent.Prioritized;
+
+@Singleton
+public class DefaultEntityTextManager implements EntityTextManager {
+
+	private static final Logger logger = LoggerFactory.getLogger(DefaultEntityTextManager.class);
+
+	private static final int INDEX_VERSION = 2;
+
+	private static final String INDEX_DIR = "entityText";
+
+	private static final String VERSION_FILE = "version.txt";
+
+	private static final String FIELD_KEY = "key";
+
+	private static final String FIELD_TYPE = "type";
+
+	private static final String FIELD_ID = "id";
+
+	private static final int MAX_MATCHES = 1000;
+
+	private static final int REINDEX_BATCH_SIZE = 1000;
+
+	private static final int INDEXING_PRIORITY = 50;
+
+	private final Dao dao;
+
+	private final StorageManager storageManager;
+
+	private final BatchWorkManager batchWorkManager;
+
+	private final UnitOfWork unitOfWork;
+
+	private final ProjectManager projectManager;
+
+	private final Map<Long, SearcherManager> searcherManagers = new ConcurrentHashMap<>();
+
+	@Inject
+	public DefaultEntityTextManager(Dao dao, StorageManager storageManager, BatchWorkManager batchWorkManager,
+			UnitOfWork unitOfWork, ProjectManager projectManager) {
+		this.dao = dao;
+		this.storageManager = storageManager;
+		this.batchWorkManager = batchWorkManager;
+		this.unitOfWork = unitOfWork;
+		this.projectManager = projectManager;
+	}
+
+	private File getIndexDir(Long projectId) {
+		File indexDir = new File(storageManager.getProjectInfoDir(projectId), INDEX_DIR);
+		if (!indexDir.exists())
+			FileUtils.createDir(indexDir);
+		return indexDir;
+	}
+
+	/*
+	 * Index is only used for searching after it is fully built, so that criterias
+	 * delegating to the index never see partial results
+	 */
+	private boolean isReady(Long projectId) {
+		File versionFile = new File(getIndexDir(projectId), VERSION_FILE);
+		if (versionFile.exists()) {
+			try {
+				String version = FileUtils.readFileToString(versionFile, Charset.defaultCharset()).trim();
+				return version.equals(String.valueOf(INDEX_VERSION));
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		} else {
+			return false;
+		}
+	}
+
+	/*
+	 * Searcher manager is only created once index is ready, and is discarded before the 
+	 * index is rebuilt, so that readiness does not need to be checked for every search
+	 */
+	@Nullable
+	private SearcherManager getSearcherManager(Long projectId) {
+		SearcherManager searcherManager = searcherManagers.get(projectId);
+		if (searcherManager == null) synchronized (searcherManagers) {
+			searcherManager = searcherManagers.get(projectId);
+			if (searcherManager == null && isReady(projectId)) {
+				try {
+					Directory directory = FSDirectory.open(getIndexDir(projectId).toPath());
+					searcherManager = new SearcherManager(directory, null);
+					searcherManagers.put(projectId, searcherManager);
+				} catch (IOException e) {
+					throw new RuntimeException(e);
+				}
+			}
+		}
+		return searcherManager;
+	}
+
+	private void closeSearcherManager(Long projectId) {
+		synchronized (searcherManagers) {
+			SearcherManager searcherManager = searcherManagers.remove(projectId);
+			if (searcherManager != null) {
+				try {
+					searcherManager.close();
+				} catch (IOException e) {
+					throw new RuntimeException(e);
+				}
+			}
+		}
+	}
+
+	private IndexWriterConfig newWriterConfig() {
+		IndexWriterConfig writerConfig = new IndexWriterConfig(new NGramAnalyzer(NGRAM_SIZE, NGRAM_SIZE) {
+
+			@Override
+			public int getPositionIncrementGap(String fieldName) {
+				// avoid matching text spanning multiple comments
+				return NGRAM_SIZE;
+			}
+
+		});
+		writerConfig.setOpenMode(OpenMode.CREATE_OR_APPEND);
+		return writerConfig;
+	}
+
+	private String getType(Class<? extends AbstractEntity> entityClass) {
+		return entityClass.getSimpleName();
+	}
+
+	private String getKey(Class<? extends AbstractEntity> entityClass, Long entityId) {
+		return getType(entityClass) + ":" + entityId;
+	}
+
+	private void addTextField(Document document, String fieldName, String text) {
+		if (text != null)
+			document.add(new TextField(fieldName, text, Store.NO));
+	}
+
+	private Document newDocument(Class<? extends AbstractEntity> entityClass, AbstractEntity entity) {
+		Document document = new Document();
+		document.add(new StringField(FIELD_KEY, getKey(entityClass, entity.getId()), Store.NO));
+		document.add(new StringField(FIELD_TYPE, getType(entityClass), Store.NO));
+		document.add(new StoredField(FIELD_ID, entity.getId()));
+		if (entity instanceof Issue) {
+			Issue issue = (Issue) entity;
+			addTextField(document, FIELD_TITLE, issue.getTitle());
+			addTextField(document, FIELD_NO_SPACE_TITLE, StringUtils.deleteWhitespace(issue.getTitle()));
+			addTextField(document, FIELD_DESCRIPTION, issue.getDescription());
+			for (IssueComment comment: issue.getComments())
+				addTextField(document, FIELD_COMMENTS, comment.getContent());
+		} else if (entity instanceof PullRequest) {
+			PullRequest request = (PullRequest) entity;
+			addTextField(document, FIELD_TITLE, request.getTitle());
+			addTextField(document, FIELD_DESCRIPTION, request.getDescription());
+			for (PullRequestComment comment: request.getComments())
+				addTextField(document, FIELD_COMMENTS, comment.getContent());
+		} else {
+			CodeComment comment = (CodeComment) entity;
+			addTextField(document, FIELD_CONTENT, comment.getContent());
+			for (CodeCommentReply reply: comment.getReplies())
+				addTextField(document, FIELD_COMMENTS, reply.getContent());
+		}
+		return document;
+	}
+
+	private void index(IndexWriter writer, Class<? extends AbstractEntity> entityClass, Long entityId)
+			throws IOException {
+		Term keyTerm = new Term(FIELD_KEY, getKey(entityClass, entityId));
+		AbstractEntity entity = dao.get(entityClass, entityId);
+		if (entity != null)
+			writer.updateDocument(keyTerm, newDocument(entityClass, entity));
+		else
+			writer.deleteDocuments(keyTerm);
+	}
+
+	private <T extends AbstractEntity> void reindex(IndexWriter writer, Long projectId, Class<T> entityClass,
+			String projectProperty) throws IOException {
+		Long lastId = 0L;
+		List<T> entities;
+		do {
+			EntityCriteria<T> criteria = EntityCriteria.of(entityClass);
+			criteria.add(Restrictions.eq(projectProperty, projectManager.load(projectId)));
+			criteria.add(Restrictions.gt("id", lastId));
+			criteria.addOrder(Order.asc("id"));
+			entities = dao.query(criteria, 0, REINDEX_BATCH_SIZE);
+			for (T entity: entities) {
+				writer.addDocument(newDocument(entityClass, entity));
+				lastId = entity.getId();
+			}
+			dao.getSession().clear();
+		} while (entities.size() == REINDEX_BATCH_SIZE);
+	}
+
+	private BatchWorker getBatchWorker(Long projectId) {
+		return new BatchWorker("project-" + projectId + "-indexEntityText") {
+
+			@Override
+			public void doWorks(Collection<Prioritized> works) {
+				unitOfWork.run(new Runnable() {
+
+					@Override
+					public void run() {
+						boolean reindex = false;
+						Set<IndexWork> indexWorks = new HashSet<>();
+						for (Prioritized work: works) {
+							if (work instanceof ReindexWork)
+								reindex = true;
+							else
+								indexWorks.add((IndexWork) work);
+						}
+
+						File indexDir = getIndexDir(projectId);
+						if (reindex) {
+							// remove version file first so that searcher manager is not recreated
+							synchronized (searcherManagers) {
+								FileUtils.deleteFile(new File(indexDir, VERSION_FILE));
+								closeSearcherManager(projectId);
+							}
+							FileUtils.cleanDir(indexDir);
+						}
+
+						try (	Directory directory = FSDirectory.open(indexDir.toPath());
+								IndexWriter writer = new IndexWriter(directory, newWriterConfig())) {
+							try {
+								if (reindex) {
+									logger.debug("Indexing entity texts (project id: {})...", projectId);
+									reindex(writer, projectId, Issue.class, "project");
+									reindex(writer, projectId, PullRequest.class, "targetProject");
+									reindex(writer, projectId, CodeComment.class, "project");
+								} else {
+									for (IndexWork work: indexWorks)
+										index(writer, work.getEntityClass(), work.getEntityId());
+								}
+								writer.commit();
+							} catch (Exception e) {
+								writer.rollback();
+								throw ExceptionUtils.unchecked(e);
+							}
+						} catch (IOException e) {
+							throw new RuntimeException(e);
+						}
+
+						if (reindex) {
+							FileUtils.writeFile(new File(indexDir, VERSION_FILE), String.valueOf(INDEX_VERSION));
+						} else {
+							SearcherManager searcherManager = searcherManagers.get(projectId);
+							if (searcherManager != null) {
+								try {
+									searcherManager.maybeRefresh();
+								} catch (IOException e) {
+									throw new RuntimeException(e);
+								}
+							}
+						}
+					}
+
+				});
+			}
+
+		};
+	}
+
+	private void indexAfterCommit(Long projectId, Class<? extends AbstractEntity> entityClass, Long entityId) {
+		dao.doAfterCommit(new Runnable() {
+
+			@Override
+			public void run() {
+				batchWorkManager.submit(getBatchWorker(projectId),
+						new IndexWork(INDEXING_PRIORITY, entityClass, entityId));
+			}
+
+		});
+	}
+
+	private void onChange(AbstractEntity entity) {
+		if (entity instanceof Issue) {
+			Issue issue = (Issue) entity;
+			indexAfterCommit(issue.getProject().getId(), Issue.class, issue.getId());
+		} else if (entity instanceof IssueComment) {
+			Issue issue = ((IssueComment) entity).getIssue();
+			indexAfterCommit(issue.getProject().getId(), Issue.class, issue.getId());
+		} else if (entity instanceof PullRequest) {
+			PullRequest request = (PullRequest) entity;
+			indexAfterCommit(request.getTargetProject().getId(), PullRequest.class, request.getId());
+		} else if (entity instanceof PullRequestComment) {
+			PullRequest request = ((PullRequestComment) entity).getRequest();
+			indexAfterCommit(request.getTargetProject().getId(), PullRequest.class, request.getId());
+		} else if (entity instanceof CodeComment) {
+			CodeComment comment = (CodeComment) entity;
+			indexAfterCommit(comment.getProject().getId(), CodeComment.class, comment.getId());
+		} else if (entity instanceof CodeCommentReply) {
+			CodeComment comment = ((CodeCommentReply) entity).getComment();
+			indexAfterCommit(comment.getProject().getId(), CodeComment.class, comment.getId());
+		}
+	}
+
+	@Transactional
+	@Listen
+	public void on(EntityPersisted event) {
+		if (event.getEntity() instanceof Project) {
+			if (event.isNew()) {
+				Long projectId = event.getEntity().getId();
+				dao.doAfterCommit(new Runnable() {
+
+					@Override
+					public void run() {
+						batchWorkManager.submit(getBatchWorker(projectId), new ReindexWork(INDEXING_PRIORITY));
+					}
+
+				});
+			}
+		} else {
+			onChange(event.getEntity());
+		}
+	}
+
+	@Transactional
+	@Listen
+	public void on(EntityRemoved event) {
+		if (event.getEntity() instanceof Project) 
+			closeSearcherManager(event.getEntity().getId());
+		else
+			onChange(event.getEntity());
+	}
+
+	@Listen
+	public void on(SystemStopping event) {
+		synchronized (searcherManagers) {
+			for (SearcherManager searcherManager: searcherManagers.values()) {
+				try {
+					searcherManager.close();
+				} catch (IOException e) {
+					throw new RuntimeException(e);
+				}
+			}
+			searcherManagers.clear();
+		}
+	}
+
+	@Sessional
+	@Listen
+	public void on(SystemStarted event) {
+		for (Project project: projectManager.query()) {
+			if (!isReady(project.getId()))
+				batchWorkManager.submit(getBatchWorker(project.getId()), new ReindexWork(INDEXING_PRIORITY));
+		}
+	}
+
+	private TopDocs search(Project project, Class<? extends AbstractEntity> entityClass, Collection<String> fieldNames,
+			String text, int count, IndexSearcher searcher) throws IOException {
+		BooleanQuery.Builder fieldsBuilder = new BooleanQuery.Builder();
+		for (String fieldName: fieldNames)
+			fieldsBuilder.add(new NGramLuceneQuery(fieldName, text, NGRAM_SIZE), Occur.SHOULD);
+		BooleanQuery.Builder builder = new BooleanQuery.Builder();
+		builder.add(new TermQuery(new Term(FIELD_TYPE, getType(entityClass))), Occur.FILTER);
+		builder.add(fieldsBuilder.build(), Occur.MUST);
+		return searcher.search(builder.build(), count);
+	}
+
+	private List<Long> getIds(IndexSearcher searcher, TopDocs topDocs) throws IOException {
+		List<Long> ids = new ArrayList<>();
+		for (ScoreDoc scoreDoc: topDocs.scoreDocs)
+			ids.add(searcher.doc(scoreDoc.doc).getField(FIELD_ID).numericValue().longValue());
+		return ids;
+	}
+
+	@Override
+	public List<Long> search(Project project, Class<? extends AbstractEntity> entityClass, 
+			Collection<String> fieldNames, String text, int count) {
+		if (project == null || text.length() < NGRAM_SIZE)
+			return null;
+
+		SearcherManager searcherManager = getSearcherManager(project.getId());
+		if (searcherManager == null)
+			return null;
+		try {
+			IndexSearcher searcher = searcherManager.acquire();
+			try {
+				return getIds(searcher, search(project, entityClass, fieldNames, text, count, searcher));
+			} finally {
+				searcherManager.release(searcher);
+			}
+		} catch (AlreadyClosedException e) {
+			// index is being rebuilt
+			return null;
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	public Collection<Long> match(Project project, Class<? extends AbstractEntity> entityClass, String fieldName,
+			String text) {
+		if (project == null || text.length() < NGRAM_SIZE)
+			return null;
+
+		SearcherManager searcherManager = getSearcherManager(project.getId());
+		if (searcherManager == null)
+			return null;
+		try {
+			IndexSearcher searcher = searcherManager.acquire();
+			try {
+				TopDocs topDocs = search(project, entityClass, Lists.newArrayList(fieldName), text, 
+						MAX_MATCHES+1, searcher);
+				if (topDocs.totalHits <= MAX_MATCHES)
+					return new HashSet<>(getIds(searcher, topDocs));
+				else
+					return null;
+			} finally {
+				searcherManager.release(searcher);
+			}
+		} catch (AlreadyClosedException e) {
+			// index is being rebuilt
+			return null;
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static class ReindexWork extends Prioritized {
+
+		public ReindexWork(int priority) {
+			super(priority);
+		}
+
+	}
+
+	private static class IndexWork extends Prioritized {
+
+		private final Class<? extends AbstractEntity> entityClass;
+
+		private final Long entityId;
+
+		public IndexWork(int priority, Class<? extends AbstractEntity> entityClass, Long entityId) {
+			super(priority);
+			this.entityClass = entityClass;
+			this.entityId = entityId;
+		}
+
+		public Class<? extends AbstractEntity> getEntityClass() {
+			return entityClass;
+		}
+
+		public Long getEntityId() {
+			return entityId;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (!(other instanceof IndexWork))
+				return false;
+			if (this == other)
+				return true;
+			IndexWork otherWork = (IndexWork) other;
+			return new EqualsBuilder()
+					.append(entityClass, otherWork.entityClass)
+					.append(entityId, otherWork.entityId)
+					.isEquals();
+		}
+
+		@Override
+		public int hashCode() {
+			return new HashCodeBuilder(17, 37).append(entityClass).append(entityId).toHashCode();
+		}
+
+	}
+
+}
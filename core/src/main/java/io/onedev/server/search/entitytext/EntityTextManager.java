@@ -0,0 +1,62 @@
+package io.onedev.server.search.entitytext;
+
+import java.util.Collection;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import io.onedev.server.model.AbstractEntity;
+import io.onedev.server.model.Project;
+
+/**
+ * Maintains a per-project Lucene index of texts of issues, pull requests and code comments 
+ * (including their comments and replies), so that text criterias can be resolved without 
+ * scanning database tables.
+ */
+public interface EntityTextManager {
+
+	static final String FIELD_TITLE = "title";
+	
+	/**
+	 * Issue title with whitespaces removed. Only used to look up issues ignoring whitespaces 
+	 * as issue pickers do, and should not be used to resolve title criterias
+	 */
+	static final String FIELD_NO_SPACE_TITLE = "noSpaceTitle";
+	
+	static final String FIELD_DESCRIPTION = "description";
+	
+	static final String FIELD_CONTENT = "content";
+	
+	static final String FIELD_COMMENTS = "comments";
+	
+	/**
+	 * Search entities of specified class in specified project with any of specified fields 
+	 * containing specified text
+	 * 
+	 * @param project
+	 * 			project to search entities in. Index can not be used if <tt>null</tt>
+	 * 
+	 * @return
+	 * 			ids of matching entities ordered by relevance, or <tt>null</tt> if the index 
+	 * 			can not be used to search specified text, for instance if the index is still 
+	 * 			being built, or if the text is too short. Caller should fall back to database 
+	 * 			query in this case
+	 */
+	@Nullable
+	List<Long> search(@Nullable Project project, Class<? extends AbstractEntity> entityClass, 
+			Collection<String> fieldNames, String text, int count);
+	
+	/**
+	 * Find all entities of specified class in specified project whose specified field 
+	 * contains specified text
+	 * 
+	 * @return
+	 * 			ids of matching entities, or <tt>null</tt> if the index can not be used to 
+	 * 			search specified text, or if too many entities are matched to be used as 
+	 * 			an id restriction. Caller should fall back to database query in this case
+	 */
+	@Nullable
+	Collection<Long> match(@Nullable Project project, Class<? extends AbstractEntity> entityClass, String fieldName, 
+			String text);
+	
+}
@@ -53,8 +53,14 @@ public class ContentDetector {
 		if (contentBytes.length == 0)
 			return false;
 		
-		MediaType mediaType = detectMediaType(contentBytes, fileName);
-		
+		return isBinary(detectMediaType(contentBytes, fileName));
+	}
+	
+	/**
+	 * Check whether or not content of specified media type is binary. Note that empty 
+	 * content should always be treated as text regardless of its media type
+	 */
+	public static boolean isBinary(MediaType mediaType) {
 		return !mediaType.getType().equalsIgnoreCase("text")
 				&& !mediaType.equals(MediaType.application("xhtml+xml"))
 				&& !mediaType.equals(MediaType.APPLICATION_XML)
@@ -40,7 +40,6 @@ import io.onedev.server.search.code.SearchManager;
 import io.onedev.server.search.code.hit.QueryHit;
 import io.onedev.server.search.code.hit.SymbolHit;
 import io.onedev.server.search.code.query.BlobQuery;
-import io.onedev.server.search.code.query.SymbolQuery;
 import io.onedev.server.search.code.query.TextQuery;
 import io.onedev.server.web.behavior.AbstractPostAjaxBehavior;
 import io.onedev.server.web.behavior.RunTaskBehavior;
@@ -238,27 +237,8 @@ public abstract class SymbolTooltipPanel extends Panel {
 						try {
 							SearchManager searchManager = OneDev.getInstance(SearchManager.class);
 							ObjectId commit = projectModel.getObject().getRevCommit(revision);
-							BlobQuery query;
-							if (symbolHits.size() < QUERY_ENTRIES) {
-								query = new SymbolQuery.Builder().term(symbolName)
-										.excludeBlobPath(blobIdent.path)
-										.primary(true)
-										.local(false)
-										.caseSensitive(true)
-										.count(QUERY_ENTRIES)
-										.build();
-								symbolHits.addAll(searchManager.search(projectModel.getObject(), commit, query));
-							}							
-							if (symbolHits.size() < QUERY_ENTRIES) {
-								query = new SymbolQuery.Builder().term(symbolName)
-										.excludeBlobPath(blobIdent.path)
-										.primary(false)
-										.local(false)
-										.caseSensitive(true)
-										.count(QUERY_ENTRIES - symbolHits.size())
-										.build();
-								symbolHits.addAll(searchManager.search(projectModel.getObject(), commit, query));
-							}
+							symbolHits.addAll(searchManager.findDefinitions(projectModel.getObject(), commit, 
+									symbolName, blobIdent.path, QUERY_ENTRIES - symbolHits.size()));
 						} catch (InterruptedException e) {
 							throw new RuntimeException(e);
 						}								
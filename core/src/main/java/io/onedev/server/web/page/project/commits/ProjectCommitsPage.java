@@ -1,6 +1,5 @@
 package io.onedev.server.web.page.project.commits;
 
-import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
@@ -35,23 +34,20 @@ import org.apache.wicket.model.Model;
 import org.apache.wicket.request.cycle.RequestCycle;
 import org.apache.wicket.request.mapper.parameter.PageParameters;
 import org.eclipse.jgit.lib.FileMode;
-import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.revwalk.RevCommit;
-import org.eclipse.jgit.revwalk.RevWalk;
 import org.joda.time.DateTime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Optional;
-import com.google.common.collect.Lists;
 
 import de.agilecoders.wicket.core.markup.html.bootstrap.common.NotificationPanel;
 import io.onedev.server.OneDev;
 import io.onedev.server.exception.OneException;
 import io.onedev.server.git.BlobIdent;
 import io.onedev.server.git.GitUtils;
-import io.onedev.server.git.command.RevListCommand;
 import io.onedev.server.manager.BuildManager;
+import io.onedev.server.manager.CommitQueryManager;
 import io.onedev.server.manager.CommitQuerySettingManager;
 import io.onedev.server.manager.ProjectManager;
 import io.onedev.server.model.Build;
@@ -122,57 +118,44 @@ public class ProjectCommitsPage extends ProjectPage {
 		@Override
 		protected Commits load() {
 			Commits commits = new Commits();
-			List<String> commitHashes;
+			List<RevCommit> commitList;
 			try {
-				RevListCommand command = new RevListCommand(getProject().getGitDir());
-				command.ignoreCase(true);
-				
 				if (state.page > MAX_PAGES)
 					throw new OneException("Page should be no more than " + MAX_PAGES);
 				
-				command.count(state.page*COUNT);
-
-				CommitQueryUtils.fill(getProject(), getQueryContext(), command);
-				
-				if (command.revisions().isEmpty() && state.compareWith != null)
-					command.revisions(Lists.newArrayList(state.compareWith));
-				
-				commitHashes = command.call();
+				/*
+				 * Query one more commit to know whether or not there are more commits. 
+				 * Walk state is retained by commit query manager, so that loading next 
+				 * page continues from where this page stopped
+				 */
+				commitList = OneDev.getInstance(CommitQueryManager.class).query(getProject(), 
+						state.query, state.compareWith, state.page*COUNT+1);
 			} catch (Exception e) {
 				if (e.getMessage() != null)
 					error(e.getMessage());
 				else
 					error("Error calculating commits: check log for details");
-				commitHashes = new ArrayList<>();
+				commitList = new ArrayList<>();
 				logger.error("Error calculating commits: ", e);
 			}
 			
-			hasMore = commitHashes.size() == state.page*COUNT;
+			hasMore = commitList.size() > state.page*COUNT;
+			if (hasMore)
+				commitList = commitList.subList(0, state.page*COUNT);
 			
-			try (RevWalk revWalk = new RevWalk(getProject().getRepository())) {
-				int lastMaxCount = Math.min((state.page-1)*COUNT, commitHashes.size());
-				
-				commits.last = new ArrayList<>();
-				
-				for (int i=0; i<lastMaxCount; i++) { 
-					commits.last.add(revWalk.parseCommit(ObjectId.fromString(commitHashes.get(i))));
-				}
-				
-				CommitGraphUtils.sort(commits.last, 0);
-				
-				commits.current = new ArrayList<>(commits.last);
-				for (int i=lastMaxCount; i<commitHashes.size(); i++)
-					commits.current.add(revWalk.parseCommit(ObjectId.fromString(commitHashes.get(i))));
-				
-				CommitGraphUtils.sort(commits.current, lastMaxCount);
+			int lastMaxCount = Math.min((state.page-1)*COUNT, commitList.size());
+			
+			commits.last = new ArrayList<>(commitList.subList(0, lastMaxCount));
+			CommitGraphUtils.sort(commits.last, 0);
+			
+			commits.current = new ArrayList<>(commits.last);
+			commits.current.addAll(commitList.subList(lastMaxCount, commitList.size()));
+			CommitGraphUtils.sort(commits.current, lastMaxCount);
 
-				commits.last = separateByDate(commits.last);
-				commits.current = separateByDate(commits.current);
-				
-				return commits;
-			} catch (IOException e) {
-				throw new RuntimeException(e);
-			}
+			commits.last = separateByDate(commits.last);
+			commits.current = separateByDate(commits.current);
+			
+			return commits;
 		}
 		
 	};
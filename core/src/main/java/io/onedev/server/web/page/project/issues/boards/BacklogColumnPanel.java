@@ -57,18 +57,6 @@ abstract class BacklogColumnPanel extends Panel {
 		
 	};
 
-	private final IModel<Integer> countModel = new LoadableDetachableModel<Integer>() {
-
-		@Override
-		protected Integer load() {
-			if (getQuery() != null)
-				return OneDev.getInstance(IssueManager.class).count(getProject(), SecurityUtils.getUser(), getQuery().getCriteria());
-			else
-				return 0;
-		}
-		
-	};
-	
 	private AbstractPostAjaxBehavior ajaxBehavior;
 	
 	public BacklogColumnPanel(String id) {
@@ -127,7 +115,7 @@ abstract class BacklogColumnPanel extends Panel {
 
 			@Override
 			protected int getCount() {
-				return countModel.getObject();
+				return getCardCount();
 			}
 
 		});
@@ -192,7 +180,12 @@ abstract class BacklogColumnPanel extends Panel {
 
 			@Override
 			protected int getCardCount() {
-				return countModel.getObject();
+				return BacklogColumnPanel.this.getCardCount();
+			}
+
+			@Override
+			protected List<Issue> getFirstCards() {
+				return BacklogColumnPanel.this.getFirstCards();
 			}
 
 		});
@@ -200,18 +193,32 @@ abstract class BacklogColumnPanel extends Panel {
 		super.onBeforeRender();
 	}
 	
-	private IssueQuery getQuery() {
+	@Nullable
+	IssueQuery getQuery() {
 		return queryModel.getObject();
 	}
 
 	@Override
 	protected void onDetach() {
 		queryModel.detach();
-		countModel.detach();
 		super.onDetach();
 	}
 
 	protected abstract Project getProject();
+
+	/**
+	 * @return
+	 * 			number of issues in this column. Card counts of all columns of the board 
+	 * 			are calculated together
+	 */
+	protected abstract int getCardCount();
+	
+	/**
+	 * @return
+	 * 			first page of issues in this column. First pages of all columns of the 
+	 * 			board are queried together
+	 */
+	protected abstract List<Issue> getFirstCards();
 	
 	@Nullable
 	protected abstract IssueQuery getBacklogQuery();
@@ -100,18 +100,6 @@ abstract class BoardColumnPanel extends Panel implements EditContext {
 		
 	};
 	
-	private final IModel<Integer> countModel = new LoadableDetachableModel<Integer>() {
-
-		@Override
-		protected Integer load() {
-			if (getQuery() != null)
-				return OneDev.getInstance(IssueManager.class).count(getProject(), SecurityUtils.getUser(), getQuery().getCriteria());
-			else
-				return 0;
-		}
-		
-	};
-	
 	private AbstractPostAjaxBehavior ajaxBehavior;
 	
 	public BoardColumnPanel(String id) {
@@ -121,11 +109,11 @@ abstract class BoardColumnPanel extends Panel implements EditContext {
 	@Override
 	protected void onDetach() {
 		queryModel.detach();
-		countModel.detach();
 		super.onDetach();
 	}
 	
-	private IssueQuery getQuery() {
+	@Nullable
+	IssueQuery getQuery() {
 		return queryModel.getObject();
 	}
 
@@ -205,7 +193,12 @@ abstract class BoardColumnPanel extends Panel implements EditContext {
 
 					@Override
 					protected int getCardCount() {
-						return countModel.getObject();
+						return BoardColumnPanel.this.getCardCount();
+					}
+
+					@Override
+					protected List<Issue> getFirstCards() {
+						return BoardColumnPanel.this.getFirstCards();
 					}
 
 				});
@@ -313,7 +306,7 @@ abstract class BoardColumnPanel extends Panel implements EditContext {
 
 			@Override
 			protected int getCount() {
-				return countModel.getObject();
+				return getCardCount();
 			}
 
 		});
@@ -430,6 +423,20 @@ abstract class BoardColumnPanel extends Panel implements EditContext {
 
 	protected abstract Project getProject();
 
+	/**
+	 * @return
+	 * 			number of issues in this column. Card counts of all columns of the board 
+	 * 			are calculated together
+	 */
+	protected abstract int getCardCount();
+	
+	/**
+	 * @return
+	 * 			first page of issues in this column. First pages of all columns of the 
+	 * 			board are queried together
+	 */
+	protected abstract List<Issue> getFirstCards();
+
 	protected abstract BoardSpec getBoard();
 
 	@Nullable
@@ -40,7 +40,7 @@ abstract class CardListPanel extends Panel {
 
 		RepeatingView cardsView = new RepeatingView("cards");
 		int index = 0;
-		for (Issue issue: queryIssues(0, WebConstants.PAGE_SIZE)) {
+		for (Issue issue: getFirstCards()) {
 			Long issueId = issue.getId();
 			IModel<Issue> model = new LoadableDetachableModel<Issue>() {
 
@@ -150,4 +150,6 @@ abstract class CardListPanel extends Panel {
 
 	protected abstract int getCardCount();
 	
+	protected abstract List<Issue> getFirstCards();
+	
 }
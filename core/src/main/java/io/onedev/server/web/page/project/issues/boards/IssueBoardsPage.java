@@ -3,7 +3,9 @@ package io.onedev.server.web.page.project.issues.boards;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 import javax.annotation.Nullable;
@@ -30,6 +32,7 @@ import org.apache.wicket.model.AbstractReadOnlyModel;
 import org.apache.wicket.model.IModel;
 import org.apache.wicket.model.LoadableDetachableModel;
 import org.apache.wicket.model.Model;
+import org.apache.wicket.request.cycle.RequestCycle;
 import org.apache.wicket.request.mapper.parameter.PageParameters;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -38,14 +41,18 @@ import de.agilecoders.wicket.core.markup.html.bootstrap.common.NotificationPanel
 import edu.emory.mathcs.backport.java.util.Collections;
 import io.onedev.server.OneDev;
 import io.onedev.server.exception.OneException;
+import io.onedev.server.manager.IssueManager;
 import io.onedev.server.manager.MilestoneManager;
 import io.onedev.server.manager.ProjectManager;
+import io.onedev.server.model.Issue;
 import io.onedev.server.model.Milestone;
 import io.onedev.server.model.Project;
 import io.onedev.server.model.support.issue.BoardSpec;
+import io.onedev.server.search.entity.issue.IssueCriteria;
 import io.onedev.server.search.entity.issue.IssueQuery;
 import io.onedev.server.security.SecurityUtils;
 import io.onedev.server.util.DateUtils;
+import io.onedev.server.web.WebConstants;
 import io.onedev.server.web.behavior.IssueQueryBehavior;
 import io.onedev.server.web.behavior.sortable.SortBehavior;
 import io.onedev.server.web.behavior.sortable.SortPosition;
@@ -109,6 +116,49 @@ public class IssueBoardsPage extends IssuesPage {
 		
 	};
 	
+	/*
+	 * Card counts and first cards of all columns are loaded in batch when the whole page is 
+	 * rendered. Ajax requests normally only refresh some columns (for instance when more 
+	 * cards are loaded, or when the board is changed), so they are loaded per column on 
+	 * demand in that case
+	 */
+	private final IModel<Map<String, Integer>> cardCountsModel = new LoadableDetachableModel<Map<String, Integer>>() {
+
+		@Override
+		protected Map<String, Integer> load() {
+			Map<String, Integer> cardCounts = new HashMap<>();
+			if (!isAjaxRequest()) {
+				List<IssueQuery> queries = getColumnQueries();
+				List<IssueCriteria> criterias = new ArrayList<>();
+				for (IssueQuery query: queries)
+					criterias.add(query.getCriteria());
+				List<Integer> counts = OneDev.getInstance(IssueManager.class).count(
+						getProject(), SecurityUtils.getUser(), criterias);
+				for (int i=0; i<queries.size(); i++)
+					cardCounts.put(queries.get(i).toString(), counts.get(i));
+			}
+			return cardCounts;
+		}
+		
+	};
+	
+	private final IModel<Map<String, List<Issue>>> firstCardsModel = new LoadableDetachableModel<Map<String, List<Issue>>>() {
+
+		@Override
+		protected Map<String, List<Issue>> load() {
+			Map<String, List<Issue>> firstCards = new HashMap<>();
+			if (!isAjaxRequest()) {
+				List<IssueQuery> queries = getColumnQueries();
+				List<List<Issue>> issueLists = OneDev.getInstance(IssueManager.class).query(
+						getProject(), SecurityUtils.getUser(), queries, WebConstants.PAGE_SIZE);
+				for (int i=0; i<queries.size(); i++)
+					firstCards.put(queries.get(i).toString(), issueLists.get(i));
+			}
+			return firstCards;
+		}
+		
+	};
+	
 	private NotificationPanel feedback;
 	
 	private IssueQuery parse(boolean backlog, @Nullable String baseQueryString, @Nullable String additionalQueryString) {
@@ -221,9 +271,61 @@ public class IssueBoardsPage extends IssuesPage {
 		milestoneModel.detach();
 		parsedQueryModel.detach();
 		parsedBacklogQueryModel.detach();
+		cardCountsModel.detach();
+		firstCardsModel.detach();
 		super.onDetach();
 	}
 
+	private List<IssueQuery> getColumnQueries() {
+		List<IssueQuery> queries = new ArrayList<>();
+		if (columnsView != null) {
+			for (Component column: columnsView) {
+				IssueQuery query;
+				if (column instanceof BacklogColumnPanel)
+					query = ((BacklogColumnPanel) column).getQuery();
+				else
+					query = ((BoardColumnPanel) column).getQuery();
+				if (query != null)
+					queries.add(query);
+			}
+		}
+		return queries;
+	}
+	
+	private boolean isAjaxRequest() {
+		return RequestCycle.get().find(AjaxRequestTarget.class) != null;
+	}
+	
+	private int getCardCount(@Nullable IssueQuery query) {
+		if (query != null) {
+			Map<String, Integer> cardCounts = cardCountsModel.getObject();
+			Integer count = cardCounts.get(query.toString());
+			if (count == null) {
+				count = OneDev.getInstance(IssueManager.class).count(
+						getProject(), SecurityUtils.getUser(), query.getCriteria());
+				cardCounts.put(query.toString(), count);
+			}
+			return count;
+		} else {
+			return 0;
+		}
+	}
+	
+	private List<Issue> getFirstCards(@Nullable IssueQuery query) {
+		if (query != null) {
+			Map<String, List<Issue>> firstCards = firstCardsModel.getObject();
+			List<Issue> issues = firstCards.get(query.toString());
+			if (issues == null) {
+				issues = OneDev.getInstance(IssueManager.class).query(
+						getProject(), SecurityUtils.getUser(), query, 0, WebConstants.PAGE_SIZE);
+				firstCards.put(query.toString(), issues);
+			}
+			return issues;
+		} else {
+			return new ArrayList<>();
+		}
+	}
+	
 	@Nullable
 	public BoardSpec getBoard() {
 		if (boardIndex != -1)
@@ -646,6 +748,16 @@ public class IssueBoardsPage extends IssuesPage {
 						return parsedBacklogQueryModel.getObject();
 					}
 
+					@Override
+					protected int getCardCount() {
+						return IssueBoardsPage.this.getCardCount(getQuery());
+					}
+
+					@Override
+					protected List<Issue> getFirstCards() {
+						return IssueBoardsPage.this.getFirstCards(getQuery());
+					}
+
 				});
 			}
 			
@@ -677,6 +789,16 @@ public class IssueBoardsPage extends IssuesPage {
 						return parsedQueryModel.getObject();
 					}
 
+					@Override
+					protected int getCardCount() {
+						return IssueBoardsPage.this.getCardCount(getQuery());
+					}
+
+					@Override
+					protected List<Issue> getFirstCards() {
+						return IssueBoardsPage.this.getFirstCards(getQuery());
+					}
+
 				});
 			}
 			boardFragment.add(columnsView);
@@ -3,6 +3,7 @@ package io.onedev.server.web.util.resource;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
+import java.nio.channels.FileChannel;
 
 import javax.persistence.EntityNotFoundException;
 
@@ -11,16 +12,14 @@ import org.apache.shiro.authz.UnauthorizedException;
 import org.apache.tika.mime.MimeTypes;
 import org.apache.wicket.request.mapper.parameter.PageParameters;
 import org.apache.wicket.request.resource.AbstractResource;
-import org.eclipse.jgit.api.ArchiveCommand;
-import org.eclipse.jgit.api.Git;
-import org.eclipse.jgit.api.errors.GitAPIException;
-import org.eclipse.jgit.archive.TgzFormat;
-import org.eclipse.jgit.archive.ZipFormat;
+import org.eclipse.jgit.lib.ObjectId;
 
 import com.google.common.base.Charsets;
 import com.google.common.base.Preconditions;
 
 import io.onedev.server.OneDev;
+import io.onedev.server.git.GitUtils;
+import io.onedev.server.manager.ArchiveManager;
 import io.onedev.server.manager.ProjectManager;
 import io.onedev.server.model.Project;
 import io.onedev.server.security.SecurityUtils;
@@ -35,9 +34,9 @@ public class ArchiveResource extends AbstractResource {
 	
 	private static final String PARAM_FORMAT = "format";
 	
-	public static final String FORMAT_ZIP = "zip";
+	public static final String FORMAT_ZIP = ArchiveManager.FORMAT_ZIP;
 	
-	public static final String FORMAT_TGZ = "tgz";
+	public static final String FORMAT_TGZ = ArchiveManager.FORMAT_TGZ;
 	
 	@Override
 	protected ResourceResponse newResourceResponse(Attributes attributes) {
@@ -64,10 +63,15 @@ public class ArchiveResource extends AbstractResource {
 		if (!SecurityUtils.canReadCode(project.getFacade())) 
 			throw new UnauthorizedException();
 
+		ObjectId treeId = project.getRevCommit(revision).getTree().copy();
+		
 		ResourceResponse response = new ResourceResponse();
 		response.setContentType(MimeTypes.OCTET_STREAM);
 		
-		response.disableCaching();
+		// Archive is determined by tree id, so we use it as strong ETag
+		response.setETag("\"" + treeId.name() + "-" + format + "\"");
+		if (!GitUtils.isHash(revision))
+			response.disableCaching();
 		
 		try {
 			String fileName;
@@ -79,26 +83,32 @@ public class ArchiveResource extends AbstractResource {
 		} catch (UnsupportedEncodingException e) {
 			throw new RuntimeException(e);
 		}
+		
+		if (!response.dataNeedsToBeWritten(attributes))
+			return response;
+		
+		FileChannel archiveChannel = OneDev.getInstance(ArchiveManager.class).openArchive(project, treeId, format);
+		long length;
+		try {
+			length = archiveChannel.size();
+		} catch (IOException e) {
+			try {
+				archiveChannel.close();
+			} catch (IOException e2) {
+			}
+			throw new RuntimeException(e);
+		}
+		response.setContentLength(length);
+		
 		response.setWriteCallback(new WriteCallback() {
 
 			@Override
 			public void writeData(Attributes attributes) throws IOException {
-				if (format.equals("zip"))
-					ArchiveCommand.registerFormat(format, new ZipFormat());
-				else
-					ArchiveCommand.registerFormat(format, new TgzFormat());
-				try {
-					ArchiveCommand archive = Git.wrap(project.getRepository()).archive();
-					archive.setFormat(format);
-					archive.setTree(project.getRevCommit(revision).getId());
-					archive.setOutputStream(attributes.getResponse().getOutputStream());
-					archive.call();
-				} catch (GitAPIException e) {
-					throw new RuntimeException(e);
-				} finally {
-					ArchiveCommand.unregisterFormat(format);
+				try (FileChannel channel = archiveChannel) {
+					ResourceUtils.sendFile(attributes, channel, 0, length);
 				}
 			}				
+			
 		});
 
 		return response;
@@ -1,18 +1,18 @@
 package io.onedev.server.web.util.resource;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.nio.file.Files;
 
 import javax.persistence.EntityNotFoundException;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.shiro.authz.UnauthorizedException;
-import org.apache.tika.io.IOUtils;
+import org.apache.wicket.request.cycle.RequestCycle;
+import org.apache.wicket.request.http.WebResponse;
 import org.apache.wicket.request.mapper.parameter.PageParameters;
 import org.apache.wicket.request.resource.AbstractResource;
+import org.apache.wicket.util.time.Time;
 
 import com.google.common.base.Preconditions;
 
@@ -33,6 +33,8 @@ public class AttachmentResource extends AbstractResource {
 	
 	private static final String PARAM_ATTACHMENT = "attachment";
 	
+	private static final String PARAM_VERSION = "v";
+	
 	@Override
 	protected ResourceResponse newResourceResponse(Attributes attributes) {
 		PageParameters params = attributes.getParameters();
@@ -62,7 +64,23 @@ public class AttachmentResource extends AbstractResource {
 			throw new RuntimeException("Attachment not found: " + attachment);
 		
 		ResourceResponse response = new ResourceResponse();
-		response.setContentLength(attachmentFile.length());
+		
+		/*
+		 * Attachments are never modified in place, so last modified time and length identify 
+		 * the content. Attachment urls carry the last modified time as version parameter, 
+		 * and can be cached for long
+		 */
+		long length = attachmentFile.length();
+		response.setETag("\"" + Long.toHexString(attachmentFile.lastModified()) + "-" + Long.toHexString(length) + "\"");
+		response.setLastModified(Time.millis(attachmentFile.lastModified()));
+		if (!params.get(PARAM_VERSION).isEmpty())
+			response.setCacheDuration(WebResponse.MAX_CACHE_DURATION);
+		
+		if (!response.dataNeedsToBeWritten(attributes))
+			return response;
+		
+		response.setAcceptRange(ContentRangeType.BYTES);
+		response.setContentLength(length);
 		try {
 			response.setContentType(Files.probeContentType(attachmentFile.toPath()));
 		} catch (IOException e) {
@@ -75,9 +93,14 @@ public class AttachmentResource extends AbstractResource {
 
 			@Override
 			public void writeData(Attributes attributes) throws IOException {
-				try (InputStream is = new FileInputStream(attachmentFile);) {
-					IOUtils.copy(is, attributes.getResponse().getOutputStream());
-				}
+				Long startByte = RequestCycle.get().getMetaData(CONTENT_RANGE_STARTBYTE);
+				Long endByte = RequestCycle.get().getMetaData(CONTENT_RANGE_ENDBYTE);
+
+				if (startByte == null)
+					startByte = 0L;
+				if (endByte == null || endByte == -1)
+					endByte = length - 1;
+				ResourceUtils.sendFile(attributes, attachmentFile, startByte, endByte - startByte + 1);
 			}
 			
 		});
@@ -95,7 +118,7 @@ public class AttachmentResource extends AbstractResource {
 		params.set(PARAM_UUID, attachmentDirUUID);
 		params.set(PARAM_ATTACHMENT, attachmentName);
 		final File attachmentFile = new File(getAttachmentDir(project, attachmentDirUUID), attachmentName);
-		params.set("v", attachmentFile.lastModified());
+		params.set(PARAM_VERSION, attachmentFile.lastModified());
 		
 		return params;
 	}
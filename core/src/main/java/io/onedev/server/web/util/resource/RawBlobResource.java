@@ -12,11 +12,17 @@ import java.util.List;
 import javax.persistence.EntityNotFoundException;
 import javax.ws.rs.core.MediaType;
 
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.shiro.authz.UnauthorizedException;
 import org.apache.wicket.request.cycle.RequestCycle;
+import org.apache.wicket.request.http.WebResponse;
 import org.apache.wicket.request.mapper.parameter.PageParameters;
 import org.apache.wicket.request.resource.AbstractResource;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.revwalk.RevTree;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
 
 import com.google.common.base.Charsets;
 import com.google.common.base.Preconditions;
@@ -25,6 +31,7 @@ import io.onedev.server.OneDev;
 import io.onedev.server.git.Blob;
 import io.onedev.server.git.BlobIdent;
 import io.onedev.server.git.GitUtils;
+import io.onedev.server.git.exception.ObjectNotFoundException;
 import io.onedev.server.manager.ProjectManager;
 import io.onedev.server.model.Project;
 import io.onedev.server.security.SecurityUtils;
@@ -78,9 +85,23 @@ public class RawBlobResource extends AbstractResource {
 		if (!SecurityUtils.canReadCode(project.getFacade()))
 			throw new UnauthorizedException();
 
+		ResourceResponse response = new ResourceResponse();
+		
+		/*
+		 * Blob id is content addressed and is a perfect strong ETag. It is resolved without 
+		 * reading blob content so that conditional requests can be answered cheaply 
+		 */
+		response.setETag("\"" + getBlobId(project, revision, path).name() + "\"");
+		if (GitUtils.isHash(revision)) 
+			response.setCacheDuration(WebResponse.MAX_CACHE_DURATION);
+		else 
+			response.disableCaching();
+		
+		if (!response.dataNeedsToBeWritten(attributes))
+			return response;
+		
 		final Blob blob = project.getBlob(new BlobIdent(revision, path, 0));
 
-		ResourceResponse response = new ResourceResponse();
 		response.setAcceptRange(ContentRangeType.BYTES);
 		response.setContentLength(blob.getSize());
 		response.setContentType(blob.getMediaType().toString());
@@ -88,9 +109,6 @@ public class RawBlobResource extends AbstractResource {
 			response.setContentType(MediaType.TEXT_PLAIN);
 		}
 
-		if (!GitUtils.isHash(revision))
-			response.disableCaching();
-
 		try {
 			response.setFileName(URLEncoder.encode(blob.getIdent().getName(), Charsets.UTF_8.name()));
 		} catch (UnsupportedEncodingException e) {
@@ -101,7 +119,7 @@ public class RawBlobResource extends AbstractResource {
 
 			private void copyRange(InputStream in, OutputStream out, long start, long end) throws IOException {
 
-				long skipped = in.skip(start);
+				long skipped = IOUtils.skip(in, start);
 
 				if (skipped < start) {
 					throw new IOException("Skipped only " + skipped + " bytes out of " + start + " required.");
@@ -111,17 +129,11 @@ public class RawBlobResource extends AbstractResource {
 
 				byte buffer[] = new byte[BUFFER_SIZE];
 				while (bytesToCopy > 0) {
-					int bytesRead = in.read(buffer);
-					if (bytesRead <= bytesToCopy) {
-						out.write(buffer, 0, bytesRead);
-						bytesToCopy -= bytesRead;
-					} else {
-						out.write(buffer, 0, (int) bytesToCopy);
-						bytesToCopy = 0;
-					}
-					if (bytesRead < buffer.length) {
+					int bytesRead = in.read(buffer, 0, (int) Math.min(buffer.length, bytesToCopy));
+					if (bytesRead == -1) 
 						break;
-					}
+					out.write(buffer, 0, bytesRead);
+					bytesToCopy -= bytesRead;
 				}
 			}
 
@@ -151,6 +163,19 @@ public class RawBlobResource extends AbstractResource {
 		return response;
 	}
 
+	private ObjectId getBlobId(Project project, String revision, String path) {
+		try (RevWalk revWalk = new RevWalk(project.getRepository())) {
+			RevTree revTree = revWalk.parseCommit(project.getObjectId(revision)).getTree();
+			TreeWalk treeWalk = TreeWalk.forPath(project.getRepository(), path, revTree);
+			if (treeWalk != null) 
+				return treeWalk.getObjectId(0);
+			else 
+				throw new ObjectNotFoundException("Unable to find blob path '" + path + "' in revision '" + revision + "'");
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
 	public static PageParameters paramsOf(Project project, BlobIdent blobIdent) {
 		PageParameters params = new PageParameters();
 		params.set(PARAM_DEPOT, project.getName());
@@ -0,0 +1,61 @@
+package io.onedev.server.web.util.resource;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.wicket.request.resource.IResource.Attributes;
+import org.eclipse.jetty.server.HttpOutput;
+
+public class ResourceUtils {
+
+	/**
+	 * Send specified range of a file as response body. If possible, the file is memory mapped 
+	 * and handed to Jetty directly, so that the content is written to socket from page cache 
+	 * without being copied through heap buffers
+	 * 
+	 * @param attributes
+	 * 			resource attributes
+	 * @param file
+	 * 			file to be sent
+	 * @param start
+	 * 			start position of the range, inclusive
+	 * @param length
+	 * 			length of the range
+	 */
+	public static void sendFile(Attributes attributes, File file, long start, long length) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			sendFile(attributes, channel, start, length);
+		}
+	}
+	
+	/**
+	 * Send specified range of an opened file as response body, the same way as 
+	 * {@link #sendFile(Attributes, File, long, long)}. The channel is not closed
+	 */
+	public static void sendFile(Attributes attributes, FileChannel channel, long start, long length) throws IOException {
+		Object containerResponse = attributes.getResponse().getContainerResponse();
+		if (containerResponse instanceof HttpServletResponse) {
+			OutputStream os = ((HttpServletResponse) containerResponse).getOutputStream();
+			if (os instanceof HttpOutput && length <= Integer.MAX_VALUE) {
+				MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+				((HttpOutput) os).sendContent(buffer);
+				return;
+			}
+		}
+		
+		// Output stream is wrapped, for instance by a compressing filter 
+		OutputStream os = attributes.getResponse().getOutputStream();
+		long position = start;
+		long end = start + length;
+		while (position < end) 
+			position += channel.transferTo(position, end - position, Channels.newChannel(os));
+	}
+	
+}
@@ -0,0 +1,166 @@
+package io.onedev.server.search.code;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import org.apache.commons.lang3.SerializationUtils;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import io.onedev.jsymbol.Symbol;
+import io.onedev.jsymbol.TokenPosition;
+
+public class IndexedSymbolsTest {
+
+	private Symbol mockSymbol(@Nullable String name, boolean primary, boolean searchable,
+			boolean localInHierarchy, @Nullable TokenPosition position) {
+		return mockSymbol(name, null, primary, searchable, localInHierarchy, position);
+	}
+
+	private Symbol mockSymbol(@Nullable String name, @Nullable String namespace, boolean primary, 
+			boolean searchable, boolean localInHierarchy, @Nullable TokenPosition position) {
+		Symbol symbol = Mockito.mock(Symbol.class);
+		if (namespace != null) {
+			Symbol parent = Mockito.mock(Symbol.class);
+			Mockito.when(parent.getFQN()).thenReturn(namespace);
+			Mockito.when(symbol.getParent()).thenReturn(parent);
+		}
+		Mockito.when(symbol.getName()).thenReturn(name);
+		Mockito.when(symbol.isPrimary()).thenReturn(primary);
+		Mockito.when(symbol.isSearchable()).thenReturn(searchable);
+		Mockito.when(symbol.isLocalInHierarchy()).thenReturn(localInHierarchy);
+		Mockito.when(symbol.getPosition()).thenReturn(position);
+		return symbol;
+	}
+
+	private void assertPosition(TokenPosition expected, TokenPosition actual) {
+		assertEquals(expected.getFromLine(), actual.getFromLine());
+		assertEquals(expected.getFromCh(), actual.getFromCh());
+		assertEquals(expected.getToLine(), actual.getToLine());
+		assertEquals(expected.getToCh(), actual.getToCh());
+	}
+
+	@Test
+	public void shouldRoundTrip() {
+		List<Symbol> symbols = new ArrayList<>();
+		symbols.add(mockSymbol("Foo", true, true, false, new TokenPosition(0, 13, 0, 16)));
+		symbols.add(mockSymbol(null, false, false, false, null));
+		symbols.add(mockSymbol("bar", "Foo", false, true, true, new TokenPosition(3, 4, 27, 5)));
+		symbols.add(mockSymbol("Foo", "Foo", false, false, true, new TokenPosition(100000, 70000, 100000, 2)));
+		symbols.add(mockSymbol("", "a.b.Foo", true, false, false, null));
+
+		IndexedSymbols indexedSymbols = new IndexedSymbols(IndexedSymbols.encode(symbols));
+
+		assertEquals(symbols.size(), indexedSymbols.size());
+		for (int i=0; i<symbols.size(); i++) {
+			Symbol symbol = symbols.get(i);
+			assertEquals(symbol.getName(), indexedSymbols.getName(i));
+			assertEquals(symbol.getParent()!=null?symbol.getParent().getFQN():null, indexedSymbols.getNamespace(i));
+			assertEquals(symbol.isPrimary(), indexedSymbols.isPrimary(i));
+			assertEquals(symbol.isSearchable(), indexedSymbols.isSearchable(i));
+			assertEquals(symbol.isLocalInHierarchy(), indexedSymbols.isLocalInHierarchy(i));
+			if (symbol.getPosition() != null)
+				assertPosition(symbol.getPosition(), indexedSymbols.getPosition(i));
+			else
+				assertNull(indexedSymbols.getPosition(i));
+		}
+	}
+
+	@Test
+	public void shouldRoundTripEmptySymbols() {
+		IndexedSymbols indexedSymbols = new IndexedSymbols(IndexedSymbols.encode(new ArrayList<>()));
+		assertEquals(0, indexedSymbols.size());
+	}
+
+	@Test
+	public void shouldRejectOtherFormats() {
+		List<Symbol> symbols = new ArrayList<>();
+		symbols.add(mockSymbol("Foo", true, true, false, new TokenPosition(0, 13, 0, 16)));
+		byte[] bytes = IndexedSymbols.encode(symbols);
+
+		// bytes written by format version 1, which carries a serialized payload after symbol table
+		byte[] olderBytes = bytes.clone();
+		olderBytes[0] = 1;
+		assertRejected(olderBytes);
+
+		// bytes written by format version 2, which does not carry namespaces
+		olderBytes[0] = 2;
+		assertRejected(olderBytes);
+
+		// bytes written by current format but followed by extra content
+		byte[] trailingBytes = new byte[bytes.length+4];
+		System.arraycopy(bytes, 0, trailingBytes, 0, bytes.length);
+		assertRejected(trailingBytes);
+
+		// bytes of java serialized symbol list stored by versions before the compact format
+		assertRejected(new byte[] {(byte)0xAC, (byte)0xED, 0x00, 0x05});
+	}
+
+	private void assertRejected(byte[] bytes) {
+		try {
+			new IndexedSymbols(bytes);
+			fail("Symbols should be rejected");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	/*
+	 * Compare against java serialization of plain objects holding the same information.
+	 * Symbols produced by extractors hold more than that (parent, type, modifiers, etc.),
+	 * so this is a lower bound of the serialized form previously stored in index
+	 */
+	@Test
+	public void shouldBeSmallerThanSerializedForm() {
+		List<Symbol> symbols = new ArrayList<>();
+		ArrayList<PlainSymbol> plainSymbols = new ArrayList<>();
+		for (int i=0; i<1000; i++) {
+			String name = "symbol" + (i%100);
+			String namespace = "io.onedev.Type" + (i%10);
+			TokenPosition position = new TokenPosition(i, i%80, i+i%3, i%80+10);
+			symbols.add(mockSymbol(name, namespace, i%10==0, true, i%2==0, position));
+			plainSymbols.add(new PlainSymbol(name, namespace, i%10==0, true, i%2==0, position));
+		}
+
+		int encodedLength = IndexedSymbols.encode(symbols).length;
+		int serializedLength = SerializationUtils.serialize(plainSymbols).length;
+		assertTrue("encoded: " + encodedLength + ", serialized: " + serializedLength,
+				encodedLength*2 < serializedLength);
+	}
+
+	private static class PlainSymbol implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		@SuppressWarnings("unused")
+		private final String name, namespace;
+
+		@SuppressWarnings("unused")
+		private final boolean primary, searchable, localInHierarchy;
+
+		@SuppressWarnings("unused")
+		private final int fromLine, fromCh, toLine, toCh;
+
+		PlainSymbol(String name, String namespace, boolean primary, boolean searchable, boolean localInHierarchy,
+				TokenPosition position) {
+			this.name = name;
+			this.namespace = namespace;
+			this.primary = primary;
+			this.searchable = searchable;
+			this.localInHierarchy = localInHierarchy;
+			fromLine = position.getFromLine();
+			fromCh = position.getFromCh();
+			toLine = position.getToLine();
+			toCh = position.getToCh();
+		}
+
+	}
+
+}
@@ -0,0 +1,160 @@
+package io.onedev.server.search.code.query;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.lang3.CharUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Test;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.Lists;
+
+import io.onedev.jsymbol.TokenPosition;
+import io.onedev.server.search.code.hit.QueryHit;
+import io.onedev.server.search.code.hit.TextHit;
+
+public class TextQueryTest {
+
+	private static final int MAX_LINE_LEN = 1024;
+
+	private List<String> collect(String term, boolean caseSensitive, boolean wholeWord, int count, String content) {
+		TextQuery query = new TextQuery.Builder().term(term).caseSensitive(caseSensitive)
+				.wholeWord(wholeWord).count(count).build();
+		List<QueryHit> hits = new ArrayList<>();
+		query.collectLiterals("file", content, hits);
+		return describe(hits);
+	}
+
+	private List<String> describe(List<QueryHit> hits) {
+		List<String> descriptions = new ArrayList<>();
+		for (QueryHit hit: hits) {
+			descriptions.add(hit.getTokenPos().getFromLine() + ":" + hit.getTokenPos().getFromCh()
+					+ "-" + hit.getTokenPos().getToCh() + ":" + ((TextHit)hit).getLineContent());
+		}
+		return descriptions;
+	}
+
+	@Test
+	public void testCaseSensitivity() {
+		String content = "Foo foo\nFOO fOo bar";
+		assertEquals(Lists.newArrayList("0:0-3:Foo foo", "0:4-7:Foo foo", "1:0-3:FOO fOo bar", "1:4-7:FOO fOo bar"),
+				collect("foo", false, false, 100, content));
+		assertEquals(Lists.newArrayList("0:4-7:Foo foo"), collect("foo", true, false, 100, content));
+		assertEquals(Lists.newArrayList("1:0-3:FOO fOo bar"), collect("FOO", true, false, 100, content));
+		assertEquals(Lists.newArrayList("0:0-3:Foo foo", "0:4-7:Foo foo"), collect("FOO", false, false, 2, content));
+	}
+
+	@Test
+	public void testWholeWord() {
+		String content = "foo bar foo\nfoo_bar xfoo (foo)\nfoofoo foo";
+		assertEquals(Lists.newArrayList(
+				"0:0-3:foo bar foo",
+				"0:8-11:foo bar foo",
+				"1:14-17:foo_bar xfoo (foo)",
+				"2:7-10:foofoo foo"),
+				collect("foo", true, true, 100, content));
+		assertEquals(Lists.newArrayList("0:0-3:foo bar foo\r", "0:8-11:foo bar foo\r", "1:0-3:foo"),
+				collect("foo", true, true, 100, "foo bar foo\r\nfoo"));
+		assertEquals(Lists.newArrayList("0:0-3:FOO"), collect("foo", false, true, 100, "FOO"));
+	}
+
+	@Test
+	public void testLongLines() {
+		String longLine = StringUtils.repeat('x', MAX_LINE_LEN-3) + "foo";
+		String tooLongLine = "foo" + StringUtils.repeat('x', MAX_LINE_LEN-2);
+		String content = tooLongLine + "\n" + longLine + "\nfoo\n" + tooLongLine;
+		assertEquals(Lists.newArrayList(
+				"1:" + (MAX_LINE_LEN-3) + "-" + MAX_LINE_LEN + ":" + longLine,
+				"2:0-3:foo"),
+				collect("foo", false, false, 100, content));
+		assertEquals(Lists.newArrayList(), collect("foo", true, false, 100, tooLongLine + tooLongLine));
+	}
+
+	@Test
+	public void testLastLine() {
+		assertEquals(Lists.newArrayList("1:4-7:xyz foo"), collect("foo", true, false, 100, "abc\nxyz foo"));
+		assertEquals(Lists.newArrayList("1:4-7:xyz foo"), collect("foo", true, true, 100, "abc\nxyz foo"));
+		assertEquals(Lists.newArrayList("1:4-7:xyz foo", "2:0-3:foo"), collect("foo", true, true, 100, "abc\nxyz foo\nfoo"));
+		assertEquals(Lists.newArrayList(), collect("foo", true, false, 100, "abc\nxyz fo"));
+		assertEquals(Lists.newArrayList(), collect("foo\nbar", true, false, 100, "foo\nbar"));
+	}
+
+	@Test
+	public void testEquivalence() {
+		Random random = new Random(1);
+		String alphabet = "aAbB_ \n.";
+		List<String> terms = Lists.newArrayList("a", "ab", "Ab", "a_b", "b a", "ba.", "aaa", "B");
+		for (int i=0; i<2000; i++) {
+			StringBuilder builder = new StringBuilder();
+			int length = random.nextInt(200);
+			for (int j=0; j<length; j++)
+				builder.append(alphabet.charAt(random.nextInt(alphabet.length())));
+			if (random.nextInt(10) == 0)
+				builder.append(StringUtils.repeat("ab", MAX_LINE_LEN/2 + random.nextInt(2)));
+			String content = builder.toString();
+			String term = terms.get(random.nextInt(terms.size()));
+			boolean caseSensitive = random.nextBoolean();
+			boolean wholeWord = random.nextBoolean();
+			int count = 1 + random.nextInt(20);
+			assertEquals("content: " + content + ", term: " + term,
+					collectLineByLine(term, caseSensitive, wholeWord, count, content),
+					collect(term, caseSensitive, wholeWord, count, content));
+		}
+	}
+
+	/*
+	 * Line by line matching used before literals are searched in whole content
+	 */
+	private List<String> collectLineByLine(String term, boolean caseSensitive, boolean wholeWord,
+			int count, String content) {
+		List<QueryHit> hits = new ArrayList<>();
+		String normalizedTerm;
+		if (!caseSensitive)
+			normalizedTerm = term.toLowerCase();
+		else
+			normalizedTerm = term;
+
+		int lineNo = 0;
+		for (String line: Splitter.on('\n').split(content)) {
+			if (line.length() <= MAX_LINE_LEN) {
+				String normalizedLine;
+				if (!caseSensitive)
+					normalizedLine = line.toLowerCase();
+				else
+					normalizedLine = line;
+
+				int start = normalizedLine.indexOf(normalizedTerm, 0);
+				while (start != -1) {
+					int end = start + normalizedTerm.length();
+					boolean matches;
+					if (wholeWord) {
+						char beforeChar = start==0? ' ': line.charAt(start-1);
+						char afterChar = end==line.length()? ' ': line.charAt(end);
+						matches = !isWordChar(beforeChar) && !isWordChar(afterChar);
+					} else {
+						matches = true;
+					}
+					if (matches) {
+						hits.add(new TextHit("file", line, new TokenPosition(lineNo, start, lineNo, end)));
+						if (hits.size() >= count)
+							break;
+					}
+					start = normalizedLine.indexOf(normalizedTerm, end);
+				}
+				if (hits.size() >= count)
+					break;
+			}
+			lineNo++;
+		}
+		return describe(hits);
+	}
+
+	private boolean isWordChar(char ch) {
+		return CharUtils.isAsciiAlphanumeric(ch) || ch == '_';
+	}
+
+}
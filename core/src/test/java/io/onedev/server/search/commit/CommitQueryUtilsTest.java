@@ -2,13 +2,31 @@ package io.onedev.server.search.commit;
 
 import static org.junit.Assert.*;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.stream.Collectors;
+
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.PersonIdent;
 import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
 import org.junit.Test;
+import org.mockito.Matchers;
+import org.mockito.Mockito;
+
+import com.google.common.collect.Lists;
 
+import io.onedev.launcher.loader.AppLoader;
 import io.onedev.server.event.RefUpdated;
 import io.onedev.server.git.AbstractGitTest;
+import io.onedev.server.manager.UserManager;
+import io.onedev.server.manager.impl.DefaultCommitQueryManager;
 import io.onedev.server.model.Project;
 import io.onedev.server.model.User;
 
@@ -58,4 +76,157 @@ public class CommitQueryUtilsTest extends AbstractGitTest {
 		assertFalse(CommitQueryUtils.matches(event, user, "before(1 hour ago) after(1 day ago)"));
 	}
 
+	private CommitIndexManager commitIndexManager;
+	
+	private Project project;
+	
+	@Override
+	protected void setup() {
+		super.setup();
+		
+		commitIndexManager = Mockito.mock(CommitIndexManager.class);
+		Mockito.when(AppLoader.getInstance(CommitIndexManager.class)).thenReturn(commitIndexManager);
+		Mockito.when(AppLoader.getInstance(UserManager.class)).thenReturn(Mockito.mock(UserManager.class));
+		
+		project = new Project() {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public Repository getRepository() {
+				return git.getRepository();
+			}
+
+		};
+	}
+	
+	private void addFileAndCommit(String path, String comment, int dayOfMonth) {
+		Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+		calendar.clear();
+		calendar.set(2018, Calendar.JANUARY, dayOfMonth, 12, 0);
+		user = new PersonIdent("foo", "foo@example.com", calendar.getTime(), TimeZone.getTimeZone("UTC"));
+		addFileAndCommit(path, "", comment);
+	}
+	
+	/*
+	 * History used to check query results:
+	 * 
+	 * initial(Jan 1) -> dev1(Jan 4) -> dev2(Jan 7)                  branch dev
+	 *               \-> master1(Jan 10) -> master2(Jan 13)          branch master
+	 */
+	private void prepareHistory() throws Exception {
+		addFileAndCommit("initial", "initial", 1);
+		git.checkout().setCreateBranch(true).setName("dev").call();
+		addFileAndCommit("dev/file1", "dev1", 4);
+		addFileAndCommit("dev/file2", "dev2", 7);
+		git.checkout().setName("master").call();
+		addFileAndCommit("master/file1", "master1", 10);
+		addFileAndCommit("master/file2", "master2", 13);
+	}
+	
+	private List<String> query(String query, String compareWith) throws IOException {
+		List<String> messages = new ArrayList<>();
+		try (RevWalk revWalk = new RevWalk(git.getRepository())) {
+			int limit = CommitQueryUtils.fill(project, CommitQueryUtils.parse(query), compareWith, revWalk);
+			RevCommit commit;
+			while ((limit == 0 || messages.size() < limit) && (commit = revWalk.next()) != null)
+				messages.add(commit.getShortMessage());
+		}
+		return messages;
+	}
+	
+	@Test
+	public void testRevisions() throws Exception {
+		prepareHistory();
+		
+		assertEquals(Lists.newArrayList("master2", "master1", "dev2", "dev1", "initial"), query(null, null));
+		assertEquals(Lists.newArrayList("master2", "master1", "initial"), query(null, "master"));
+		assertEquals(Lists.newArrayList("dev2", "dev1", "initial"), query("branch(dev)", "master"));
+		assertEquals(Lists.newArrayList("dev2", "dev1", "initial"), query("until branch(dev)", null));
+		
+		// same as "git rev-list --branches ^master" when only since revisions are specified
+		assertEquals(Lists.newArrayList("dev2", "dev1"), query("since branch(master)", null));
+		assertEquals(Lists.newArrayList("dev2", "dev1"), query("since branch(master)", "master"));
+		assertEquals(Lists.newArrayList("master2", "master1"), query("since branch(dev) branch(master)", null));
+		
+		// same as "git rev-list -1 <commit>" if a single non-branch revision is specified
+		assertEquals(Lists.newArrayList("master1"), query("commit(master~1)", null));
+		assertEquals(Lists.newArrayList("master1", "initial"), query("until commit(master~1)", null));
+		assertEquals(Lists.newArrayList("master2", "master1", "initial"), query("branch(master)", null));
+		assertEquals(Lists.newArrayList("master2", "master1", "dev2", "dev1", "initial"), 
+				query("commit(master) commit(dev)", null));
+	}
+	
+	@Test
+	public void testPaths() throws Exception {
+		prepareHistory();
+		
+		assertEquals(Lists.newArrayList("dev1"), query("path(dev/file1)", null));
+		assertEquals(Lists.newArrayList("dev2", "dev1"), query("path(dev/*)", null));
+		assertEquals(Lists.newArrayList("master2", "master1"), query("path(master/file*)", null));
+		assertEquals(Lists.newArrayList("master2", "dev2"), query("path(*/file2)", null));
+		assertEquals(Lists.newArrayList("master2", "dev1"), query("path(dev/file1) path(master/*2)", null));
+		assertEquals(Lists.newArrayList(), query("path(master/file)", null));
+		assertEquals(Lists.newArrayList("master1"), query("path(*/file1) branch(master)", null));
+	}
+	
+	@Test
+	public void testDates() throws Exception {
+		prepareHistory();
+		
+		assertEquals(Lists.newArrayList("master2", "master1", "dev2"), query("after(2018-01-05)", null));
+		assertEquals(Lists.newArrayList("dev2", "dev1", "initial"), query("before(2018-01-09)", null));
+		assertEquals(Lists.newArrayList("master1", "dev2"), query("after(2018-01-05) before(2018-01-12)", null));
+		assertEquals(Lists.newArrayList("master1"), query("after(2018-01-05) before(2018-01-12) path(master/*)", null));
+		assertEquals(Lists.newArrayList("dev1"), query("after(2018-01-02) commit(dev~1)", null));
+	}
+	
+	@Test
+	public void testCandidates() throws Exception {
+		prepareHistory();
+		
+		Set<ObjectId> candidates = new HashSet<>();
+		candidates.add(git.getRepository().resolve("master"));
+		candidates.add(git.getRepository().resolve("dev"));
+		candidates.add(git.getRepository().resolve("dev~1"));
+		Mockito.when(commitIndexManager.getCandidates(Matchers.any(), Matchers.any(), Matchers.any(), 
+				Matchers.any(), Matchers.any(), Matchers.any())).thenReturn(candidates);
+		
+		// candidates only narrow down commits to check, and do not replace path filtering, 
+		// for instance dev1 is a candidate but does not touch any file2
+		assertEquals(Lists.newArrayList("master2", "dev2"), query("path(*/file2)", null));
+		assertEquals(Lists.newArrayList("master2", "dev2", "dev1"), query(null, null));
+	}
+	
+	@Test
+	public void testCursor() throws Exception {
+		prepareHistory();
+		
+		DefaultCommitQueryManager commitQueryManager = new DefaultCommitQueryManager();
+		
+		List<String> page1 = toMessages(commitQueryManager.query(project, null, null, 2));
+		assertEquals(Lists.newArrayList("master2", "master1"), page1);
+		List<String> page2 = toMessages(commitQueryManager.query(project, null, null, 4));
+		assertEquals(Lists.newArrayList("master2", "master1", "dev2", "dev1"), page2);
+		List<String> page3 = toMessages(commitQueryManager.query(project, null, null, 10));
+		assertEquals(query(null, null), page3);
+		
+		assertEquals(Lists.newArrayList("dev2", "dev1"), 
+				toMessages(commitQueryManager.query(project, "path(dev/*)", null, 10)));
+		assertEquals(Lists.newArrayList("master1"), 
+				toMessages(commitQueryManager.query(project, "commit(master~1)", null, 10)));
+		
+		// cursors of the project are discarded once refs are updated
+		ObjectId oldCommitId = git.getRepository().resolve("master");
+		addFileAndCommit("master/file3", "master3", 16);
+		ObjectId newCommitId = git.getRepository().resolve("master");
+		commitQueryManager.on(new RefUpdated(project, "refs/heads/master", oldCommitId, newCommitId));
+		assertEquals(Lists.newArrayList("master3", "master2"), 
+				toMessages(commitQueryManager.query(project, null, null, 2)));
+	}
+	
+	private List<String> toMessages(List<RevCommit> commits) {
+		return commits.stream().map(RevCommit::getShortMessage).collect(Collectors.toList());
+	}
+	
 }